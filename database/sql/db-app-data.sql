@@ -46,7 +46,7 @@ INSERT INTO SETTINGS (NAME, VALUE, TOOL) VALUES
 	('RABBITMQ_PASSWORD', '', 'RABBITMQ'),
 	('RABBITMQ_ENABLED', false, 'RABBITMQ'),
 	('COMPANY_LOGO_URL', null, null),
-	('LAST_ALTER_VERSION', '103', null);
+	('LAST_ALTER_VERSION', '114', null);
 
 INSERT INTO PROJECTS (NAME, DESCRIPTION) VALUES ('UNKNOWN', '');
 
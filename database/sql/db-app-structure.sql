@@ -106,6 +106,7 @@ CREATE INDEX FK_TEST_CASE_SECONDARY_OWNER_ASC ON TEST_CASES (SECONDARY_OWNER_ID)
 CREATE INDEX FK_TEST_CASES_PROJECTS_ASC ON TEST_CASES (PROJECT_ID);
 CREATE INDEX TESTCASES_TEST_CLASS_INDEX ON TEST_CASES (TEST_CLASS);
 CREATE INDEX TESTCASES_TEST_METHOD_INDEX ON TEST_CASES (TEST_METHOD);
+CREATE UNIQUE INDEX TEST_CASES_TEST_CLASS_TEST_METHOD_UNIQUE ON TEST_CASES (TEST_CLASS, TEST_METHOD);
 CREATE TRIGGER update_timestamp_test_cases BEFORE INSERT OR UPDATE ON TEST_CASES
     FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
 
@@ -116,6 +117,7 @@ CREATE TABLE IF NOT EXISTS WORK_ITEMS (
   JIRA_ID VARCHAR(45) NOT NULL,
   TYPE VARCHAR(45) NOT NULL DEFAULT 'TASK',
   HASH_CODE INT NULL,
+  FINGERPRINT BIGINT NULL,
   DESCRIPTION TEXT NULL,
   USER_ID INT NULL,
   TEST_CASE_ID INT NULL,
@@ -140,6 +142,7 @@ CREATE INDEX FK_WORK_ITEM_TEST_CASE_ASC ON WORK_ITEMS (TEST_CASE_ID);
 CREATE TRIGGER update_timestamp_work_items BEFORE INSERT OR UPDATE ON WORK_ITEMS
     FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
 CREATE INDEX WORK_ITEMS_CREATED_AT_INDEX ON WORK_ITEMS (CREATED_AT);
+CREATE INDEX WORK_ITEMS_TEST_CASE_ID_FINGERPRINT_INDEX ON WORK_ITEMS (TEST_CASE_ID, FINGERPRINT);
 
 
 
@@ -250,6 +253,7 @@ CREATE TABLE IF NOT EXISTS TEST_RUNS (
   BLOCKER BOOLEAN NOT NULL DEFAULT FALSE,
   ENV VARCHAR(50) NULL,
   PLATFORM VARCHAR(30) NULL,
+  BROWSER_VERSION VARCHAR(30) NULL,
   APP_VERSION VARCHAR(255) NULL,
   STARTED_AT TIMESTAMP NULL,
   ELAPSED INT NULL,
@@ -301,7 +305,8 @@ CREATE INDEX fk_TEST_RUNS_WORK_ITEMS1_idx ON TEST_RUNS (WORK_ITEM_ID);
 CREATE INDEX fk_TEST_RUNS_JOBS1_idx ON TEST_RUNS (JOB_ID);
 CREATE INDEX fk_TEST_RUNS_JOBS2_idx ON TEST_RUNS (UPSTREAM_JOB_ID);
 CREATE INDEX fk_TEST_RUNS_PROJECTS1_idx ON TEST_RUNS (PROJECT_ID);
-CREATE INDEX TEST_RUNS_STARTED_AT_INDEX ON TEST_RUNS(STARTED_AT ASC NULLS LAST);
+CREATE INDEX TEST_RUNS_STARTED_AT_INDEX ON TEST_RUNS (STARTED_AT, ID);
+CREATE INDEX TEST_RUNS_PLATFORM_INDEX ON TEST_RUNS (LOWER(PLATFORM));
 CREATE UNIQUE INDEX CI_RUN_ID_UNIQUE ON TEST_RUNS (CI_RUN_ID);
 CREATE TRIGGER update_timestamp_test_runs BEFORE INSERT OR UPDATE ON TEST_RUNS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
 
@@ -318,6 +323,7 @@ CREATE TABLE IF NOT EXISTS TESTS (
   TEST_GROUP VARCHAR(255),
   MESSAGE TEXT NULL,
   MESSAGE_HASH_CODE INT NULL,
+  MESSAGE_FINGERPRINT BIGINT NULL,
   START_TIME TIMESTAMP NULL,
   FINISH_TIME TIMESTAMP NULL,
   RETRY INT NOT NULL DEFAULT 0,
@@ -350,6 +356,43 @@ CREATE INDEX fk_TESTS_TEST_CONFIGS1_idx ON TESTS (TEST_CONFIG_ID);
 CREATE TRIGGER update_timestamp_tests BEFORE INSERT OR UPDATE ON TESTS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
 
 
+DROP TABLE IF EXISTS TEST_RUN_STATISTIC_SHARDS;
+CREATE TABLE IF NOT EXISTS TEST_RUN_STATISTIC_SHARDS (
+  TEST_RUN_ID INT NOT NULL,
+  SHARD SMALLINT NOT NULL DEFAULT 0,
+  PASSED INT NOT NULL DEFAULT 0,
+  FAILED INT NOT NULL DEFAULT 0,
+  FAILED_AS_KNOWN INT NOT NULL DEFAULT 0,
+  FAILED_AS_BLOCKER INT NOT NULL DEFAULT 0,
+  SKIPPED INT NOT NULL DEFAULT 0,
+  IN_PROGRESS INT NOT NULL DEFAULT 0,
+  ABORTED INT NOT NULL DEFAULT 0,
+  QUEUED INT NOT NULL DEFAULT 0,
+  MODIFIED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (TEST_RUN_ID, SHARD),
+  CONSTRAINT fk_TEST_RUN_STATISTIC_SHARDS_TEST_RUNS1
+    FOREIGN KEY (TEST_RUN_ID)
+    REFERENCES TEST_RUNS (ID)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION);
+CREATE TRIGGER update_timestamp_test_run_statistic_shards BEFORE INSERT OR UPDATE ON TEST_RUN_STATISTIC_SHARDS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
+
+CREATE OR REPLACE VIEW TEST_RUN_STATISTICS AS
+  SELECT
+    TEST_RUN_ID,
+    SUM(PASSED)::INT AS PASSED,
+    SUM(FAILED)::INT AS FAILED,
+    SUM(FAILED_AS_KNOWN)::INT AS FAILED_AS_KNOWN,
+    SUM(FAILED_AS_BLOCKER)::INT AS FAILED_AS_BLOCKER,
+    SUM(SKIPPED)::INT AS SKIPPED,
+    SUM(IN_PROGRESS)::INT AS IN_PROGRESS,
+    SUM(ABORTED)::INT AS ABORTED,
+    SUM(QUEUED)::INT AS QUEUED
+  FROM TEST_RUN_STATISTIC_SHARDS
+  GROUP BY TEST_RUN_ID;
+
+
 DROP TABLE IF EXISTS TAGS;
 CREATE TABLE IF NOT EXISTS TAGS (
   ID SERIAL,
@@ -714,6 +757,224 @@ CREATE TABLE IF NOT EXISTS FILTERS (
   CREATE UNIQUE INDEX FILTERS_NAME_UNIQUE ON FILTERS (NAME);
   CREATE TRIGGER update_timestamp_filters BEFORE INSERT OR UPDATE ON FILTERS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
 
+DROP TABLE IF EXISTS TEST_ROLLUP_DELTAS;
+CREATE TABLE IF NOT EXISTS TEST_ROLLUP_DELTAS (
+  ID BIGSERIAL,
+  PROJECT_ID INT NOT NULL,
+  OWNER_ID INT NOT NULL,
+  TEST_CASE_ID INT NOT NULL,
+  ENV VARCHAR(50) NOT NULL,
+  PLATFORM VARCHAR(30) NOT NULL,
+  TESTED_AT DATE NOT NULL,
+  STATUS VARCHAR(20) NOT NULL,
+  KNOWN_ISSUE BOOLEAN NOT NULL,
+  DURATION DOUBLE PRECISION NULL,
+  SIGN SMALLINT NOT NULL,
+  PRIMARY KEY (ID));
+CREATE INDEX TEST_ROLLUP_DELTAS_TESTED_AT_INDEX ON TEST_ROLLUP_DELTAS (TESTED_AT);
+
+
+DROP TABLE IF EXISTS TEST_DAILY_ROLLUPS;
+CREATE TABLE IF NOT EXISTS TEST_DAILY_ROLLUPS (
+  ID SERIAL,
+  PROJECT_ID INT NOT NULL,
+  OWNER_ID INT NOT NULL,
+  ENV VARCHAR(50) NOT NULL,
+  PLATFORM VARCHAR(30) NOT NULL,
+  TESTED_AT DATE NOT NULL,
+  PASSED INT NOT NULL DEFAULT 0,
+  FAILED INT NOT NULL DEFAULT 0,
+  KNOWN_ISSUE INT NOT NULL DEFAULT 0,
+  SKIPPED INT NOT NULL DEFAULT 0,
+  ABORTED INT NOT NULL DEFAULT 0,
+  IN_PROGRESS INT NOT NULL DEFAULT 0,
+  QUEUED INT NOT NULL DEFAULT 0,
+  TOTAL INT NOT NULL DEFAULT 0,
+  FINISHED INT NOT NULL DEFAULT 0,
+  TOTAL_SECONDS DOUBLE PRECISION NOT NULL DEFAULT 0,
+  MODIFIED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID));
+CREATE UNIQUE INDEX TEST_DAILY_ROLLUPS_UNIQUE ON TEST_DAILY_ROLLUPS (TESTED_AT, PROJECT_ID, OWNER_ID, ENV, PLATFORM);
+CREATE INDEX TEST_DAILY_ROLLUPS_OWNER_ID_INDEX ON TEST_DAILY_ROLLUPS (OWNER_ID);
+CREATE TRIGGER update_timestamp_test_daily_rollups BEFORE INSERT OR UPDATE ON TEST_DAILY_ROLLUPS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
+
+
+DROP TABLE IF EXISTS TEST_MONTHLY_ROLLUPS;
+CREATE TABLE IF NOT EXISTS TEST_MONTHLY_ROLLUPS (
+  ID SERIAL,
+  PROJECT_ID INT NOT NULL,
+  OWNER_ID INT NOT NULL,
+  ENV VARCHAR(50) NOT NULL,
+  PLATFORM VARCHAR(30) NOT NULL,
+  TESTED_AT DATE NOT NULL,
+  PASSED INT NOT NULL DEFAULT 0,
+  FAILED INT NOT NULL DEFAULT 0,
+  KNOWN_ISSUE INT NOT NULL DEFAULT 0,
+  SKIPPED INT NOT NULL DEFAULT 0,
+  ABORTED INT NOT NULL DEFAULT 0,
+  IN_PROGRESS INT NOT NULL DEFAULT 0,
+  QUEUED INT NOT NULL DEFAULT 0,
+  TOTAL INT NOT NULL DEFAULT 0,
+  FINISHED INT NOT NULL DEFAULT 0,
+  TOTAL_SECONDS DOUBLE PRECISION NOT NULL DEFAULT 0,
+  MODIFIED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID));
+CREATE UNIQUE INDEX TEST_MONTHLY_ROLLUPS_UNIQUE ON TEST_MONTHLY_ROLLUPS (TESTED_AT, PROJECT_ID, OWNER_ID, ENV, PLATFORM);
+CREATE INDEX TEST_MONTHLY_ROLLUPS_OWNER_ID_INDEX ON TEST_MONTHLY_ROLLUPS (OWNER_ID);
+CREATE TRIGGER update_timestamp_test_monthly_rollups BEFORE INSERT OR UPDATE ON TEST_MONTHLY_ROLLUPS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
+
+
+DROP TABLE IF EXISTS TEST_CASE_MONTHLY_ROLLUPS;
+CREATE TABLE IF NOT EXISTS TEST_CASE_MONTHLY_ROLLUPS (
+  ID SERIAL,
+  PROJECT_ID INT NOT NULL,
+  TEST_CASE_ID INT NOT NULL,
+  TESTED_AT DATE NOT NULL,
+  PASSED INT NOT NULL DEFAULT 0,
+  FAILED INT NOT NULL DEFAULT 0,
+  KNOWN_ISSUE INT NOT NULL DEFAULT 0,
+  SKIPPED INT NOT NULL DEFAULT 0,
+  ABORTED INT NOT NULL DEFAULT 0,
+  IN_PROGRESS INT NOT NULL DEFAULT 0,
+  QUEUED INT NOT NULL DEFAULT 0,
+  TOTAL INT NOT NULL DEFAULT 0,
+  FINISHED INT NOT NULL DEFAULT 0,
+  TOTAL_SECONDS DOUBLE PRECISION NOT NULL DEFAULT 0,
+  MIN_SECONDS DOUBLE PRECISION NULL,
+  MAX_SECONDS DOUBLE PRECISION NULL,
+  MODIFIED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID));
+CREATE UNIQUE INDEX TEST_CASE_MONTHLY_ROLLUPS_UNIQUE ON TEST_CASE_MONTHLY_ROLLUPS (TEST_CASE_ID, TESTED_AT, PROJECT_ID);
+CREATE INDEX TEST_CASE_MONTHLY_ROLLUPS_TESTED_AT_INDEX ON TEST_CASE_MONTHLY_ROLLUPS (TESTED_AT);
+CREATE TRIGGER update_timestamp_test_case_monthly_rollups BEFORE INSERT OR UPDATE ON TEST_CASE_MONTHLY_ROLLUPS FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
+
+
+DROP TABLE IF EXISTS EMAIL_OUTBOX;
+CREATE TABLE IF NOT EXISTS EMAIL_OUTBOX (
+  ID SERIAL,
+  SUBJECT TEXT NOT NULL,
+  TEXT TEXT NOT NULL,
+  RECIPIENTS TEXT NOT NULL,
+  STATUS VARCHAR(20) NOT NULL DEFAULT 'QUEUED',
+  ATTEMPTS INT NOT NULL DEFAULT 0,
+  NEXT_ATTEMPT_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  LAST_ERROR TEXT NULL,
+  MODIFIED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID));
+CREATE INDEX EMAIL_OUTBOX_STATUS_NEXT_ATTEMPT_AT_INDEX ON EMAIL_OUTBOX (STATUS, NEXT_ATTEMPT_AT);
+CREATE TRIGGER update_timestamp_email_outbox BEFORE INSERT OR UPDATE ON EMAIL_OUTBOX FOR EACH ROW EXECUTE PROCEDURE update_timestamp();
+
+DROP TABLE IF EXISTS EMAIL_OUTBOX_ATTACHMENTS;
+CREATE TABLE IF NOT EXISTS EMAIL_OUTBOX_ATTACHMENTS (
+  ID SERIAL,
+  EMAIL_OUTBOX_ID INT NOT NULL,
+  NAME TEXT NOT NULL,
+  FILE_NAME TEXT NOT NULL,
+  CONTENT BYTEA NOT NULL,
+  PRIMARY KEY (ID),
+  CONSTRAINT fk_EMAIL_OUTBOX_ATTACHMENTS_EMAIL_OUTBOX1
+    FOREIGN KEY (EMAIL_OUTBOX_ID)
+    REFERENCES EMAIL_OUTBOX (ID)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION);
+CREATE INDEX fk_EMAIL_OUTBOX_ATTACHMENTS_EMAIL_OUTBOX1_idx ON EMAIL_OUTBOX_ATTACHMENTS (EMAIL_OUTBOX_ID);
+
+CREATE INDEX TESTS_CREATED_AT_INDEX ON TESTS (CREATED_AT);
+
+-- Every change of test counted by rollups is logged as -1 for old state and +1 for new one, deltas are folded into
+-- rollups by application (see TestRollupService). Tests deleted together with test run are logged by test run trigger.
+CREATE OR REPLACE FUNCTION log_test_rollup_delta() RETURNS trigger AS $log_test_rollup_delta$
+    BEGIN
+        IF (TG_OP <> 'INSERT') THEN
+            INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+            SELECT COALESCE(TC.PROJECT_ID, 0), TC.PRIMARY_OWNER_ID, TC.ID, COALESCE(TR.ENV, ''), COALESCE(NULLIF(TR.PLATFORM, ''), 'N/A'),
+                OLD.CREATED_AT::date, OLD.STATUS, OLD.KNOWN_ISSUE, EXTRACT(EPOCH FROM (OLD.FINISH_TIME - OLD.START_TIME)), -1
+            FROM TEST_RUNS TR, TEST_CASES TC
+            WHERE TR.ID = OLD.TEST_RUN_ID AND TC.ID = OLD.TEST_CASE_ID;
+        END IF;
+        IF (TG_OP <> 'DELETE') THEN
+            INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+            SELECT COALESCE(TC.PROJECT_ID, 0), TC.PRIMARY_OWNER_ID, TC.ID, COALESCE(TR.ENV, ''), COALESCE(NULLIF(TR.PLATFORM, ''), 'N/A'),
+                NEW.CREATED_AT::date, NEW.STATUS, NEW.KNOWN_ISSUE, EXTRACT(EPOCH FROM (NEW.FINISH_TIME - NEW.START_TIME)), 1
+            FROM TEST_RUNS TR, TEST_CASES TC
+            WHERE TR.ID = NEW.TEST_RUN_ID AND TC.ID = NEW.TEST_CASE_ID;
+        END IF;
+        RETURN NULL;
+    END;
+$log_test_rollup_delta$ LANGUAGE plpgsql;
+
+CREATE TRIGGER log_test_rollup_delta AFTER INSERT OR DELETE ON TESTS FOR EACH ROW EXECUTE PROCEDURE log_test_rollup_delta();
+CREATE TRIGGER log_test_rollup_delta_update AFTER UPDATE ON TESTS FOR EACH ROW
+    WHEN ((OLD.STATUS, OLD.KNOWN_ISSUE, OLD.START_TIME, OLD.FINISH_TIME, OLD.TEST_RUN_ID, OLD.TEST_CASE_ID)
+        IS DISTINCT FROM (NEW.STATUS, NEW.KNOWN_ISSUE, NEW.START_TIME, NEW.FINISH_TIME, NEW.TEST_RUN_ID, NEW.TEST_CASE_ID))
+    EXECUTE PROCEDURE log_test_rollup_delta();
+
+-- Moves all tests of test run between rollups when env or platform is changed, removes them when test run is deleted
+CREATE OR REPLACE FUNCTION log_test_run_rollup_delta() RETURNS trigger AS $log_test_run_rollup_delta$
+    BEGIN
+        INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+        SELECT COALESCE(TC.PROJECT_ID, 0), TC.PRIMARY_OWNER_ID, TC.ID, COALESCE(OLD.ENV, ''), COALESCE(NULLIF(OLD.PLATFORM, ''), 'N/A'),
+            T.CREATED_AT::date, T.STATUS, T.KNOWN_ISSUE, EXTRACT(EPOCH FROM (T.FINISH_TIME - T.START_TIME)), -1
+        FROM TESTS T INNER JOIN TEST_CASES TC ON TC.ID = T.TEST_CASE_ID
+        WHERE T.TEST_RUN_ID = OLD.ID;
+        IF (TG_OP = 'DELETE') THEN
+            RETURN OLD;
+        END IF;
+        INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+        SELECT COALESCE(TC.PROJECT_ID, 0), TC.PRIMARY_OWNER_ID, TC.ID, COALESCE(NEW.ENV, ''), COALESCE(NULLIF(NEW.PLATFORM, ''), 'N/A'),
+            T.CREATED_AT::date, T.STATUS, T.KNOWN_ISSUE, EXTRACT(EPOCH FROM (T.FINISH_TIME - T.START_TIME)), 1
+        FROM TESTS T INNER JOIN TEST_CASES TC ON TC.ID = T.TEST_CASE_ID
+        WHERE T.TEST_RUN_ID = NEW.ID;
+        RETURN NEW;
+    END;
+$log_test_run_rollup_delta$ LANGUAGE plpgsql;
+
+CREATE TRIGGER log_test_run_rollup_delta BEFORE DELETE ON TEST_RUNS FOR EACH ROW EXECUTE PROCEDURE log_test_run_rollup_delta();
+CREATE TRIGGER log_test_run_rollup_delta_update AFTER UPDATE ON TEST_RUNS FOR EACH ROW
+    WHEN ((OLD.ENV, OLD.PLATFORM) IS DISTINCT FROM (NEW.ENV, NEW.PLATFORM))
+    EXECUTE PROCEDURE log_test_run_rollup_delta();
+
+-- Moves all tests of test case between rollups when project or owner is changed
+CREATE OR REPLACE FUNCTION log_test_case_rollup_delta() RETURNS trigger AS $log_test_case_rollup_delta$
+    BEGIN
+        INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+        SELECT COALESCE(OLD.PROJECT_ID, 0), OLD.PRIMARY_OWNER_ID, OLD.ID, COALESCE(TR.ENV, ''), COALESCE(NULLIF(TR.PLATFORM, ''), 'N/A'),
+            T.CREATED_AT::date, T.STATUS, T.KNOWN_ISSUE, EXTRACT(EPOCH FROM (T.FINISH_TIME - T.START_TIME)), -1
+        FROM TESTS T INNER JOIN TEST_RUNS TR ON TR.ID = T.TEST_RUN_ID
+        WHERE T.TEST_CASE_ID = OLD.ID;
+        INSERT INTO TEST_ROLLUP_DELTAS (PROJECT_ID, OWNER_ID, TEST_CASE_ID, ENV, PLATFORM, TESTED_AT, STATUS, KNOWN_ISSUE, DURATION, SIGN)
+        SELECT COALESCE(NEW.PROJECT_ID, 0), NEW.PRIMARY_OWNER_ID, NEW.ID, COALESCE(TR.ENV, ''), COALESCE(NULLIF(TR.PLATFORM, ''), 'N/A'),
+            T.CREATED_AT::date, T.STATUS, T.KNOWN_ISSUE, EXTRACT(EPOCH FROM (T.FINISH_TIME - T.START_TIME)), 1
+        FROM TESTS T INNER JOIN TEST_RUNS TR ON TR.ID = T.TEST_RUN_ID
+        WHERE T.TEST_CASE_ID = NEW.ID;
+        RETURN NEW;
+    END;
+$log_test_case_rollup_delta$ LANGUAGE plpgsql;
+
+CREATE TRIGGER log_test_case_rollup_delta_update AFTER UPDATE ON TEST_CASES FOR EACH ROW
+    WHEN ((OLD.PROJECT_ID, OLD.PRIMARY_OWNER_ID) IS DISTINCT FROM (NEW.PROJECT_ID, NEW.PRIMARY_OWNER_ID))
+    EXECUTE PROCEDURE log_test_case_rollup_delta();
+
+-- Same as MessageFingerprint: first 10 lines, masked bracketed values, addresses and numbers, first 8 bytes of MD5
+CREATE OR REPLACE FUNCTION message_fingerprint(TEXT) RETURNS BIGINT AS $$
+  SELECT ('x' || SUBSTR(MD5(REGEXP_REPLACE(ARRAY_TO_STRING((STRING_TO_ARRAY($1, E'\n'))[1:10], E'\n'),
+    E'\\[[^]\n]*\\]|0x[0-9a-fA-F]+|@[0-9a-fA-F]+|[0-9]+', '*', 'g')), 1, 16))::BIT(64)::BIGINT;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Same as TestService.getTestMessageHashCode: known Selenium errors are grouped by error type, other messages by fingerprint
+CREATE OR REPLACE FUNCTION message_hash_code(TEXT, BIGINT) RETURNS INT AS $$
+  SELECT ((F # (F >> 32)) << 32)::BIT(64)::BIT(32)::INT
+  FROM (SELECT CASE
+    WHEN $1 LIKE 'org.openqa.selenium.remote.UnreachableBrowserException%' THEN message_fingerprint('org.openqa.selenium.remote.UnreachableBrowserException')
+    WHEN $1 LIKE 'org.openqa.selenium.TimeoutException%' THEN message_fingerprint('org.openqa.selenium.TimeoutException')
+    WHEN $1 LIKE 'Session%' THEN message_fingerprint('Session')
+    ELSE $2 END AS F) FP;
+$$ LANGUAGE sql IMMUTABLE;
+
 CREATE OR REPLACE FUNCTION check_version(INTEGER) RETURNS VOID AS $$
 DECLARE CURRENT_VERSION SETTINGS.VALUE%TYPE;
 BEGIN
@@ -8,8 +8,8 @@ DROP VIEW IF EXISTS NIGHTLY_VIEW;
 DROP MATERIALIZED VIEW IF EXISTS THIRTY_DAYS_VIEW;
 
 
-DROP MATERIALIZED VIEW IF EXISTS TOTAL_VIEW;
-CREATE MATERIALIZED VIEW TOTAL_VIEW AS (
+DROP VIEW IF EXISTS TOTAL_VIEW;
+CREATE VIEW TOTAL_VIEW AS (
  SELECT row_number() OVER () AS ID,
          PROJECTS.NAME AS PROJECT,
          USERS.ID AS OWNER_ID,
@@ -19,70 +19,57 @@ CREATE MATERIALIZED VIEW TOTAL_VIEW AS (
          USERS.LAST_NAME AS OWNER_LAST_NAME,
          USERS.LAST_LOGIN AS OWNER_LAST_LOGIN,
          USERS.COVER_PHOTO_URL AS OWNER_COVER_PHOTO_URL,
-         TEST_RUNS.ENV as ENV,
-         case when (TEST_RUNS.PLATFORM IS NULL OR TEST_RUNS.PLATFORM ='') then 'N/A'
-            else TEST_RUNS.PLATFORM end AS PLATFORM,
-         sum( case when TESTS.STATUS = 'PASSED' then 1 else 0 end ) AS PASSED,
-         sum( case when TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=FALSE then 1 else 0 end ) AS FAILED,
-         sum( case when TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=TRUE then 1 else 0 end ) AS KNOWN_ISSUE,
-         sum( case when TESTS.STATUS = 'SKIPPED' then 1 else 0 end ) AS SKIPPED,
-         sum( case when TESTS.STATUS = 'ABORTED' then 1 else 0 end ) AS ABORTED,
-         sum( case when TESTS.STATUS = 'IN_PROGRESS' then 1 else 0 end ) AS IN_PROGRESS,
-         sum( case when TESTS.STATUS = 'QUEUED' then 1 else 0 end ) AS QUEUED,
-         COUNT(*) AS TOTAL,
-         date_trunc('month', TESTS.CREATED_AT) AS CREATED_AT,
-         sum(EXTRACT(epoch FROM (TESTS.FINISH_TIME - TESTS.START_TIME))/60)::bigint as TOTAL_MINUTES,
-         sum(EXTRACT(epoch FROM(TESTS.FINISH_TIME - TESTS.START_TIME))/3600)::bigint as TOTAL_HOURS,
-         avg(TESTS.FINISH_TIME - TESTS.START_TIME) as AVG_TIME
-  FROM TESTS INNER JOIN
-    TEST_RUNS ON TESTS.TEST_RUN_ID = TEST_RUNS.ID INNER JOIN
-    TEST_CASES ON TESTS.TEST_CASE_ID = TEST_CASES.ID INNER JOIN
-    USERS ON TEST_CASES.PRIMARY_OWNER_ID = USERS.ID INNER JOIN
-    PROJECTS ON TEST_CASES.PROJECT_ID = PROJECTS.ID
-  WHERE TESTS.FINISH_TIME IS NOT NULL
-        AND TESTS.START_TIME IS NOT NULL
-        AND TESTS.START_TIME < date_trunc('month', current_date)
-        AND TESTS.STATUS <> 'IN_PROGRESS'
-        GROUP BY PROJECT, OWNER_ID, OWNER_USERNAME, ENV, TEST_RUNS.PLATFORM, date_trunc('month', TESTS.CREATED_AT)
-  ORDER BY CREATED_AT
+         NULLIF(TEST_MONTHLY_ROLLUPS.ENV, '') AS ENV,
+         TEST_MONTHLY_ROLLUPS.PLATFORM AS PLATFORM,
+         sum( TEST_MONTHLY_ROLLUPS.PASSED ) AS PASSED,
+         sum( TEST_MONTHLY_ROLLUPS.FAILED ) AS FAILED,
+         sum( TEST_MONTHLY_ROLLUPS.KNOWN_ISSUE ) AS KNOWN_ISSUE,
+         sum( TEST_MONTHLY_ROLLUPS.SKIPPED ) AS SKIPPED,
+         sum( TEST_MONTHLY_ROLLUPS.ABORTED ) AS ABORTED,
+         sum( TEST_MONTHLY_ROLLUPS.IN_PROGRESS ) AS IN_PROGRESS,
+         sum( TEST_MONTHLY_ROLLUPS.QUEUED ) AS QUEUED,
+         sum( TEST_MONTHLY_ROLLUPS.TOTAL ) AS TOTAL,
+         TEST_MONTHLY_ROLLUPS.TESTED_AT::timestamp AS CREATED_AT,
+         (sum(TEST_MONTHLY_ROLLUPS.TOTAL_SECONDS)/60)::bigint as TOTAL_MINUTES,
+         (sum(TEST_MONTHLY_ROLLUPS.TOTAL_SECONDS)/3600)::bigint as TOTAL_HOURS,
+         sum(TEST_MONTHLY_ROLLUPS.TOTAL_SECONDS) / NULLIF(sum(TEST_MONTHLY_ROLLUPS.FINISHED), 0) * interval '1 second' as AVG_TIME
+  FROM TEST_MONTHLY_ROLLUPS INNER JOIN
+    USERS ON TEST_MONTHLY_ROLLUPS.OWNER_ID = USERS.ID INNER JOIN
+    PROJECTS ON TEST_MONTHLY_ROLLUPS.PROJECT_ID = PROJECTS.ID
+  WHERE TEST_MONTHLY_ROLLUPS.TESTED_AT < date_trunc('month', current_date)
+  GROUP BY PROJECTS.NAME, USERS.ID, TEST_MONTHLY_ROLLUPS.ENV, TEST_MONTHLY_ROLLUPS.PLATFORM, TEST_MONTHLY_ROLLUPS.TESTED_AT
+  HAVING sum( TEST_MONTHLY_ROLLUPS.TOTAL ) > 0
 );
 
-
-DROP INDEX IF EXISTS TOTAL_VIEW_INDEX;
-CREATE UNIQUE INDEX TOTAL_VIEW_INDEX ON TOTAL_VIEW (ID);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_PROJECT_INDEX;
-CREATE INDEX TOTAL_VIEW_PROJECT_INDEX ON TOTAL_VIEW (PROJECT);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_ID_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_ID_INDEX ON TOTAL_VIEW (OWNER_ID);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_INDEX ON TOTAL_VIEW (OWNER_USERNAME);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_EMAIL_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_EMAIL_INDEX ON TOTAL_VIEW (OWNER_EMAIL);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_FIRST_NAME_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_FIRST_NAME_INDEX ON TOTAL_VIEW (OWNER_FIRST_NAME);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_LAST_NAME_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_LAST_NAME_INDEX ON TOTAL_VIEW (OWNER_LAST_NAME);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_LAST_LOGIN_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_LAST_LOGIN_INDEX ON TOTAL_VIEW (OWNER_LAST_LOGIN);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_OWNER_COVER_PHOTO_URL_INDEX;
-CREATE INDEX TOTAL_VIEW_OWNER_COVER_PHOTO_URL_INDEX ON TOTAL_VIEW (OWNER_COVER_PHOTO_URL);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_ENV_INDEX;
-CREATE INDEX TOTAL_VIEW_ENV_INDEX ON TOTAL_VIEW (ENV);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_PLATFORM_INDEX;
-CREATE INDEX TOTAL_VIEW_PLATFORM_INDEX ON TOTAL_VIEW (PLATFORM);
-
-DROP INDEX IF EXISTS TOTAL_VIEW_CREATED_AT_INDEX;
-CREATE INDEX TOTAL_VIEW_CREATED_AT_INDEX ON TOTAL_VIEW (CREATED_AT);
+DROP VIEW IF EXISTS DAILY_VIEW;
+CREATE VIEW DAILY_VIEW AS (
+ SELECT TEST_DAILY_ROLLUPS.ID AS ID,
+         PROJECTS.NAME AS PROJECT,
+         USERS.ID AS OWNER_ID,
+         USERS.USERNAME AS OWNER_USERNAME,
+         USERS.EMAIL AS OWNER_EMAIL,
+         USERS.FIRST_NAME AS OWNER_FIRST_NAME,
+         USERS.LAST_NAME AS OWNER_LAST_NAME,
+         USERS.LAST_LOGIN AS OWNER_LAST_LOGIN,
+         USERS.COVER_PHOTO_URL AS OWNER_COVER_PHOTO_URL,
+         NULLIF(TEST_DAILY_ROLLUPS.ENV, '') AS ENV,
+         TEST_DAILY_ROLLUPS.PLATFORM AS PLATFORM,
+         TEST_DAILY_ROLLUPS.PASSED AS PASSED,
+         TEST_DAILY_ROLLUPS.FAILED AS FAILED,
+         TEST_DAILY_ROLLUPS.KNOWN_ISSUE AS KNOWN_ISSUE,
+         TEST_DAILY_ROLLUPS.SKIPPED AS SKIPPED,
+         TEST_DAILY_ROLLUPS.ABORTED AS ABORTED,
+         TEST_DAILY_ROLLUPS.IN_PROGRESS AS IN_PROGRESS,
+         TEST_DAILY_ROLLUPS.QUEUED AS QUEUED,
+         TEST_DAILY_ROLLUPS.TOTAL AS TOTAL,
+         TEST_DAILY_ROLLUPS.TOTAL_SECONDS::bigint AS TOTAL_SECONDS,
+         (TEST_DAILY_ROLLUPS.TOTAL_SECONDS/3600)::bigint AS TOTAL_HOURS,
+         TEST_DAILY_ROLLUPS.TESTED_AT AS CREATED_AT
+  FROM TEST_DAILY_ROLLUPS INNER JOIN
+    USERS ON TEST_DAILY_ROLLUPS.OWNER_ID = USERS.ID LEFT JOIN
+    PROJECTS ON TEST_DAILY_ROLLUPS.PROJECT_ID = PROJECTS.ID
+  WHERE TEST_DAILY_ROLLUPS.TOTAL > 0
+);
 
 DROP VIEW IF EXISTS NIGHTLY_FAILURES_VIEW;
 CREATE VIEW NIGHTLY_FAILURES_VIEW AS (
@@ -151,54 +138,38 @@ CREATE VIEW NIGHTLY_FAILURES_VIEW AS (
 );
 
 
-DROP MATERIALIZED VIEW IF EXISTS TEST_CASE_HEALTH_VIEW;
-CREATE MATERIALIZED VIEW TEST_CASE_HEALTH_VIEW AS (
-  SELECT ROW_NUMBER() OVER () AS ID,
+DROP VIEW IF EXISTS TEST_CASE_HEALTH_VIEW;
+CREATE VIEW TEST_CASE_HEALTH_VIEW AS (
+  SELECT R.ID AS ID,
          PROJECTS.NAME AS PROJECT,
          TEST_CASES.ID AS TEST_CASE_ID,
          TEST_CASES.TEST_METHOD AS TEST_METHOD_NAME,
-         SUM( CASE WHEN TESTS.STATUS = 'PASSED' THEN 1 ELSE 0 END ) AS PASSED,
-         SUM( CASE WHEN TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=FALSE THEN 1 ELSE 0 END ) AS FAILED,
-         SUM( CASE WHEN TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=TRUE THEN 1 ELSE 0 END ) AS KNOWN_ISSUE,
-         SUM( CASE WHEN TESTS.STATUS = 'SKIPPED' THEN 1 ELSE 0 END ) AS SKIPPED,
-         SUM( CASE WHEN TESTS.STATUS = 'ABORTED' THEN 1 ELSE 0 END ) AS ABORTED,
-         SUM( CASE WHEN TESTS.STATUS = 'IN_PROGRESS' THEN 1 ELSE 0 END ) AS IN_PROGRESS,
-         SUM( case when TESTS.STATUS = 'QUEUED' then 1 else 0 end ) AS QUEUED,
-         COUNT(*) AS TOTAL,
-         SUM(EXTRACT(EPOCH FROM (TESTS.FINISH_TIME - TESTS.START_TIME))/60)::BIGINT AS TOTAL_MINUTES,
-         SUM(EXTRACT(EPOCH FROM(TESTS.FINISH_TIME - TESTS.START_TIME))/3600)::BIGINT AS TOTAL_HOURS,
-         AVG(EXTRACT(EPOCH FROM(TESTS.FINISH_TIME - TESTS.START_TIME))) AS AVG_TIME,
-         MIN(EXTRACT(EPOCH FROM(TESTS.FINISH_TIME - TESTS.START_TIME))) AS MIN_TIME,
-         MAX(EXTRACT(EPOCH FROM(TESTS.FINISH_TIME - TESTS.START_TIME))) AS MAX_TIME,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'PASSED' THEN 1 ELSE 0 END )*100/COUNT(*)) AS STABILITY,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=FALSE THEN 1 ELSE 0 END )*100/COUNT(*)) AS FAILURE,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'FAILED' AND TESTS.KNOWN_ISSUE=TRUE THEN 1 ELSE 0 END )*100/COUNT(*)) AS KNOWN_FAILURE,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'SKIPPED' THEN 1 ELSE 0 END )*100/COUNT(*)) AS OMISSION,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'ABORTED' THEN 1 ELSE 0 END )*100/COUNT(*)) AS INTERRUPT,
-         ROUND(SUM( CASE WHEN TESTS.STATUS = 'QUEUED' THEN 1 ELSE 0 END )*100/COUNT(*)) AS QUEUE,
-         DATE_TRUNC('MONTH', TESTS.CREATED_AT) AS TESTED_AT
-  FROM TESTS INNER JOIN
-    TEST_CASES ON TESTS.TEST_CASE_ID = TEST_CASES.ID LEFT JOIN
-    PROJECTS ON TEST_CASES.PROJECT_ID = PROJECTS.ID
-  WHERE TESTS.FINISH_TIME IS NOT NULL
-        AND TESTS.START_TIME IS NOT NULL
-        AND TESTS.STATUS <> 'IN_PROGRESS'
-  GROUP BY PROJECTS.ID, TEST_CASES.ID, TESTED_AT
-  ORDER BY TESTED_AT
+         R.PASSED AS PASSED,
+         R.FAILED AS FAILED,
+         R.KNOWN_ISSUE AS KNOWN_ISSUE,
+         R.SKIPPED AS SKIPPED,
+         R.ABORTED AS ABORTED,
+         R.IN_PROGRESS AS IN_PROGRESS,
+         R.QUEUED AS QUEUED,
+         R.TOTAL AS TOTAL,
+         (R.TOTAL_SECONDS/60)::BIGINT AS TOTAL_MINUTES,
+         (R.TOTAL_SECONDS/3600)::BIGINT AS TOTAL_HOURS,
+         R.TOTAL_SECONDS / NULLIF(R.FINISHED, 0) AS AVG_TIME,
+         R.MIN_SECONDS AS MIN_TIME,
+         R.MAX_SECONDS AS MAX_TIME,
+         ROUND(R.PASSED*100/R.TOTAL) AS STABILITY,
+         ROUND(R.FAILED*100/R.TOTAL) AS FAILURE,
+         ROUND(R.KNOWN_ISSUE*100/R.TOTAL) AS KNOWN_FAILURE,
+         ROUND(R.SKIPPED*100/R.TOTAL) AS OMISSION,
+         ROUND(R.ABORTED*100/R.TOTAL) AS INTERRUPT,
+         ROUND(R.QUEUED*100/R.TOTAL) AS QUEUE,
+         R.TESTED_AT::TIMESTAMP AS TESTED_AT
+  FROM TEST_CASE_MONTHLY_ROLLUPS R INNER JOIN
+    TEST_CASES ON R.TEST_CASE_ID = TEST_CASES.ID LEFT JOIN
+    PROJECTS ON R.PROJECT_ID = PROJECTS.ID
+  WHERE R.TOTAL > 0
 );
 
-DROP INDEX IF EXISTS TEST_CASE_HEALTH_VIEW_INDEX;
-CREATE UNIQUE INDEX TEST_CASE_HEALTH_VIEW_INDEX ON TEST_CASE_HEALTH_VIEW (ID);
-
-DROP INDEX IF EXISTS TEST_CASE_HEALTH_VIEW_TEST_METHOD_NAME_INDEX;
-CREATE INDEX TEST_CASE_HEALTH_VIEW_TEST_METHOD_NAME_INDEX ON TEST_CASE_HEALTH_VIEW (TEST_METHOD_NAME);
-
-DROP INDEX IF EXISTS TEST_CASE_HEALTH_VIEW_STABILITY_INDEX;
-CREATE INDEX TEST_CASE_HEALTH_VIEW_STABILITY_INDEX ON TEST_CASE_HEALTH_VIEW (STABILITY);
-
-DROP INDEX IF EXISTS TEST_CASE_HEALTH_VIEW_TESTED_AT_INDEX;
-CREATE INDEX TEST_CASE_HEALTH_VIEW_TESTED_AT_INDEX ON TEST_CASE_HEALTH_VIEW (TESTED_AT);
-
 DROP MATERIALIZED VIEW IF EXISTS THIRTY_DAYS_VIEW;
 CREATE MATERIALIZED VIEW THIRTY_DAYS_VIEW AS (
 SELECT  row_number() OVER () AS ID,
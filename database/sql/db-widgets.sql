@@ -462,8 +462,9 @@ BEGIN
             sum(KNOWN_ISSUE),
             sum(QUEUED),
             sum(ABORTED)]) AS "value"
-  FROM MONTHLY_VIEW
-  WHERE OWNER_ID = ''#{currentUserId}''
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''month'', current_date)
+     AND OWNER_ID = ''#{currentUserId}''
      AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY OWNER_USERNAME';
 
@@ -545,8 +546,9 @@ BEGIN
           sum(KNOWN_ISSUE),
           sum(QUEUED),
           sum(ABORTED)]) AS "value"
-  FROM WEEKLY_VIEW
-  WHERE OWNER_ID = ''#{currentUserId}''
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''week'', current_date) - interval ''2 day''
+     AND OWNER_ID = ''#{currentUserId}''
      AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY OWNER_USERNAME';
 
@@ -628,8 +630,9 @@ BEGIN
           sum(KNOWN_ISSUE),
           sum(QUEUED),
           sum(ABORTED)]) AS "value"
-  FROM NIGHTLY_VIEW
-  WHERE OWNER_ID = ''#{currentUserId}''
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= current_date
+     AND OWNER_ID = ''#{currentUserId}''
      AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY OWNER_USERNAME';
 
@@ -705,22 +708,9 @@ BEGIN
       sum( ABORTED ) AS "ABORTED",
       sum( QUEUED ) AS "QUEUED",
       sum( TOTAL ) AS "TOTAL"
-  FROM THIRTY_DAYS_VIEW
-  WHERE OWNER_ID=''#{currentUserId}''
-      AND PROJECT LIKE ANY (''{#{project}}'')
-  GROUP BY "CREATED_AT"
-  UNION
-  SELECT
-      TO_CHAR(CREATED_AT, ''MM/DD/YYYY'') AS "CREATED_AT",
-      sum( PASSED ) AS "PASSED",
-      sum( FAILED ) AS "FAILED",
-      sum( SKIPPED ) AS "SKIPPED",
-      sum( KNOWN_ISSUE ) AS "KNOWN ISSUE",
-      sum( ABORTED ) AS "ABORTED",
-      sum( QUEUED ) AS "QUEUED",
-      sum( TOTAL ) AS "TOTAL"
-  FROM NIGHTLY_VIEW
-  WHERE OWNER_ID=''#{currentUserId}''
+  FROM DAILY_VIEW
+  WHERE CREATED_AT > current_date - 32
+      AND OWNER_ID=''#{currentUserId}''
       AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY "CREATED_AT"
   ORDER BY "CREATED_AT" ASC';
@@ -1478,8 +1468,9 @@ BEGIN
       ROUND(SUM(TOTAL_SECONDS)/3600) AS "ACTUAL",
       ROUND(SUM(TOTAL_SECONDS)/3600/extract(day from current_date) * extract(day from date_trunc(''day'', date_trunc(''month'', current_date) + interval ''1 month'') - interval ''1 day'')) AS "ETA",
       date_trunc(''month'', current_date) AS "CREATED_AT"
-  FROM MONTHLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''month'', current_date)
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY "CREATED_AT"
   ORDER BY "CREATED_AT";';
 
@@ -1747,9 +1738,10 @@ BEGIN
           sum(KNOWN_ISSUE),
           sum(QUEUED),
           sum(ABORTED)]) AS "value"
-  FROM MONTHLY_VIEW
+  FROM DAILY_VIEW
     WHERE
-      PROJECT LIKE ANY (''{#{project}}'')';
+      CREATED_AT >= date_trunc(''month'', current_date)
+      AND PROJECT LIKE ANY (''{#{project}}'')';
 
 	monthly_total_model :=
 	'{
@@ -1821,8 +1813,9 @@ BEGIN
       sum(SKIPPED) AS "SKIPPED",
       sum(IN_PROGRESS) AS "IN_PROGRESS",
       sum(ABORTED) AS "ABORTED"
-  FROM THIRTY_DAYS_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT > current_date - 32
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY "CREATED_AT"
   ORDER BY "CREATED_AT";';
 
@@ -1967,8 +1960,9 @@ BEGIN
       0 - round (100.0 * sum( FAILED ) / sum(TOTAL), 0)::integer AS "FAILED",
       0 - round (100.0 * sum( SKIPPED ) / sum(TOTAL), 0)::integer AS "SKIPPED",
       0 - round (100.0 * sum( ABORTED) / sum(TOTAL), 0)::integer AS "ABORTED"
-  FROM MONTHLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''month'', current_date)
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY PLATFORM
   ORDER BY PLATFORM';
 
@@ -2109,9 +2103,10 @@ BEGIN
       round (100.0 * SUM(SKIPPED) / (SUM(TOTAL)), 0)::integer AS "SKIPPED (%)",
       round (100.0 * sum( QUEUED ) / sum(TOTAL), 0)::integer AS "QUEUED (%)",
       round (100.0 * (SUM(TOTAL)-SUM(PASSED)) / (SUM(TOTAL)), 0)::integer AS "FAIL RATE (%)"
-  FROM MONTHLY_VIEW
+  FROM DAILY_VIEW
   WHERE
-  PROJECT LIKE ANY (''{#{project}}'')
+  CREATED_AT >= date_trunc(''month'', current_date)
+  AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY OWNER_ID, OWNER_USERNAME
   ORDER BY OWNER_USERNAME';
 
@@ -2174,9 +2169,10 @@ BEGIN
           sum(KNOWN_ISSUE),
           sum(QUEUED),
           sum(ABORTED)]) AS "value"
-  FROM WEEKLY_VIEW
+  FROM DAILY_VIEW
   WHERE
-  PROJECT LIKE ANY (''{#{project}}'')';
+  CREATED_AT >= date_trunc(''week'', current_date) - interval ''2 day''
+  AND PROJECT LIKE ANY (''{#{project}}'')';
 
 	weekly_total_model := '{
     "legend": {
@@ -2248,8 +2244,9 @@ BEGIN
       sum( ABORTED ) AS "ABORTED",
       sum( QUEUED ) AS "QUEUED",
       sum( TOTAL ) AS "TOTAL"
-  FROM WEEKLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''week'', current_date) - interval ''2 day''
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY "CREATED_AT"';
 
 	weekly_test_results_model :=
@@ -2407,8 +2404,9 @@ BEGIN
       0 - round (100.0 * sum( FAILED ) / sum(TOTAL), 0)::integer AS "FAILED",
       0 - round (100.0 * sum( SKIPPED ) / sum(TOTAL), 0)::integer AS "SKIPPED",
       0 - round (100.0 * sum( ABORTED) / sum(TOTAL), 0)::integer AS "ABORTED"
-  FROM WEEKLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= date_trunc(''week'', current_date) - interval ''2 day''
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY PLATFORM
   ORDER BY PLATFORM';
 
@@ -2549,9 +2547,10 @@ BEGIN
         round (100.0 * SUM(SKIPPED) / (SUM(TOTAL)), 0)::integer AS "SKIPPED (%)",
         round (100.0 * sum( QUEUED ) / sum(TOTAL), 0)::integer AS "QUEUED (%)",
         round (100.0 * (SUM(TOTAL)-SUM(PASSED)) / (SUM(TOTAL)), 0)::integer AS "FAIL RATE (%)"
-   FROM WEEKLY_VIEW
+   FROM DAILY_VIEW
    WHERE
-   PROJECT LIKE ANY (''{#{project}}'')
+   CREATED_AT >= date_trunc(''week'', current_date) - interval ''2 day''
+   AND PROJECT LIKE ANY (''{#{project}}'')
    GROUP BY OWNER_ID, OWNER_USERNAME
    ORDER BY OWNER_USERNAME';
 
@@ -2616,9 +2615,10 @@ BEGIN
           sum(KNOWN_ISSUE),
           sum(QUEUED),
           sum(ABORTED)]) AS "value"
-  FROM NIGHTLY_VIEW
+  FROM DAILY_VIEW
   WHERE
-  PROJECT LIKE ANY (''{#{project}}'')';
+  CREATED_AT >= current_date
+  AND PROJECT LIKE ANY (''{#{project}}'')';
 
 	nightly_total_model :=
 	'{
@@ -2690,8 +2690,9 @@ BEGIN
       0 - round (100.0 * sum( FAILED ) / sum(TOTAL), 0)::integer AS "FAILED",
       0 - round (100.0 * sum( SKIPPED ) / sum(TOTAL), 0)::integer AS "SKIPPED",
       0 - round (100.0 * sum( ABORTED) / sum(TOTAL), 0)::integer AS "ABORTED"
-  FROM NIGHTLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= current_date
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY PLATFORM
   ORDER BY PLATFORM';
 
@@ -2831,9 +2832,10 @@ BEGIN
         SUM(SKIPPED) AS "SKIPPED",
         sum( QUEUED ) AS "QUEUED",
         SUM(TOTAL) AS "TOTAL"
-    FROM NIGHTLY_VIEW
+    FROM DAILY_VIEW
     WHERE
-      PROJECT LIKE ANY (''{#{project}}'')
+      CREATED_AT >= current_date
+      AND PROJECT LIKE ANY (''{#{project}}'')
     GROUP BY OWNER_ID, OWNER_USERNAME
     ORDER BY OWNER_USERNAME';
 
@@ -2856,8 +2858,9 @@ BEGIN
       0 - round (100.0 * sum( FAILED ) / sum(TOTAL), 0)::integer AS "FAILED",
       0 - round (100.0 * sum( SKIPPED ) / sum(TOTAL), 0)::integer AS "SKIPPED",
       0 - round (100.0 * sum( ABORTED) / sum(TOTAL), 0)::integer AS "ABORTED"
-  FROM NIGHTLY_VIEW
-  WHERE PROJECT LIKE ANY (''{#{project}}'')
+  FROM DAILY_VIEW
+  WHERE CREATED_AT >= current_date
+    AND PROJECT LIKE ANY (''{#{project}}'')
   GROUP BY OWNER_USERNAME
   ORDER BY OWNER_USERNAME';
 
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.zafira.client.ZafiraClient.Response;
+import com.qaprosoft.zafira.models.dto.TestType;
+
+/**
+ * AsyncZafiraClient - asynchronous transport on top of {@link ZafiraClient}. Test results are put into bounded queue
+ * and background flusher sends them to Zafira in batches grouped by test run, so that test execution does not wait
+ * for reporting. Other calls may be submitted to small worker pool and their results are available as futures.
+ */
+public class AsyncZafiraClient implements AutoCloseable
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncZafiraClient.class);
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final long DEFAULT_FLUSH_INTERVAL = 500;
+	public static final long DEFAULT_CLOSE_TIMEOUT = 60000;
+	private static final int WORKER_THREADS = 4;
+
+	/**
+	 * Defines behaviour when results queue is full.
+	 */
+	public enum OverflowPolicy
+	{
+		/** caller waits for free space in queue */
+		BLOCK,
+		/** result is not reported, future is completed with empty response */
+		DROP,
+		/** result is reported synchronously in caller thread */
+		CALLER_RUNS
+	}
+
+	private final ZafiraClient zafiraClient;
+	private final BlockingQueue<FinishEvent> queue;
+	private final int batchSize;
+	private final long flushInterval;
+	private final OverflowPolicy overflowPolicy;
+
+	private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+	private final AtomicLong dropped = new AtomicLong();
+	private final ExecutorService workers;
+	private final Thread flusher;
+	private volatile boolean running = true;
+
+	public AsyncZafiraClient(ZafiraClient zafiraClient)
+	{
+		this(zafiraClient, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, OverflowPolicy.BLOCK);
+	}
+
+	public AsyncZafiraClient(ZafiraClient zafiraClient, int queueCapacity, int batchSize, long flushInterval, OverflowPolicy overflowPolicy)
+	{
+		this.zafiraClient = zafiraClient;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.overflowPolicy = overflowPolicy;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+			Thread thread = new Thread(r, "zafira-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flusher = new Thread(this::flushLoop, "zafira-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	public ZafiraClient getZafiraClient()
+	{
+		return zafiraClient;
+	}
+
+	/**
+	 * Puts test result into queue, it will be sent with the next batch of the same test run.
+	 *
+	 * @param test - test to finish, if id is not specified test will be created
+	 * @return registered test future
+	 */
+	public CompletableFuture<Response<TestType>> finishTest(TestType test)
+	{
+		FinishEvent event = new FinishEvent(test);
+		track(event.future);
+		if (!running)
+		{
+			event.future.complete(zafiraClient.finishTest(test));
+			return event.future;
+		}
+		switch (overflowPolicy)
+		{
+		case BLOCK:
+			try
+			{
+				queue.put(event);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				event.future.complete(zafiraClient.finishTest(test));
+			}
+			break;
+		case DROP:
+			if (!queue.offer(event))
+			{
+				LOGGER.warn("Zafira results queue is full, test '" + test.getName() + "' is not reported. Dropped results: " + dropped.incrementAndGet());
+				event.future.complete(zafiraClient.new Response<>(0, null));
+			}
+			break;
+		case CALLER_RUNS:
+			if (!queue.offer(event))
+			{
+				event.future.complete(zafiraClient.finishTest(test));
+			}
+			break;
+		}
+		return event.future;
+	}
+
+	/**
+	 * Executes client call in background worker.
+	 *
+	 * @param call - client call, e.g. () -&gt; zafiraClient.startTest(test)
+	 * @return call result future
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> call)
+	{
+		return track(CompletableFuture.supplyAsync(call, workers));
+	}
+
+	/**
+	 * Waits until all queued results and submitted calls are processed.
+	 *
+	 * @param timeout - max time to wait in milliseconds
+	 * @return true if everything is processed
+	 */
+	public boolean flush(long timeout)
+	{
+		try
+		{
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(timeout, TimeUnit.MILLISECONDS);
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (TimeoutException e)
+		{
+			LOGGER.warn("Unable to report all test results in " + timeout + " ms, remaining: " + pending.size());
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unable to flush test results", e);
+		}
+		return false;
+	}
+
+	/**
+	 * @return count of results not reported due to queue overflow
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	@Override
+	public void close()
+	{
+		close(DEFAULT_CLOSE_TIMEOUT);
+	}
+
+	/**
+	 * Waits for queued results and stops background threads, results that are still queued after timeout are sent
+	 * by daemon flusher while JVM is alive.
+	 *
+	 * @param timeout - max time to wait in milliseconds
+	 */
+	public void close(long timeout)
+	{
+		flush(timeout);
+		running = false;
+		flusher.interrupt();
+		workers.shutdown();
+	}
+
+	private <T> CompletableFuture<T> track(CompletableFuture<T> future)
+	{
+		pending.add(future);
+		future.whenComplete((result, e) -> pending.remove(future));
+		return future;
+	}
+
+	private void flushLoop()
+	{
+		List<FinishEvent> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty())
+		{
+			try
+			{
+				FinishEvent event = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+				if (event == null)
+				{
+					continue;
+				}
+				batch.add(event);
+				queue.drainTo(batch, batchSize - 1);
+				send(batch);
+			}
+			catch (InterruptedException e)
+			{
+				if (running)
+				{
+					LOGGER.warn("Zafira flusher was interrupted");
+				}
+			}
+			catch (Throwable e)
+			{
+				LOGGER.error("Unable to send test results", e);
+			}
+			finally
+			{
+				// Events not sent because of unexpected failure are registered one by one
+				batch.stream().filter(event -> !event.future.isDone()).forEach(this::sendOne);
+				batch.clear();
+			}
+		}
+	}
+
+	private void send(List<FinishEvent> batch)
+	{
+		Map<Long, List<FinishEvent>> eventsByRun = new LinkedHashMap<>();
+		for (FinishEvent event : batch)
+		{
+			eventsByRun.computeIfAbsent(event.test.getTestRunId(), id -> new ArrayList<>()).add(event);
+		}
+		for (Map.Entry<Long, List<FinishEvent>> entry : eventsByRun.entrySet())
+		{
+			List<FinishEvent> events = entry.getValue();
+			List<TestType> tests = new ArrayList<>(events.size());
+			events.forEach(event -> tests.add(event.test));
+			Response<TestType[]> rs = zafiraClient.saveTestRunResults(entry.getKey(), tests);
+			if (rs.getStatus() == 200 && rs.getObject() != null && rs.getObject().length == events.size())
+			{
+				for (int i = 0; i < events.size(); i++)
+				{
+					events.get(i).future.complete(zafiraClient.new Response<>(rs.getStatus(), rs.getObject()[i]));
+				}
+			}
+			else
+			{
+				// Fallback to one by one registration, e.g. when server does not support batch API
+				events.forEach(this::sendOne);
+			}
+		}
+	}
+
+	private void sendOne(FinishEvent event)
+	{
+		try
+		{
+			event.future.complete(zafiraClient.finishTest(event.test));
+		}
+		catch (Throwable e)
+		{
+			LOGGER.error("Unable to send test result '" + event.test.getName() + "'", e);
+			event.future.complete(zafiraClient.new Response<>(0, null));
+		}
+	}
+
+	private static class FinishEvent
+	{
+		private final TestType test;
+		private final CompletableFuture<Response<TestType>> future = new CompletableFuture<>();
+
+		private FinishEvent(TestType test)
+		{
+			this.test = test;
+		}
+	}
+}
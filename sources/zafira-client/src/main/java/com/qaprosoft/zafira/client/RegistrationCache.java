@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.qaprosoft.zafira.models.dto.TestCaseType;
+import com.qaprosoft.zafira.models.dto.user.UserType;
+
+/**
+ * RegistrationCache - per test run cache of users and test cases resolved via {@link ZafiraClient}, so that each owner
+ * and each test case is registered only once regardless of data provider rows and retries. Test cases are keyed by
+ * test class and method the same way as on the server side.
+ */
+public class RegistrationCache
+{
+	private final ZafiraClient zafiraClient;
+
+	private final Map<String, UserType> users = new ConcurrentHashMap<>();
+	private final Map<String, TestCaseType> testCases = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public RegistrationCache(ZafiraClient zafiraClient)
+	{
+		this.zafiraClient = zafiraClient;
+	}
+
+	/**
+	 * Puts already resolved user into cache.
+	 *
+	 * @param username - username used for lookup
+	 * @param user - resolved user
+	 */
+	public void putUser(String username, UserType user)
+	{
+		if (user != null)
+		{
+			users.put(StringUtils.defaultString(username), user);
+		}
+	}
+
+	/**
+	 * Gets user by username or anonymous if user not found, see {@link ZafiraClient#getUserOrAnonymousIfNotFound(String)}.
+	 *
+	 * @param username - username
+	 * @return user
+	 */
+	public UserType getUserOrAnonymousIfNotFound(String username)
+	{
+		return get(users, StringUtils.defaultString(username), key -> zafiraClient.getUserOrAnonymousIfNotFound(username));
+	}
+
+	/**
+	 * Registers test case once per test class and method, see {@link ZafiraClient#registerTestCase(Long, Long, Long, String, String)}.
+	 *
+	 * @param suiteId - test suite id
+	 * @param primaryOwnerId - primary owner id
+	 * @param secondaryOwnerId - secondary owner id
+	 * @param testClass - test class name
+	 * @param testMethod - test method name
+	 * @return registered test case
+	 */
+	public TestCaseType registerTestCase(Long suiteId, Long primaryOwnerId, Long secondaryOwnerId, String testClass, String testMethod)
+	{
+		return get(testCases, testClass + ':' + testMethod,
+				key -> zafiraClient.registerTestCase(suiteId, primaryOwnerId, secondaryOwnerId, testClass, testMethod));
+	}
+
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	public void clear()
+	{
+		users.clear();
+		testCases.clear();
+	}
+
+	private <T> T get(Map<String, T> cache, String key, Function<String, T> loader)
+	{
+		T value = cache.get(key);
+		if (value != null)
+		{
+			hits.incrementAndGet();
+			return value;
+		}
+		return cache.computeIfAbsent(key, k -> {
+			misses.incrementAndGet();
+			return loader.apply(k);
+		});
+	}
+}
@@ -84,6 +84,7 @@ public class  ZafiraClient
 	private static final String TEST_RUNS_PATH = "/api/tests/runs";
 	private static final String TEST_RUNS_FINISH_PATH = "/api/tests/runs/%d/finish";
 	private static final String TEST_RUNS_RESULTS_PATH = "/api/tests/runs/%d/results";
+	private static final String TEST_RUNS_RESULTS_BATCH_PATH = "/api/tests/runs/%d/results:batch";
 	private static final String TEST_RUNS_ABORT_PATH = "/api/tests/runs/abort?id=%d";
 	private static final String TEST_RUN_BY_ID_PATH = "/api/tests/runs/%d";
 	private static final String SETTINGS_TOOL_PATH = "/api/settings/tool/%s";
@@ -134,7 +135,7 @@ public class  ZafiraClient
 		return isAvailable;
 	}
 	
-	public synchronized Response<UserType> getUserProfile()
+	public Response<UserType> getUserProfile()
 	{
 		Response<UserType> response = new Response<>(0, null);
 		try
@@ -155,7 +156,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<UserType> getUserProfile(String username)
+	public Response<UserType> getUserProfile(String username)
 	{
 		Response<UserType> response = new Response<>(0, null);
 		try
@@ -176,7 +177,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<AuthTokenType> login(String username, String password)
+	public Response<AuthTokenType> login(String username, String password)
 	{
 		Response<AuthTokenType> response = new Response<>(0, null);
 		try
@@ -197,7 +198,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<AccessTokenType> generateAccessToken()
+	public Response<AccessTokenType> generateAccessToken()
 	{
 		Response<AccessTokenType> response = new Response<>(0, null);
 		try
@@ -218,7 +219,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<UserType> createUser(UserType user)
+	public Response<UserType> createUser(UserType user)
 	{
 		Response<UserType> response = new Response<>(0, null);
 		try
@@ -239,7 +240,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<AuthTokenType> refreshToken(String token)
+	public Response<AuthTokenType> refreshToken(String token)
 	{
 		Response<AuthTokenType> response = new Response<>(0, null);
 		try
@@ -260,7 +261,7 @@ public class  ZafiraClient
 		return response;
 	}
 
-	public synchronized Response<JobType> createJob(JobType job)
+	public Response<JobType> createJob(JobType job)
 	{
 		Response<JobType> response = new Response<>(0, null);
 		try
@@ -281,7 +282,7 @@ public class  ZafiraClient
 		return response;
 	}
 	
-	public synchronized Response<TestSuiteType> createTestSuite(TestSuiteType testSuite)
+	public Response<TestSuiteType> createTestSuite(TestSuiteType testSuite)
 	{
 		Response<TestSuiteType> response = new Response<>(0, null);
 		try
@@ -503,7 +504,7 @@ public class  ZafiraClient
 		}
 	}
 	
-	public synchronized Response<TestCaseType> createTestCase(TestCaseType testCase)
+	public Response<TestCaseType> createTestCase(TestCaseType testCase)
 	{
 		Response<TestCaseType> response = new Response<>(0, null);
 		try
@@ -565,7 +566,40 @@ public class  ZafiraClient
 		}
 		return response;
 	}
-	
+
+	/**
+	 * Registers several test results of the same test run in one request. Tests without id are created and finished
+	 * (if status is final), tests with id are finished.
+	 *
+	 * @param testRunId - test run id
+	 * @param results - test results
+	 * @return registered tests in the same order as results
+	 */
+	public Response<TestType []> saveTestRunResults(long testRunId, List<TestType> results)
+	{
+		Response<TestType []> response = new Response<>(0, null);
+		try
+		{
+			WebResource webResource = client.resource(serviceURL + String.format(TEST_RUNS_RESULTS_BATCH_PATH, testRunId));
+			ClientResponse clientRS = initHeaders(webResource.type(MediaType.APPLICATION_JSON))
+					.accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, results);
+			response.setStatus(clientRS.getStatus());
+			if (clientRS.getStatus() == 200)
+			{
+				response.setObject(clientRS.getEntity(TestType [].class));
+			}
+			else
+			{
+				clientRS.close();
+			}
+
+		} catch (Exception e)
+		{
+			LOGGER.error("Unable to save test run results", e);
+		}
+		return response;
+	}
+
 	public class Response<T>
 	{
 		private int status;
@@ -994,7 +1028,7 @@ public class  ZafiraClient
 	}
 	
 	@SuppressWarnings({ "unchecked" })
-	public synchronized Response<List<HashMap<String, String>>> getToolSettings(String tool, boolean decrypt)
+	public Response<List<HashMap<String, String>>> getToolSettings(String tool, boolean decrypt)
 	{
 		Response<List<HashMap<String, String>>> response = new Response<>(0, null);
 		try
@@ -1162,7 +1196,7 @@ public class  ZafiraClient
 	 * @param username to find user
 	 * @return user from DB
 	 */
-	public synchronized UserType getUserOrAnonymousIfNotFound(String username) {
+	public UserType getUserOrAnonymousIfNotFound(String username) {
 		Response<UserType> response = getUserProfile(username);
 		if(response.getStatus() != 200) {
 			response = getUserProfile(DEFAULT_USER);
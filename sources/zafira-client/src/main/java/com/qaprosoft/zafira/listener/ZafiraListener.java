@@ -18,13 +18,13 @@ package com.qaprosoft.zafira.listener;
 import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -56,6 +56,9 @@ import org.testng.ITestResult;
 import org.testng.SkipException;
 import org.testng.xml.XmlClass;
 
+import com.qaprosoft.zafira.client.AsyncZafiraClient;
+import com.qaprosoft.zafira.client.AsyncZafiraClient.OverflowPolicy;
+import com.qaprosoft.zafira.client.RegistrationCache;
 import com.qaprosoft.zafira.client.ZafiraClient;
 import com.qaprosoft.zafira.client.ZafiraClient.Response;
 import com.qaprosoft.zafira.config.CIConfig;
@@ -94,19 +97,24 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 	private String 	ZAFIRA_PROJECT = null;
 	private boolean ZAFIRA_RERUN_FAILURES = false;
 	private String 	ZAFIRA_CONFIGURATOR = null;
+	private boolean ZAFIRA_ASYNC = false;
+	private Integer ZAFIRA_ASYNC_QUEUE_SIZE = null;
+	private String 	ZAFIRA_ASYNC_OVERFLOW_POLICY = null;
 	
 	private String JIRA_SUITE_ID = null;
 	
 	private IConfigurator configurator;
 	private CIConfig ci;
 	private ZafiraClient zc;
+	private AsyncZafiraClient azc;
+	private RegistrationCache cache;
 	
 	private UserType user = null;
 	private JobType parentJob = null;
 	private JobType job = null;
 	private TestSuiteType suite = null;
 	private TestRunType run = null;
-	private Map<String, TestType> registeredTests = new HashMap<>();
+	private Map<String, TestType> registeredTests = new ConcurrentHashMap<>();
 	private Set<String> classesToRerun = new HashSet<>();
 	
 	private static ThreadLocal<String> threadCiTestId = new ThreadLocal<>();
@@ -137,9 +145,13 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 			
 			// Register user who initiated test run
 			this.user = zc.getUserProfile().getObject();
+			if(this.user != null)
+			{
+				cache.putUser(this.user.getUsername(), this.user);
+			}
 					
 			// Register test suite along with suite owner
-			UserType suiteOwner =  zc.getUserOrAnonymousIfNotFound(configurator.getOwner(suiteContext));
+			UserType suiteOwner =  cache.getUserOrAnonymousIfNotFound(configurator.getOwner(suiteContext));
 			this.suite = zc.registerTestSuite(suiteContext.getName(), FilenameUtils.getName(suiteContext.getXmlSuite().getFileName()), suiteOwner.getId());
 			
 			// Register job that triggers test run
@@ -149,7 +161,7 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 			UserType anonymous;
 			if (BuildCasue.UPSTREAMTRIGGER.equals(ci.getCiBuildCause())) 
 			{
-				anonymous = zc.getUserOrAnonymousIfNotFound(ZafiraClient.DEFAULT_USER);
+				anonymous = cache.getUserOrAnonymousIfNotFound(ZafiraClient.DEFAULT_USER);
 				parentJob = zc.registerJob(ci.getCiParentUrl(), anonymous.getId());
 			}
 			
@@ -244,21 +256,21 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 
 			// If method owner is not specified then try to use suite owner. If both are not declared then ANONYMOUS will be used.
 			String primaryOwnerName = !StringUtils.isEmpty(configurator.getPrimaryOwner(result)) ? configurator.getPrimaryOwner(result) : configurator.getOwner(result.getTestContext().getSuite());
-			UserType primaryOwner = zc.getUserOrAnonymousIfNotFound(primaryOwnerName);
+			UserType primaryOwner = cache.getUserOrAnonymousIfNotFound(primaryOwnerName);
 			LOGGER.debug("primaryOwner: " + primaryOwnerName);
 			
 			String secondaryOwnerName = configurator.getSecondaryOwner(result);
 			UserType secondaryOwner = null;
 			if(!StringUtils.isEmpty(secondaryOwnerName))
 			{
-				secondaryOwner = zc.getUserOrAnonymousIfNotFound(secondaryOwnerName);
+				secondaryOwner = cache.getUserOrAnonymousIfNotFound(secondaryOwnerName);
 				LOGGER.debug("secondaryOwner: " + secondaryOwnerName);
 			}
 			
 			String testClass = result.getMethod().getTestClass().getName();
 			String testMethod = configurator.getTestMethodName(result);
 
-			TestCaseType testCase = zc.registerTestCase(this.suite.getId(), primaryOwner.getId(), (secondaryOwner != null ? secondaryOwner.getId() : null), testClass, testMethod);
+			TestCaseType testCase = cache.registerTestCase(this.suite.getId(), primaryOwner.getId(), (secondaryOwner != null ? secondaryOwner.getId() : null), testClass, testMethod);
 
 			// Search already registered test!
 			if(registeredTests.containsKey(testName))
@@ -291,7 +303,16 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 				startedTest = zc.registerTestStart(testName, group, Status.IN_PROGRESS, testArgs, run.getId(), testCase.getId(), configurator.getRunCount(result), convertToXML(configurator.getConfiguration()), dependsOnMethods, getThreadCiTestId(), configurator.getTestTags(result));
 			}
 			
-			zc.registerWorkItems(startedTest.getId(), configurator.getTestWorkItems(result));
+			final Long testId = startedTest.getId();
+			final List<String> workItems = configurator.getTestWorkItems(result);
+			if(azc != null)
+			{
+				azc.submit(() -> zc.registerWorkItems(testId, workItems));
+			}
+			else
+			{
+				zc.registerWorkItems(testId, workItems);
+			}
 			// TODO: investigate why we need it
 			threadTest.set(startedTest);
 			registeredTests.put(testName, startedTest);
@@ -316,11 +337,7 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 
 		try 
 		{
-			Response<TestType> rs = zc.finishTest(populateTestResult(result, Status.PASSED, getFullStackTrace(result)));
-			if(rs.getStatus() != 200 && rs.getObject() == null)
-			{
-				throw new RuntimeException("Unable to register test " + rs.getObject().getName() + " for zafira service: " + ZAFIRA_URL);
-			}
+			finishTest(populateTestResult(result, Status.PASSED, getFullStackTrace(result)));
 		} 
 		catch (Throwable e) {
 			LOGGER.error("Undefined error during test case/method finish!", e);
@@ -334,11 +351,7 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 		
 		try 
 		{
-			Response<TestType> rs = zc.finishTest(populateTestResult(result, Status.FAILED, getFullStackTrace(result)));
-			if(rs.getStatus() != 200 && rs.getObject() == null)
-			{
-				throw new RuntimeException("Unable to register test " + rs.getObject().getName() + " for zafira service: " + ZAFIRA_URL);
-			}
+			finishTest(populateTestResult(result, Status.FAILED, getFullStackTrace(result)));
 		} 
 		catch (Throwable e) {
 			LOGGER.error("Undefined error during test case/method finish!", e);
@@ -352,11 +365,7 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 		
 		try 
 		{
-			Response<TestType> rs = zc.finishTest(populateTestResult(result, Status.FAILED, getFullStackTrace(result)));
-			if(rs.getStatus() != 200 && rs.getObject() == null)
-			{
-				throw new RuntimeException("Unable to register test " + rs.getObject().getName() + " for zafira service: " + ZAFIRA_URL);
-			}
+			finishTest(populateTestResult(result, Status.FAILED, getFullStackTrace(result)));
 		} 
 		catch (Throwable e) {
 			LOGGER.error("Undefined error during test case/method finish!", e);
@@ -392,14 +401,14 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 				
 				// If method owner is not specified then try to use suite owner. If both are not declared then ANONYMOUS will be used.
 				String primaryOwnerName = !StringUtils.isEmpty(configurator.getPrimaryOwner(result)) ? configurator.getPrimaryOwner(result) : configurator.getOwner(result.getTestContext().getSuite());
-				UserType primaryOwner = zc.getUserOrAnonymousIfNotFound(primaryOwnerName);
+				UserType primaryOwner = cache.getUserOrAnonymousIfNotFound(primaryOwnerName);
 				LOGGER.debug("primaryOwner: " + primaryOwnerName);
 				
 				String secondaryOwnerName = configurator.getSecondaryOwner(result);
 				UserType secondaryOwner = null;
 				if(!StringUtils.isEmpty(secondaryOwnerName))
 				{
-					secondaryOwner = zc.getUserOrAnonymousIfNotFound(secondaryOwnerName);
+					secondaryOwner = cache.getUserOrAnonymousIfNotFound(secondaryOwnerName);
 					LOGGER.debug("secondaryOwner: " + secondaryOwnerName);
 				}
 				
@@ -407,7 +416,7 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 				String testMethod = configurator.getTestMethodName(result);
 				
 				//if not start new test as it is skipped dependent test method
-				TestCaseType testCase = zc.registerTestCase(this.suite.getId(), primaryOwner.getId(),  (secondaryOwner != null ? secondaryOwner.getId() : null), testClass, testMethod);
+				TestCaseType testCase = cache.registerTestCase(this.suite.getId(), primaryOwner.getId(),  (secondaryOwner != null ? secondaryOwner.getId() : null), testClass, testMethod);
 				String testArgs = result.getParameters().toString();
 				
 				String group = result.getMethod().getTestClass().getName();
@@ -419,17 +428,32 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 				threadTest.set(test);
 			}
 			
-			Response<TestType> rs = zc.finishTest(populateTestResult(result, Status.SKIPPED, getFullStackTrace(result)));
-			if(rs.getStatus() != 200 && rs.getObject() == null)
-			{
-				throw new RuntimeException("Unable to register test " + rs.getObject().getName() + " for zafira service: " + ZAFIRA_URL);
-			}
+			finishTest(populateTestResult(result, Status.SKIPPED, getFullStackTrace(result)));
 		} 
 		catch (Throwable e) {
 			LOGGER.error("Undefined error during test case/method finish!", e);
 		}
 	}
 	
+	private void finishTest(TestType test)
+	{
+		if(azc != null)
+		{
+			azc.finishTest(test).whenComplete((rs, e) -> {
+				if(e != null || rs.getStatus() != 200)
+				{
+					LOGGER.error("Unable to register test " + test.getName() + " for zafira service: " + ZAFIRA_URL, e);
+				}
+			});
+			return;
+		}
+		Response<TestType> rs = zc.finishTest(test);
+		if(rs.getStatus() != 200 && rs.getObject() == null)
+		{
+			throw new RuntimeException("Unable to register test " + test.getName() + " for zafira service: " + ZAFIRA_URL);
+		}
+	}
+
 	private TestType populateTestResult(ITestResult result, Status status, String message) throws JAXBException
 	{
 		long threadId = Thread.currentThread().getId();
@@ -471,8 +495,14 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 		try 
 		{	
 			// Reset configuration to store for example updated at run-time app_version etc
+			if(azc != null)
+			{
+				// All test results should be reported before test run is finished, client is closed on JVM shutdown
+				azc.flush(AsyncZafiraClient.DEFAULT_CLOSE_TIMEOUT);
+			}
 			this.run.setConfigXML(convertToXML(configurator.getConfiguration()));
 			zc.registerTestRunResults(this.run);
+			LOGGER.debug("Registration cache hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount());
 		}
 		catch (Throwable e) 
 		{
@@ -594,6 +624,9 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 			ZAFIRA_PROJECT = (String) ZafiraConfiguration.PROJECT.get(config, suiteContext);
 			ZAFIRA_RERUN_FAILURES = (Boolean) ZafiraConfiguration.RERUN_FAILURES.get(config, suiteContext);
 			ZAFIRA_CONFIGURATOR = (String) ZafiraConfiguration.CONFIGURATOR.get(config, suiteContext);
+			ZAFIRA_ASYNC = (Boolean) ZafiraConfiguration.ASYNC.get(config, suiteContext);
+			ZAFIRA_ASYNC_QUEUE_SIZE = (Integer) ZafiraConfiguration.ASYNC_QUEUE_SIZE.get(config, suiteContext);
+			ZAFIRA_ASYNC_OVERFLOW_POLICY = (String) ZafiraConfiguration.ASYNC_OVERFLOW_POLICY.get(config, suiteContext);
 			
 			if(ZAFIRA_ENABLED)
 			{
@@ -607,6 +640,14 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 					if(auth.getStatus() == 200)
 					{
 						zc.setAuthToken(auth.getObject().getType() + " " + auth.getObject().getAccessToken());
+						cache = new RegistrationCache(zc);
+						if(ZAFIRA_ASYNC && azc == null)
+						{
+							// Single async client is shared by all suites of the run
+							azc = new AsyncZafiraClient(zc, ZAFIRA_ASYNC_QUEUE_SIZE, AsyncZafiraClient.DEFAULT_BATCH_SIZE,
+									AsyncZafiraClient.DEFAULT_FLUSH_INTERVAL, getOverflowPolicy());
+							Runtime.getRuntime().addShutdownHook(new Thread(azc::close, "zafira-async-close"));
+						}
 					}
 					else
 					{
@@ -630,6 +671,25 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 		return success;
 	}
 	
+	/**
+	 * Resolves async client overflow policy, falls back to default policy when configured value is unknown.
+	 * 
+	 * @return overflow policy
+	 */
+	private OverflowPolicy getOverflowPolicy()
+	{
+		try
+		{
+			return OverflowPolicy.valueOf(ZAFIRA_ASYNC_OVERFLOW_POLICY.trim().toUpperCase());
+		}
+		catch(IllegalArgumentException e)
+		{
+			LOGGER.warn("Unknown " + ZafiraConfiguration.ASYNC_OVERFLOW_POLICY.getConfigName() + " '" + ZAFIRA_ASYNC_OVERFLOW_POLICY
+					+ "', " + OverflowPolicy.BLOCK + " is used");
+			return OverflowPolicy.BLOCK;
+		}
+	}
+
 	/**
 	 * Marshals configuration bean to XML.
 	 * 
@@ -760,7 +820,10 @@ public class ZafiraListener implements ISuiteListener, ITestListener, IHookable,
 		ACCESS_TOKEN("zafira_access_token", StringUtils.EMPTY),
 		PROJECT("zafira_project", StringUtils.EMPTY, true),
 		RERUN_FAILURES("zafira_rerun_failures", false),
-		CONFIGURATOR("zafira_configurator", "com.qaprosoft.zafira.listener.DefaultConfigurator", true);
+		CONFIGURATOR("zafira_configurator", "com.qaprosoft.zafira.listener.DefaultConfigurator", true),
+		ASYNC("zafira_async", false),
+		ASYNC_QUEUE_SIZE("zafira_async_queue_size", AsyncZafiraClient.DEFAULT_QUEUE_CAPACITY),
+		ASYNC_OVERFLOW_POLICY("zafira_async_overflow_policy", OverflowPolicy.BLOCK.name());
 
 		private String configName;
 		private Object defaultValue;
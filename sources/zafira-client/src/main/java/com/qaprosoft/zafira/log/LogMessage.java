@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.log;
+
+/**
+ * Formatted log event ready to be published to RabbitMQ.
+ */
+class LogMessage
+{
+	private final String type;
+	private final String correlationId;
+	private final byte[] payload;
+
+	LogMessage(String type, String correlationId, byte[] payload)
+	{
+		this.type = type;
+		this.correlationId = correlationId;
+		this.payload = payload;
+	}
+
+	String getType()
+	{
+		return type;
+	}
+
+	String getCorrelationId()
+	{
+		return correlationId;
+	}
+
+	byte[] getPayload()
+	{
+		return payload;
+	}
+}
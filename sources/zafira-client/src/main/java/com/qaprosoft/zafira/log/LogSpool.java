@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed size memory-mapped file that keeps log messages which can't be published right now. Messages are read back in
+ * the same order, when everything is read spool starts from the beginning of the file.
+ */
+class LogSpool
+{
+	private final MappedByteBuffer buffer;
+	private int writePosition;
+	private int readPosition;
+	private int pendingReadPosition;
+	private int size;
+	private int pendingSize;
+
+	LogSpool(File file, int capacity) throws IOException
+	{
+		if (file.exists() && !file.delete())
+		{
+			throw new IOException("Unable to delete old spool file " + file.getAbsolutePath());
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+		file.deleteOnExit();
+	}
+
+	/**
+	 * Appends message to spool.
+	 *
+	 * @param message - log message
+	 * @return false if spool is full
+	 */
+	synchronized boolean write(LogMessage message)
+	{
+		byte[] type = message.getType().getBytes(StandardCharsets.UTF_8);
+		byte[] correlationId = message.getCorrelationId().getBytes(StandardCharsets.UTF_8);
+		int length = 12 + type.length + correlationId.length + message.getPayload().length;
+		if (writePosition + length > buffer.capacity())
+		{
+			return false;
+		}
+		buffer.position(writePosition);
+		buffer.putInt(type.length).put(type);
+		buffer.putInt(correlationId.length).put(correlationId);
+		buffer.putInt(message.getPayload().length).put(message.getPayload());
+		writePosition = buffer.position();
+		size++;
+		return true;
+	}
+
+	/**
+	 * Reads next messages without removing them, call {@link #commit()} when they are processed.
+	 *
+	 * @param max - max count of messages
+	 * @return messages
+	 */
+	synchronized List<LogMessage> peek(int max)
+	{
+		List<LogMessage> messages = new ArrayList<>();
+		buffer.position(readPosition);
+		while (buffer.position() < writePosition && messages.size() < max)
+		{
+			String type = new String(read(), StandardCharsets.UTF_8);
+			String correlationId = new String(read(), StandardCharsets.UTF_8);
+			messages.add(new LogMessage(type, correlationId, read()));
+		}
+		pendingReadPosition = buffer.position();
+		pendingSize = messages.size();
+		return messages;
+	}
+
+	/**
+	 * Removes messages returned by last {@link #peek(int)}.
+	 */
+	synchronized void commit()
+	{
+		readPosition = pendingReadPosition;
+		size -= pendingSize;
+		pendingSize = 0;
+		if (readPosition == writePosition)
+		{
+			readPosition = pendingReadPosition = writePosition = 0;
+		}
+	}
+
+	synchronized int size()
+	{
+		return size;
+	}
+
+	private byte[] read()
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
@@ -15,15 +15,19 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.log;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.configuration2.CombinedConfiguration;
 import org.apache.commons.configuration2.FileBasedConfiguration;
@@ -46,11 +50,23 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
 /**
+ * Publishes log events to RabbitMQ. Events are formatted in the caller thread and put into fixed size buffer, single
+ * publisher thread sends them in batches with publisher confirms and reconnects when connection is lost. When buffer is
+ * full events are handled according to overflow policy: DROP_OLDEST, BLOCK or SPOOL to memory-mapped file which is
+ * replayed after buffered events. Spool file is recreated on startup, it keeps events during RabbitMQ outage only while
+ * the process is running.
+ * 
  * @author akhursevich
  */
 public class ZafiraLogAppender extends AppenderSkeleton
 {
 	private static final String ZAFIRA_PROPERTIES = "zafira.properties";
+	private static final long PUBLISH_INTERVAL = 200;
+
+	public enum OverflowPolicy
+	{
+		DROP_OLDEST, BLOCK, SPOOL
+	}
 
 	private ConnectionFactory factory = new ConnectionFactory();
 	private Connection connection = null;
@@ -67,20 +83,64 @@ public class ZafiraLogAppender extends AppenderSkeleton
 	private String routingKey = "";
 	private boolean zafiraConnected = false;
 	private int history = 1000;
-	
-	private ExecutorService threadPool = Executors.newCachedThreadPool();
+	private int bufferSize = 10000;
+	private int batchSize = 100;
+	private String overflowPolicy = OverflowPolicy.DROP_OLDEST.name();
+	private String spoolFile = new File(System.getProperty("java.io.tmpdir"), "zafira-logs.spool").getAbsolutePath();
+	private int spoolSize = 64 * 1024 * 1024;
+	private long reconnectDelay = 5000;
+	private long confirmTimeout = 10000;
+
+	private BlockingQueue<LogMessage> buffer;
+	private LogSpool spool;
+	private OverflowPolicy policy;
+	private Thread publisher;
+	private volatile boolean running;
+	private final AtomicLong dropped = new AtomicLong();
 
 	/**
-	 * Submits LoggingEvent for publishing if it reaches severity threshold.
+	 * Puts LoggingEvent into buffer for publishing if it reaches severity threshold.
 	 * 
 	 * @param loggingEvent - log event
 	 */
 	@Override
 	protected void append(LoggingEvent loggingEvent)
 	{
-		if (isAsSevereAsThreshold(loggingEvent.getLevel()))
+		if (!running || !isAsSevereAsThreshold(loggingEvent.getLevel()))
 		{
-			threadPool.submit(new AppenderTask(loggingEvent));
+			return;
+		}
+		LogMessage message = new LogMessage(loggingEvent.getLevel().toString(), getCorrelationId(loggingEvent),
+				layout.format(loggingEvent).getBytes(StandardCharsets.UTF_8));
+		switch (policy)
+		{
+		case BLOCK:
+			try
+			{
+				buffer.put(message);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				dropped.incrementAndGet();
+			}
+			break;
+		case SPOOL:
+			// Once spooling started new events go to spool until it is replayed, so spooled events stay newer than buffered ones
+			if ((spool.size() > 0 || !buffer.offer(message)) && !spool.write(message))
+			{
+				dropped.incrementAndGet();
+			}
+			break;
+		default:
+			while (!buffer.offer(message))
+			{
+				if (buffer.poll() != null)
+				{
+					dropped.incrementAndGet();
+				}
+			}
+			break;
 		}
 	}
 
@@ -127,6 +187,26 @@ public class ZafiraLogAppender extends AppenderSkeleton
 			{
 				errorHandler.error("Unable to create RabbitMQ exchange: " + e.getMessage());
 			}
+
+			try
+			{
+				this.policy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+				if (OverflowPolicy.SPOOL.equals(policy))
+				{
+					this.spool = new LogSpool(new File(spoolFile), spoolSize);
+				}
+			}
+			catch (Exception e)
+			{
+				errorHandler.error("Unable to initialize overflow policy " + overflowPolicy + ": " + e.getMessage());
+				this.policy = OverflowPolicy.DROP_OLDEST;
+			}
+
+			this.buffer = new ArrayBlockingQueue<>(bufferSize);
+			this.running = true;
+			this.publisher = new Thread(this::publish, "zafira-log-publisher");
+			this.publisher.setDaemon(true);
+			this.publisher.start();
 		}
 	}
 
@@ -140,6 +220,8 @@ public class ZafiraLogAppender extends AppenderSkeleton
 		factory.setVirtualHost(this.virtualHost);
 		factory.setUsername(this.username);
 		factory.setPassword(this.password);
+		// Reconnection is handled by publisher thread
+		factory.setAutomaticRecoveryEnabled(false);
 	}
 
 	/**
@@ -357,6 +439,141 @@ public class ZafiraLogAppender extends AppenderSkeleton
 		this.history = history;
 	}
 
+	public int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	/**
+	 * Sets bufferSize property (max count of events waiting for publishing) from parameter in appender configuration
+	 * 
+	 * @param bufferSize - bufferSize property
+	 */
+	public void setBufferSize(int bufferSize)
+	{
+		this.bufferSize = bufferSize;
+	}
+
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets batchSize property (max count of events published before waiting for confirms) from parameter in appender configuration
+	 * 
+	 * @param batchSize - batchSize property
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+
+	public String getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * Sets overflowPolicy property (DROP_OLDEST, BLOCK or SPOOL) from parameter in appender configuration
+	 * 
+	 * @param overflowPolicy - overflowPolicy property
+	 */
+	public void setOverflowPolicy(String overflowPolicy)
+	{
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public String getSpoolFile()
+	{
+		return spoolFile;
+	}
+
+	/**
+	 * Sets spoolFile property from parameter in appender configuration
+	 * 
+	 * @param spoolFile - spoolFile property
+	 */
+	public void setSpoolFile(String spoolFile)
+	{
+		this.spoolFile = spoolFile;
+	}
+
+	public int getSpoolSize()
+	{
+		return spoolSize;
+	}
+
+	/**
+	 * Sets spoolSize property (spool file size in bytes) from parameter in appender configuration
+	 * 
+	 * @param spoolSize - spoolSize property
+	 */
+	public void setSpoolSize(int spoolSize)
+	{
+		this.spoolSize = spoolSize;
+	}
+
+	public long getReconnectDelay()
+	{
+		return reconnectDelay;
+	}
+
+	/**
+	 * Sets reconnectDelay property (in milliseconds) from parameter in appender configuration
+	 * 
+	 * @param reconnectDelay - reconnectDelay property
+	 */
+	public void setReconnectDelay(long reconnectDelay)
+	{
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	public long getConfirmTimeout()
+	{
+		return confirmTimeout;
+	}
+
+	/**
+	 * Sets confirmTimeout property (in milliseconds) from parameter in appender configuration
+	 * 
+	 * @param confirmTimeout - confirmTimeout property
+	 */
+	public void setConfirmTimeout(long confirmTimeout)
+	{
+		this.confirmTimeout = confirmTimeout;
+	}
+
+	/**
+	 * Returns count of events lost due to buffer overflow or publishing failures
+	 * 
+	 * @return dropped events count
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Returns count of events waiting for publishing
+	 * 
+	 * @return queued events count
+	 */
+	public int getQueuedCount()
+	{
+		return buffer != null ? buffer.size() : 0;
+	}
+
+	/**
+	 * Returns count of events waiting for replay in spool file
+	 * 
+	 * @return spooled events count
+	 */
+	public int getSpooledCount()
+	{
+		return spool != null ? spool.size() : 0;
+	}
+
 	/**
 	 * Declares the exchange on RabbitMQ server according to properties set
 	 */
@@ -381,9 +598,10 @@ public class ZafiraLogAppender extends AppenderSkeleton
 	 */
 	private Channel createChannel() throws IOException
 	{
-		if (this.channel == null || !this.channel.isOpen() && (this.connection != null && this.connection.isOpen()))
+		if (this.channel == null || !this.channel.isOpen())
 		{
 			this.channel = this.connection.createChannel();
+			this.channel.confirmSelect();
 		}
 		return this.channel;
 	}
@@ -478,6 +696,20 @@ public class ZafiraLogAppender extends AppenderSkeleton
 	@Override
 	public void close()
 	{
+		if (publisher != null)
+		{
+			// Let publisher send remaining events
+			running = false;
+			try
+			{
+				publisher.join(confirmTimeout);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
 		if (channel != null && channel.isOpen())
 		{
 			try
@@ -515,47 +747,127 @@ public class ZafiraLogAppender extends AppenderSkeleton
 	}
 
 	/**
-	 * Simple Callable class that publishes messages to RabbitMQ server
+	 * Builds correlation id, it should be done in the thread which produced log event.
+	 * 
+	 * @param loggingEvent - log event
+	 * @return correlation id
 	 */
-	class AppenderTask implements Callable<LoggingEvent>
+	private String getCorrelationId(LoggingEvent loggingEvent)
 	{
-		String correlationId;
-		
-		LoggingEvent loggingEvent;
+		String testId;
+		if(loggingEvent.getLevel().equals(MetaInfoLevel.META_INFO) && ((MetaInfoMessage) loggingEvent.getMessage()).getHeaders().get("CI_TEST_ID") != null) {
+			testId = ((MetaInfoMessage) loggingEvent.getMessage()).getHeaders().get("CI_TEST_ID");
+		} else {
+			testId = ZafiraListener.getThreadCiTestId();
+		}
+		return testId != null ? routingKey + "_" + String.valueOf(testId) : routingKey;
+	}
 
-		AppenderTask(LoggingEvent loggingEvent)
+	/**
+	 * Publisher loop: takes batches of events from buffer (and spool after reconnect), publishes them and waits for
+	 * confirms. On failure connection is recreated after reconnectDelay.
+	 */
+	private void publish()
+	{
+		List<LogMessage> batch = new ArrayList<>(batchSize);
+		while (running || !buffer.isEmpty() || !batch.isEmpty())
 		{
-			this.loggingEvent = loggingEvent;
-			String testId;
-			if(loggingEvent.getLevel().equals(MetaInfoLevel.META_INFO) && ((MetaInfoMessage) loggingEvent.getMessage()).getHeaders().get("CI_TEST_ID") != null) {
-				testId = ((MetaInfoMessage) loggingEvent.getMessage()).getHeaders().get("CI_TEST_ID");
-			} else {
-				testId = ZafiraListener.getThreadCiTestId();
+			try
+			{
+				if (batch.size() < batchSize)
+				{
+					LogMessage message = batch.isEmpty() ? buffer.poll(PUBLISH_INTERVAL, TimeUnit.MILLISECONDS) : buffer.poll();
+					if (message != null)
+					{
+						batch.add(message);
+						buffer.drainTo(batch, batchSize - batch.size());
+					}
+				}
+				if (batch.isEmpty() && getSpooledCount() == 0)
+				{
+					continue;
+				}
+
+				if (channel == null || !channel.isOpen())
+				{
+					createConnection();
+					createChannel();
+					createExchange();
+				}
+
+				if (!batch.isEmpty())
+				{
+					publish(batch);
+					batch.clear();
+				}
+				// Spooled events are newer than buffered ones, spool is replayed when buffer is drained
+				if (spool != null && buffer.isEmpty())
+				{
+					List<LogMessage> spooled;
+					while (!(spooled = spool.peek(batchSize)).isEmpty())
+					{
+						publish(spooled);
+						spool.commit();
+					}
+				}
 			}
-			this.correlationId = testId != null ? routingKey + "_" + String.valueOf(testId) : routingKey;
+			catch (InterruptedException e)
+			{
+				// Interrupted on shutdown, remaining events are published on next iterations
+			}
+			catch (Exception e)
+			{
+				errorHandler.error("Unable to publish log events to RabbitMQ: " + e.getMessage());
+				handleFailure(batch);
+				if (!running)
+				{
+					break;
+				}
+				try
+				{
+					Thread.sleep(reconnectDelay);
+				}
+				catch (InterruptedException ie)
+				{
+					// Continue publishing after interruption
+				}
+			}
+		}
+	}
+
+	private void publish(List<LogMessage> messages) throws IOException, InterruptedException, TimeoutException
+	{
+		for (LogMessage message : messages)
+		{
+			AMQP.BasicProperties.Builder b = new AMQP.BasicProperties().builder();
+			b.appId(identifier)
+					.type(message.getType())
+					.correlationId(message.getCorrelationId())
+					.contentType("text/json");
+			channel.basicPublish(exchange, routingKey, b.build(), message.getPayload());
 		}
+		channel.waitForConfirmsOrDie(confirmTimeout);
+	}
 
-		/**
-		 * Method is called by ExecutorService and publishes message on RabbitMQ
-		 * 
-		 * @return loggingEvent
-		 */
-		@Override
-		public LoggingEvent call() throws Exception
+	/**
+	 * Handles events which were not confirmed: BLOCK and SPOOL keep them for retry so that they are published before
+	 * newer events, DROP_OLDEST drops them. On shutdown events are moved to spool if possible.
+	 * 
+	 * @param batch - not confirmed events
+	 */
+	private void handleFailure(List<LogMessage> batch)
+	{
+		if (!OverflowPolicy.DROP_OLDEST.equals(policy) && running)
+		{
+			return;
+		}
+		for (LogMessage message : batch)
 		{
-			if(zafiraConnected)
+			if (spool == null || !spool.write(message))
 			{
-				String payload = layout.format(loggingEvent);
-				
-				AMQP.BasicProperties.Builder b = new AMQP.BasicProperties().builder();
-				b.appId(identifier)
-						.type(loggingEvent.getLevel().toString())
-						.correlationId(String.valueOf(correlationId))
-						.contentType("text/json");
-				createChannel().basicPublish(exchange, routingKey, b.build(), payload.getBytes());
+				dropped.incrementAndGet();
 			}
-
-			return loggingEvent;
 		}
+		batch.clear();
 	}
 }
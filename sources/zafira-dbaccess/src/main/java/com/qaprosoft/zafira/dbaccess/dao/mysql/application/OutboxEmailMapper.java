@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.dbaccess.dao.mysql.application;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import com.qaprosoft.zafira.models.db.OutboxEmail;
+import com.qaprosoft.zafira.models.db.OutboxEmailAttachment;
+
+public interface OutboxEmailMapper
+{
+	void createOutboxEmail(OutboxEmail email);
+
+	void createOutboxEmailAttachments(@Param("attachments") List<OutboxEmailAttachment> attachments);
+
+	/**
+	 * Locks queued emails which are due and postpones their next attempt by lease, so that they are not claimed by
+	 * other workers while being sent. Emails locked by concurrent claim are skipped.
+	 * @param ids - email ids
+	 * @param lease - lease in milliseconds
+	 * @return claimed emails
+	 */
+	List<OutboxEmail> claimOutboxEmails(@Param("ids") List<Long> ids, @Param("lease") long lease);
+
+	/**
+	 * Loads attachments of emails with content.
+	 * @param ids - email ids
+	 * @return attachments ordered by id
+	 */
+	List<OutboxEmailAttachment> getOutboxEmailAttachments(@Param("ids") List<Long> ids);
+
+	List<Long> getDueOutboxEmailIds(@Param("limit") int limit);
+
+	Integer getOutboxEmailsCount(@Param("status") OutboxEmail.Status status);
+
+	void updateOutboxEmailAttempt(@Param("id") Long id, @Param("status") OutboxEmail.Status status, @Param("delay") long delay,
+			@Param("lastError") String lastError);
+
+	void deleteOutboxEmailById(@Param("id") Long id);
+
+	void deleteFailedOutboxEmails(@Param("days") int days);
+}
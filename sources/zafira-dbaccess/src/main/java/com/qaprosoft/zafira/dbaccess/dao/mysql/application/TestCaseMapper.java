@@ -35,6 +35,8 @@ public interface TestCaseMapper
 
 	void updateTestCase(TestCase testCase);
 
+	List<TestCase> upsertTestCases(@Param("testCases") List<TestCase> testCases);
+
 	void deleteTestCaseById(long id);
 
 	void deleteTestCase(TestCase testCase);
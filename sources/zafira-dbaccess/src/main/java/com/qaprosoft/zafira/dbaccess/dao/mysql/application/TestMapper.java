@@ -21,25 +21,44 @@ import java.util.Set;
 import com.qaprosoft.zafira.models.db.Status;
 import com.qaprosoft.zafira.models.db.Tag;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestSearchCriteria;
 import com.qaprosoft.zafira.models.db.Test;
+import com.qaprosoft.zafira.models.db.TestRun.DriverMode;
 import com.qaprosoft.zafira.models.db.WorkItem;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 
 public interface TestMapper
 {
 	void createTest(Test test);
 
+	int createQueuedTestsFromTestRun(@Param("sourceTestRunId") long sourceTestRunId, @Param("testRunId") long testRunId);
+
 	void addTags(@Param(value = "testId") Long testId, @Param(value = "tags") Set<Tag> tags);
 
 	Test getTestById(long id);
 	
 	List<Test> getTestsByTestRunId(long testRunId);
 
+	List<Test> getTestsPageByTestRunId(@Param("testRunId") long testRunId, @Param("afterGroup") String afterGroup, @Param("afterId") Long afterId, @Param("pageSize") int pageSize);
+
 	List<Test> getTestsByTestRunCiRunId(String ciRunId);
 
 	List<Test> getTestsByTestRunIdAndStatus(@Param("testRunId") long testRunId, @Param("status") Status status);
 
+	/**
+	 * Loads tests of test run by ids or CI test ids.
+	 * @param testRunId - test run id
+	 * @param ids - test ids
+	 * @param ciTestIds - CI test ids
+	 * @return tests matching any of ids
+	 */
+	List<Test> getTestsByTestRunIdAndIdsOrCiTestIds(@Param("testRunId") long testRunId, @Param("ids") List<Long> ids,
+			@Param("ciTestIds") List<String> ciTestIds);
+
+	void getTestCompareItemsByTestRunIds(@Param("testRunIds") List<Long> testRunIds, ResultHandler handler);
+
 	List<Test> getTestsByWorkItemId(long workItemId);
 	
 	void createTestWorkItem(@Param("test") Test test, @Param("workItem") WorkItem workItem);
@@ -49,14 +68,30 @@ public interface TestMapper
 	void deleteTestWorkItemByTestIdAndWorkItemType(@Param("testId") long testId, @Param("type") WorkItem.Type type);
 	
 	void updateTest(Test test);
+
+	/**
+	 * Updates locked test and returns its counters before update
+	 * @param test - test to update
+	 * @return counters of test status, known issue and blocker flags before update, null if test does not exist
+	 */
+	TestRunStatistics updateTestAndGetPreviousStatistics(Test test);
 	
 	void updateTestsNeedRerun(@Param("ids") List<Long> ids, @Param("rerun") boolean needRerun);
 
-	void deleteTestById(long id);
+	void updateTestsNeedRerunByTestRunId(@Param("testRunId") long testRunId, @Param("driverMode") DriverMode driverMode, @Param("rerunAll") boolean rerunAll);
+
+	TestRunStatistics updateTestsStatusByTestRunId(@Param("testRunId") long testRunId, @Param("statuses") List<Status> statuses, @Param("status") Status status, @Param("message") String message);
+
+	/**
+	 * Deletes test and returns its counters
+	 * @param id - test id
+	 * @return counters of deleted test, null if test does not exist
+	 */
+	TestRunStatistics deleteTestById(long id);
 
-	void deleteTestByTestRunIdAndNameAndStatus(@Param("testRunId") long testRunId, @Param("testName") String testName, @Param("status") Status status);
+	int deleteTestByTestRunIdAndNameAndStatus(@Param("testRunId") long testRunId, @Param("testName") String testName, @Param("status") Status status);
 
-	void deleteTest(Test test);
+	TestRunStatistics deleteTest(Test test);
 
 	void deleteTag(@Param(value = "testId") Long testId, @Param(value = "tagId") Long tagId);
 
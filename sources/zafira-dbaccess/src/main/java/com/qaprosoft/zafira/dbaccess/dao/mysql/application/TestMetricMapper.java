@@ -24,6 +24,8 @@ public interface TestMetricMapper
 {
 	void createTestMetric(TestMetric user);
 
+	void createTestMetrics(@Param(value = "testMetrics") List<TestMetric> testMetrics);
+
 	TestMetric getTestMetricById(long id);
 
 	List<TestMetric> getTestMetricsByTestCaseIdAndEnv(@Param(value = "testCaseId") Long testCaseId, @Param(value = "env") String env);
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.dbaccess.dao.mysql.application;
+
+import java.util.Date;
+
+import org.apache.ibatis.annotations.Param;
+
+public interface TestRollupMapper
+{
+	/**
+	 * Serializes folding and rebuilding of rollups until the end of transaction, readers are not blocked.
+	 */
+	void lockTestRollups();
+
+	/**
+	 * Moves oldest test deltas logged by database triggers into daily and monthly rollups.
+	 *
+	 * @param limit - max count of deltas
+	 * @return count of folded deltas
+	 */
+	int foldTestRollupDeltas(@Param("limit") int limit);
+
+	/**
+	 * Recalculates rollups from tests created since specified date and drops pending deltas of the same period.
+	 *
+	 * @param from - first day of month
+	 * @return count of corrected rollups
+	 */
+	int rebuildTestRollups(@Param("from") Date from);
+}
@@ -44,16 +44,24 @@ public interface TestRunMapper
 
 	TestRunStatistics getTestRunStatistics(Long id);
 
+	List<TestRunStatistics> getTestRunStatisticsByIds(@Param("ids") List<Long> ids);
+
 	List<TestRun> getTestRunsForRerun(@Param("testSuiteId") long testSuiteId, @Param("jobId") long jobId, @Param("upstreamJobId") long upstreamJobId, @Param("upstreamBuildNumber") long upstreamBuildNumber, @Param("uniqueArgs") List<Argument> uniqueArgs);
 	
 	void updateTestRun(TestRun testRun);
 
+	void updateTestRunStatistics(TestRunStatistics delta);
+
+	int recalculateTestRunStatistics(@Param("startedAfter") Date startedAfter);
+
 	void deleteTestRunById(long id);
 
 	void deleteTestRun(TestRun testRun);
 	
 	List<TestRun> getTestRunsByStatusAndStartedBefore(@Param("status") Status status, @Param("startedBefore") Date startedBefore);
 
+	List<Long> getActiveTestRunIds();
+
 	List<TestRun> searchTestRuns(TestRunSearchCriteria sc);
 
 	List<TestRun> getTestRunsForSmartRerun(JobSearchCriteria sc);
@@ -21,9 +21,14 @@ import com.qaprosoft.zafira.dbaccess.utils.SQLAdapter;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
+
 public interface WidgetMapper
 {
-	List<Map<String, Object>> executeSQL(SQLAdapter sql);
+	List<Map<String, Object>> executeSQL(SQLAdapter sql, RowBounds rowBounds);
+
+	void setStatementTimeout(@Param("timeout") long timeout);
 
 	void createWidget(Widget widget);
 
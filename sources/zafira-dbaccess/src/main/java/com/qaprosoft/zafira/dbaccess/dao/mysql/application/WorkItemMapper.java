@@ -30,7 +30,7 @@ public interface WorkItemMapper
 
 	WorkItem getWorkItemByJiraIdAndType(@Param("jiraId") String jiraId, @Param("type") Type type);
 	
-	WorkItem getWorkItemByTestCaseIdAndHashCode(@Param("testCaseId") long testCaseId, @Param("hashCode") int hashCode);
+	WorkItem getWorkItemByTestCaseIdAndFingerprint(@Param("testCaseId") long testCaseId, @Param("fingerprint") long fingerprint);
 	
 	List<WorkItem> getWorkItemsByTestCaseIdAndType(@Param("testCaseId") long testCaseId, @Param("type") Type type);
 
@@ -15,9 +15,11 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.dbaccess.dao.mysql.application.search;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.qaprosoft.zafira.models.db.Project;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Date;
 import java.util.List;
 
 public class SearchCriteria
@@ -31,6 +33,14 @@ public class SearchCriteria
 	private List<Project> projects;
 	
 	private SortOrder sortOrder = SortOrder.ASC;
+	
+	// Position of the last row of previous page (seek pagination), page is ignored when specified
+	private String cursor;
+	private Date cursorStartedAt;
+	private Long cursorId;
+	private boolean cursorValid = true;
+	// Total results are counted for page based search by default and for cursor based search on demand
+	private Boolean countTotal;
 
 	public Integer getPage()
 	{
@@ -54,7 +64,79 @@ public class SearchCriteria
 
 	public Integer getOffset()
 	{
-		return (page - 1) * pageSize;
+		return cursor != null ? 0 : (page - 1) * pageSize;
+	}
+
+	public String getCursor()
+	{
+		return cursor;
+	}
+
+	/**
+	 * Sets seek position in format 'startedAtMillis_id', started at part is empty for rows without start time.
+	 * Malformed cursor is kept and reported by {@link #isCursorValid()}.
+	 * 
+	 * @param cursor - cursor returned as next cursor of previous search result
+	 */
+	public void setCursor(String cursor)
+	{
+		this.cursor = cursor == null || cursor.isEmpty() ? null : cursor;
+		this.cursorStartedAt = null;
+		this.cursorId = null;
+		this.cursorValid = true;
+		if(this.cursor != null)
+		{
+			int separator = cursor.indexOf('_');
+			try
+			{
+				this.cursorStartedAt = separator > 0 ? new Date(Long.valueOf(cursor.substring(0, separator))) : null;
+				this.cursorId = Long.valueOf(cursor.substring(separator + 1));
+			}
+			catch (NumberFormatException e)
+			{
+				this.cursorStartedAt = null;
+				this.cursorValid = false;
+			}
+		}
+	}
+
+	@JsonIgnore
+	public boolean isCursorValid()
+	{
+		return cursorValid;
+	}
+
+	@JsonIgnore
+	public Date getCursorStartedAt()
+	{
+		return cursorStartedAt;
+	}
+
+	@JsonIgnore
+	public Long getCursorId()
+	{
+		return cursorId;
+	}
+
+	public Boolean getCountTotal()
+	{
+		return countTotal;
+	}
+
+	public void setCountTotal(Boolean countTotal)
+	{
+		this.countTotal = countTotal;
+	}
+
+	@JsonIgnore
+	public boolean isCountRequired()
+	{
+		return countTotal != null ? countTotal : cursor == null;
+	}
+
+	public static String buildCursor(Date startedAt, Long id)
+	{
+		return (startedAt != null ? String.valueOf(startedAt.getTime()) : "") + "_" + id;
 	}
 
 	public SortOrder getSortOrder()
@@ -21,6 +21,8 @@ public class SearchResult<T> extends SearchCriteria
 {
 	private List<T> results;
 	private Integer totalResults;
+	// Cursor of the next page, null when there are no more results
+	private String nextCursor;
 
 	public List<T> getResults()
 	{
@@ -41,4 +43,14 @@ public class SearchResult<T> extends SearchCriteria
 	{
 		this.totalResults = totalResults;
 	}
+
+	public String getNextCursor()
+	{
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor)
+	{
+		this.nextCursor = nextCursor;
+	}
 }
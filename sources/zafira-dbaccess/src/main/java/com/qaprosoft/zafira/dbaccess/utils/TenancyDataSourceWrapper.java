@@ -15,42 +15,228 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.dbaccess.utils;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.sql.DataSource;
 
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.qaprosoft.zafira.models.db.Tenancy;
 
 /**
- * TenancyDataSourceWrapper - initializes schema according to current tenant.
- * 
+ * TenancyDataSourceWrapper - initializes schema according to current tenant. Each tenant may hold at most
+ * maxTenantConnections of the shared pool, so one busy tenant does not starve the others. Schema of every pooled
+ * connection is remembered and search_path is switched only when connection was used by another tenant.
+ *
  * @author akhursevich
  */
+@ManagedResource(description = "Tenant aware connection pool")
 public class TenancyDataSourceWrapper {
 
-	private DataSource dataSource;
-	
-	private static final String SET_SEARCH_PATH_SQL = "SET search_path TO '%s';";
+	private static final String SET_SEARCH_PATH_SQL = "SET search_path TO '%s'";
+
+	private final ComboPooledDataSource pool;
+	private final DataSource dataSource;
+	private final int maxTenantConnections;
+
+	private final ConcurrentMap<String, TenantPool> tenantPools = new ConcurrentHashMap<>();
+	// Physical connection -> schema of the last search_path, entries go away with closed connections
+	private final Map<Connection, String> schemas = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final LongAdder schemaSwitches = new LongAdder();
+	private final LongAdder schemaHits = new LongAdder();
 
 	protected TenancyDataSourceWrapper(ComboPooledDataSource ds) {
-		this.dataSource = DataSourceInterceptor.wrapInterceptor(new DataSourceInterceptor(ds) {
+		this(ds, ds.getMaxPoolSize());
+	}
+
+	/**
+	 * @param ds - shared connection pool
+	 * @param maxTenantConnections - max connections of one tenant, 0 - three quarters of the pool
+	 */
+	protected TenancyDataSourceWrapper(ComboPooledDataSource ds, int maxTenantConnections) {
+		this.pool = ds;
+		this.maxTenantConnections = maxTenantConnections > 0 ? maxTenantConnections : Math.max(1, ds.getMaxPoolSize() * 3 / 4);
+		this.dataSource = new DelegatingDataSource(ds) {
 			@Override
-			protected Connection getConnection(ComboPooledDataSource delegate) throws SQLException {
-				Connection connection = delegate.getConnection();
-				String schema = getSchema(delegate);
-				connection.prepareStatement(String.format(SET_SEARCH_PATH_SQL, schema)).execute();
-				return connection;
+			public Connection getConnection() throws SQLException {
+				return getTenantConnection();
 			}
-		});
+		};
 	}
 
 	public DataSource getDataSource() {
 		return this.dataSource;
 	}
 
+	@ManagedAttribute(description = "Max connections of one tenant")
+	public int getMaxTenantConnections() {
+		return maxTenantConnections;
+	}
+
+	@ManagedAttribute(description = "Checkouts that switched search_path")
+	public long getSchemaSwitchCount() {
+		return schemaSwitches.sum();
+	}
+
+	@ManagedAttribute(description = "Checkouts that reused search_path of the connection")
+	public long getSchemaHitCount() {
+		return schemaHits.sum();
+	}
+
+	@ManagedAttribute(description = "Pool usage and wait time per tenant")
+	public Map<String, String> getTenantStatistics() {
+		Map<String, String> statistics = new TreeMap<>();
+		tenantPools.forEach((schema, tenantPool) -> statistics.put(schema, tenantPool.toString()));
+		return statistics;
+	}
+
+	private Connection getTenantConnection() throws SQLException {
+		String schema = getSchema(pool);
+		TenantPool tenantPool = tenantPools.computeIfAbsent(schema, s -> new TenantPool(maxTenantConnections));
+		tenantPool.acquire(pool.getCheckoutTimeout());
+		try {
+			Connection connection = pool.getConnection();
+			try {
+				setSchema(connection, schema);
+			} catch (SQLException e) {
+				connection.close();
+				throw e;
+			}
+			return wrapConnection(connection, tenantPool);
+		} catch (SQLException | RuntimeException e) {
+			tenantPool.release();
+			throw e;
+		}
+	}
+
+	private void setSchema(Connection connection, String schema) throws SQLException {
+		Connection physicalConnection = getPhysicalConnection(connection);
+		if (schema.equals(schemas.get(physicalConnection))) {
+			schemaHits.increment();
+			return;
+		}
+		schemas.remove(physicalConnection);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(String.format(SET_SEARCH_PATH_SQL, schema));
+		}
+		schemaSwitches.increment();
+		// SET outside of transaction can't be rolled back, so it is safe to remember it
+		if (connection.getAutoCommit()) {
+			schemas.put(physicalConnection, schema);
+		}
+	}
+
+	private static Connection getPhysicalConnection(Connection connection) {
+		try {
+			return connection.unwrap(Connection.class);
+		} catch (SQLException e) {
+			return connection;
+		}
+	}
+
+	/**
+	 * Returns tenant permit when connection is closed.
+	 */
+	private static Connection wrapConnection(final Connection connection, final TenantPool tenantPool) {
+		final AtomicBoolean closed = new AtomicBoolean();
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+					try {
+						connection.close();
+					} finally {
+						tenantPool.release();
+					}
+					return null;
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getTargetException();
+				}
+			}
+		};
+		return (Connection) Proxy.newProxyInstance(TenancyDataSourceWrapper.class.getClassLoader(), new Class[] { Connection.class }, handler);
+	}
+
 	private static String getSchema(ComboPooledDataSource delegate) {
 		return delegate.getIdentityToken().equals(Tenancy.getManagementSchema()) ? Tenancy.getManagementSchema() : TenancyContext.getTenantName();
 	}
+
+	/**
+	 * TenantPool - limits and measures connections checked out by one tenant.
+	 */
+	private static class TenantPool {
+
+		private final int size;
+		private final Semaphore permits;
+		private final AtomicInteger waiting = new AtomicInteger();
+		private final LongAdder checkouts = new LongAdder();
+		private final LongAdder waitTime = new LongAdder();
+		private final AtomicLong maxWaitTime = new AtomicLong();
+
+		private TenantPool(int size) {
+			this.size = size;
+			this.permits = new Semaphore(size, true);
+		}
+
+		private void acquire(int timeout) throws SQLException {
+			long start = System.nanoTime();
+			waiting.incrementAndGet();
+			try {
+				if (timeout > 0) {
+					if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+						throw new SQLTransientConnectionException("Tenant connection limit " + size + " is reached, timeout: " + timeout + " ms");
+					}
+				} else {
+					permits.acquire();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLTransientConnectionException("Interrupted while waiting for connection", e);
+			} finally {
+				waiting.decrementAndGet();
+				long wait = System.nanoTime() - start;
+				waitTime.add(wait);
+				maxWaitTime.accumulateAndGet(wait, Math::max);
+			}
+			checkouts.increment();
+		}
+
+		private void release() {
+			permits.release();
+		}
+
+		@Override
+		public String toString() {
+			int active = size - permits.availablePermits();
+			long count = checkouts.sum();
+			return String.format("active: %d/%d (%d%%), waiting: %d, checkouts: %d, avg wait: %.2f ms, max wait: %.2f ms",
+					active, size, 100 * active / size, waiting.get(), count,
+					count > 0 ? waitTime.sum() / 1e6 / count : 0.0, maxWaitTime.get() / 1e6);
+		}
+	}
 }
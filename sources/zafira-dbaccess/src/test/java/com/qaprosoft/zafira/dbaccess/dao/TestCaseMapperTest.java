@@ -19,6 +19,9 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNull;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
@@ -114,6 +117,23 @@ public class TestCaseMapperTest extends AbstractTestNGSpringContextTests
 		checkTestCase(testCaseMapper.getTestCaseById(TEST_CASE.getId()));
 	}
 
+	@Test(enabled = ENABLED, dependsOnMethods =
+	{ "createTestCase", "updateTestCase" })
+	public void upsertTestCases()
+	{
+		TEST_CASE.setInfo("Run me again!");
+		TEST_CASE.setStatus(Status.SKIPPED);
+
+		List<TestCase> testCases = testCaseMapper.upsertTestCases(Collections.singletonList(TEST_CASE));
+
+		assertEquals(testCases.size(), 1, "Existing test case must be returned");
+		assertEquals(testCases.get(0).getId(), TEST_CASE.getId(), "Existing test case must be updated");
+		assertEquals(testCases.get(0).getStatus(), Status.SKIPPED, "Status must be updated");
+		assertEquals(testCaseMapper.upsertTestCases(Collections.singletonList(TEST_CASE)).get(0).getId(), TEST_CASE.getId(),
+				"Unchanged test case must be returned");
+		checkTestCase(testCaseMapper.getTestCaseById(TEST_CASE.getId()));
+	}
+
 	/**
 	 * Turn this in to delete testCase after all tests
 	 */
@@ -126,7 +146,7 @@ public class TestCaseMapperTest extends AbstractTestNGSpringContextTests
 	private static final boolean DELETE_BY_TEST_CASE = false;
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && DELETE_BY_TEST_CASE, dependsOnMethods =
-	{ "createTestCase", "getTestCaseById", "getTestCaseByClassAndMethod", "updateTestCase" })
+	{ "createTestCase", "getTestCaseById", "getTestCaseByClassAndMethod", "updateTestCase", "upsertTestCases" })
 	public void deleteTestCase()
 	{
 		testCaseMapper.deleteTestCase(TEST_CASE);
@@ -135,7 +155,7 @@ public class TestCaseMapperTest extends AbstractTestNGSpringContextTests
 	}
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && !DELETE_BY_TEST_CASE, dependsOnMethods =
-	{ "createTestCase", "getTestCaseById", "getTestCaseByClassAndMethod", "updateTestCase" })
+	{ "createTestCase", "getTestCaseById", "getTestCaseByClassAndMethod", "updateTestCase", "upsertTestCases" })
 	public void deleteTestCaseById()
 	{
 		testCaseMapper.deleteTestCaseById((TEST_CASE.getId()));
@@ -34,6 +34,7 @@ import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestSearchCrit
 import com.qaprosoft.zafira.models.db.Status;
 import com.qaprosoft.zafira.models.db.Test;
 import com.qaprosoft.zafira.models.db.TestConfig;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 
 @org.testng.annotations.Test
 @ContextConfiguration("classpath:com/qaprosoft/zafira/dbaccess/dbaccess-test.xml")
@@ -74,6 +75,7 @@ public class TestMapperTest extends AbstractTestNGSpringContextTests
 			setKnownIssue(true);
 			setBlocker(true);
 			setDependsOnMethods("testLogin");
+			setCiTestId("ci-1");
 		}
 	};
 
@@ -127,6 +129,36 @@ public class TestMapperTest extends AbstractTestNGSpringContextTests
 		checkTest(testMapper.getTestById(TEST.getId()));
 	}
 
+	@org.testng.annotations.Test(enabled = ENABLED, dependsOnMethods =
+	{ "createTest", "updateTest" })
+	public void updateTestAndGetPreviousStatistics()
+	{
+		TEST.setStatus(Status.IN_PROGRESS);
+
+		TestRunStatistics previous = testMapper.updateTestAndGetPreviousStatistics(TEST);
+
+		assertEquals(previous.getFailed(), 1, "Previous status must be read from database");
+		assertEquals(previous.getFailedAsKnown(), 0, "Previous known issue must be read from database");
+		assertEquals(previous.getInProgress(), 0, "Only previous status must be counted");
+		assertEquals(testMapper.updateTestAndGetPreviousStatistics(TEST).getInProgress(), 1, "Previous status must be updated");
+		checkTest(testMapper.getTestById(TEST.getId()));
+	}
+
+	@org.testng.annotations.Test(enabled = ENABLED, dependsOnMethods =
+	{ "createTest", "updateTest" })
+	public void getTestsByTestRunIdAndIdsOrCiTestIds()
+	{
+		List<Long> ids = Collections.singletonList(TEST.getId());
+		List<String> ciTestIds = Collections.singletonList(TEST.getCiTestId());
+
+		assertEquals(testMapper.getTestsByTestRunIdAndIdsOrCiTestIds(TEST.getTestRunId(), ids, Collections.emptyList()).size(), 1,
+				"Test must be found by id");
+		assertEquals(testMapper.getTestsByTestRunIdAndIdsOrCiTestIds(TEST.getTestRunId(), Collections.emptyList(), ciTestIds).size(), 1,
+				"Test must be found by CI test id");
+		assertEquals(testMapper.getTestsByTestRunIdAndIdsOrCiTestIds(TEST.getTestRunId() + 1, ids, ciTestIds).size(), 0,
+				"Tests of other test runs must be skipped");
+	}
+
 	/**
 	 * Turn this in to delete test after all tests
 	 */
@@ -139,16 +171,18 @@ public class TestMapperTest extends AbstractTestNGSpringContextTests
 	private static final boolean DELETE_BY_TEST = false;
 
 	@org.testng.annotations.Test(enabled = ENABLED && DELETE_ENABLED && DELETE_BY_TEST, dependsOnMethods =
-	{ "createTest", "getTestById", "updateTest" })
+	{ "createTest", "getTestById", "updateTest", "updateTestAndGetPreviousStatistics", "getTestsByTestRunIdAndIdsOrCiTestIds" })
 	public void deleteTest()
 	{
-		testMapper.deleteTest(TEST);
+		TestRunStatistics deleted = testMapper.deleteTest(TEST);
 
+		assertEquals(deleted.getTestRunId(), TEST.getTestRunId().longValue(), "Counters of deleted test must be returned");
 		assertNull(testMapper.getTestById(TEST.getId()));
 	}
 
 	@org.testng.annotations.Test(enabled = ENABLED && DELETE_ENABLED && !DELETE_BY_TEST, dependsOnMethods =
-	{ "createTest", "getTestById", "updateTest", "searchTests" })
+	{ "createTest", "getTestById", "updateTest", "updateTestAndGetPreviousStatistics", "getTestsByTestRunIdAndIdsOrCiTestIds",
+			"searchTests" })
 	public void deleteTestById()
 	{
 		testMapper.deleteTestById((TEST.getId()));
@@ -39,6 +39,7 @@ import com.qaprosoft.zafira.models.db.TestSuite;
 import com.qaprosoft.zafira.models.db.User;
 import com.qaprosoft.zafira.models.db.WorkItem;
 import com.qaprosoft.zafira.models.db.config.Argument;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 
 @Test
 @ContextConfiguration("classpath:com/qaprosoft/zafira/dbaccess/dbaccess-test.xml")
@@ -143,6 +144,27 @@ public class TestRunMapperTest extends AbstractTestNGSpringContextTests
 		checkTestRun(testRunMapper.getTestRunById(TEST_RUN.getId()));
 	}
 
+	@Test(enabled = ENABLED, dependsOnMethods =
+	{ "createTestRun" })
+	public void updateTestRunStatistics()
+	{
+		TestRunStatistics delta = new TestRunStatistics();
+		delta.setTestRunId(TEST_RUN.getId());
+		delta.setPassed(1);
+		delta.setFailed(2);
+		delta.setFailedAsKnown(1);
+
+		// First delta creates counters, second one increments them
+		testRunMapper.updateTestRunStatistics(delta);
+		testRunMapper.updateTestRunStatistics(delta);
+
+		TestRunStatistics statistics = testRunMapper.getTestRunStatistics(TEST_RUN.getId());
+		assertEquals(statistics.getPassed(), 2, "Passed count must match");
+		assertEquals(statistics.getFailed(), 4, "Failed count must match");
+		assertEquals(statistics.getFailedAsKnown(), 2, "Failed as known count must match");
+		assertEquals(statistics.getInProgress(), 0, "In progress count must match");
+	}
+
 	/**
 	 * Turn this in to delete testRun after all tests
 	 */
@@ -155,7 +177,7 @@ public class TestRunMapperTest extends AbstractTestNGSpringContextTests
 	private static final boolean DELETE_BY_TEST_RUN = false;
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && DELETE_BY_TEST_RUN, dependsOnMethods =
-	{ "createTestRun", "getTestRunById", "updateTestRun", "getTestRunByCiRunId" })
+	{ "createTestRun", "getTestRunById", "updateTestRun", "getTestRunByCiRunId", "updateTestRunStatistics" })
 	public void deleteTestRun()
 	{
 		testRunMapper.deleteTestRun(TEST_RUN);
@@ -164,7 +186,7 @@ public class TestRunMapperTest extends AbstractTestNGSpringContextTests
 	}
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && !DELETE_BY_TEST_RUN, dependsOnMethods =
-	{ "createTestRun", "getTestRunById", "updateTestRun" })
+	{ "createTestRun", "getTestRunById", "updateTestRun", "updateTestRunStatistics" })
 	public void deleteTestRunById()
 	{
 		testRunMapper.deleteTestRunById((TEST_RUN.getId()));
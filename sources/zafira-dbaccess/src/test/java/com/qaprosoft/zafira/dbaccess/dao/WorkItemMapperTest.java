@@ -52,6 +52,7 @@ public class WorkItemMapperTest extends AbstractTestNGSpringContextTests
 			setDescription("d1");
 			setBlocker(true);
 			setHashCode(KeyGenerator.getKey());
+			setFingerprint(-7241553718315453721L);
 			setUser(user);
 			setTestCaseId(1L);
 		}
@@ -91,6 +92,18 @@ public class WorkItemMapperTest extends AbstractTestNGSpringContextTests
 		checkWorkItem(workItemMapper.getWorkItemByJiraIdAndType(WORK_ITEM.getJiraId(), Type.BUG));
 	}
 
+	@Test(enabled = ENABLED, dependsOnMethods =
+	{ "createWorkItem" })
+	public void getWorkItemByTestCaseIdAndFingerprint()
+	{
+		WorkItem workItem = workItemMapper.getWorkItemByTestCaseIdAndFingerprint(WORK_ITEM.getTestCaseId(), WORK_ITEM.getFingerprint());
+
+		checkWorkItem(workItem);
+		assertEquals(workItem.getFingerprint(), WORK_ITEM.getFingerprint(), "Fingerprint must match");
+		assertNull(workItemMapper.getWorkItemByTestCaseIdAndFingerprint(WORK_ITEM.getTestCaseId(), WORK_ITEM.getFingerprint() + 1),
+				"Work item with other fingerprint must not be found");
+	}
+
 	@Test(enabled = ENABLED, dependsOnMethods =
 	{ "createWorkItem" })
 	public void updateWorkItem()
@@ -120,7 +133,7 @@ public class WorkItemMapperTest extends AbstractTestNGSpringContextTests
 	private static final boolean DELETE_BY_WORK_ITEM = false;
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && DELETE_BY_WORK_ITEM, dependsOnMethods =
-	{ "createWorkItem", "createWorkItemFail", "getWorkItemById", "getWorkItemByJiraId", "updateWorkItem" })
+	{ "createWorkItem", "createWorkItemFail", "getWorkItemById", "getWorkItemByJiraId", "getWorkItemByTestCaseIdAndFingerprint", "updateWorkItem" })
 	public void deleteWorkItem()
 	{
 		workItemMapper.deleteWorkItem(WORK_ITEM);
@@ -129,7 +142,7 @@ public class WorkItemMapperTest extends AbstractTestNGSpringContextTests
 	}
 
 	@Test(enabled = ENABLED && DELETE_ENABLED && !DELETE_BY_WORK_ITEM, dependsOnMethods =
-	{ "createWorkItem", "createWorkItemFail", "getWorkItemById", "getWorkItemByJiraId", "updateWorkItem" })
+	{ "createWorkItem", "createWorkItemFail", "getWorkItemById", "getWorkItemByJiraId", "getWorkItemByTestCaseIdAndFingerprint", "updateWorkItem" })
 	public void deleteWorkItemById()
 	{
 		workItemMapper.deleteWorkItemById((WORK_ITEM.getId()));
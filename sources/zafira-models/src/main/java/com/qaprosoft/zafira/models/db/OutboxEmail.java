@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.db;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rendered email waiting in outbox to be sent, attachments are stored with their content, so that email can be sent by any node.
+ */
+public class OutboxEmail extends AbstractEntity
+{
+	private static final long serialVersionUID = -2411807347367813478L;
+
+	private String subject;
+	private String text;
+	private String recipients;
+	private List<OutboxEmailAttachment> attachments = new ArrayList<>();
+	private Status status = Status.QUEUED;
+	private Integer attempts;
+	private Date nextAttemptAt;
+	private String lastError;
+
+	public enum Status
+	{
+		QUEUED, FAILED
+	}
+
+	public String getSubject()
+	{
+		return subject;
+	}
+
+	public void setSubject(String subject)
+	{
+		this.subject = subject;
+	}
+
+	public String getText()
+	{
+		return text;
+	}
+
+	public void setText(String text)
+	{
+		this.text = text;
+	}
+
+	public String getRecipients()
+	{
+		return recipients;
+	}
+
+	public void setRecipients(String recipients)
+	{
+		this.recipients = recipients;
+	}
+
+	public List<OutboxEmailAttachment> getAttachments()
+	{
+		return attachments;
+	}
+
+	public void setAttachments(List<OutboxEmailAttachment> attachments)
+	{
+		this.attachments = attachments;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	public void setStatus(Status status)
+	{
+		this.status = status;
+	}
+
+	public Integer getAttempts()
+	{
+		return attempts;
+	}
+
+	public void setAttempts(Integer attempts)
+	{
+		this.attempts = attempts;
+	}
+
+	public Date getNextAttemptAt()
+	{
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(Date nextAttemptAt)
+	{
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public String getLastError()
+	{
+		return lastError;
+	}
+
+	public void setLastError(String lastError)
+	{
+		this.lastError = lastError;
+	}
+}
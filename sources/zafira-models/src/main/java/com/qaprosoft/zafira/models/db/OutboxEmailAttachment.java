@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.db;
+
+/**
+ * Attachment of outbox email, file content is stored in database.
+ */
+public class OutboxEmailAttachment extends AbstractEntity
+{
+	private static final long serialVersionUID = 4177160214383902874L;
+
+	private Long outboxEmailId;
+	private String name;
+	private String fileName;
+	private byte[] content;
+
+	public Long getOutboxEmailId()
+	{
+		return outboxEmailId;
+	}
+
+	public void setOutboxEmailId(Long outboxEmailId)
+	{
+		this.outboxEmailId = outboxEmailId;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public String getFileName()
+	{
+		return fileName;
+	}
+
+	public void setFileName(String fileName)
+	{
+		this.fileName = fileName;
+	}
+
+	public byte[] getContent()
+	{
+		return content;
+	}
+
+	public void setContent(byte[] content)
+	{
+		this.content = content;
+	}
+}
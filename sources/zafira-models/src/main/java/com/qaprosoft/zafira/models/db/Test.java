@@ -19,8 +19,10 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -36,6 +38,9 @@ public class Test extends AbstractEntity implements Comparable<Test> {
 	private String testGroup;
 	private String message;
 	private Integer messageHashCode;
+	// 64-bit value is not safe for JS clients
+	@JsonIgnore
+	private Long messageFingerprint;
 	private Date startTime;
 	private Date finishTime;
 	private int retry;
@@ -51,6 +56,11 @@ public class Test extends AbstractEntity implements Comparable<Test> {
 	private Set<TestArtifact> artifacts = new HashSet<>();
 	private String ciTestId;
 	private Set<Tag> tags;
+	// Raw result data which is saved with test, not persisted in test
+	@JsonIgnore
+	private String configXML;
+	@JsonIgnore
+	private Map<String, Long> testMetrics;
 
 	public Test() {
 		testConfig = new TestConfig();
@@ -223,6 +233,14 @@ public class Test extends AbstractEntity implements Comparable<Test> {
 		this.messageHashCode = messageHashCode;
 	}
 
+	public Long getMessageFingerprint() {
+		return messageFingerprint;
+	}
+
+	public void setMessageFingerprint(Long messageFingerprint) {
+		this.messageFingerprint = messageFingerprint;
+	}
+
 	public String getTestClass() {
 		return testClass;
 	}
@@ -255,6 +273,22 @@ public class Test extends AbstractEntity implements Comparable<Test> {
 		this.tags = tags;
 	}
 
+	public String getConfigXML() {
+		return configXML;
+	}
+
+	public void setConfigXML(String configXML) {
+		this.configXML = configXML;
+	}
+
+	public Map<String, Long> getTestMetrics() {
+		return testMetrics;
+	}
+
+	public void setTestMetrics(Map<String, Long> testMetrics) {
+		this.testMetrics = testMetrics;
+	}
+
 	@Override
 	public int compareTo(Test test) {
 		if (Arrays.asList(Status.QUEUED, Status.ABORTED, Status.SKIPPED, Status.FAILED).contains(this.getStatus())) {
@@ -67,6 +67,7 @@ public class TestRun extends AbstractEntity
 	private boolean blocker;
 	private String env;
 	private String platform;
+	private String browserVersion;
 	private String appVersion;
 	private Date startedAt;
 	private Integer elapsed;
@@ -395,6 +396,16 @@ public class TestRun extends AbstractEntity
 		this.platform = platform;
 	}
 
+	public String getBrowserVersion()
+	{
+		return browserVersion;
+	}
+
+	public void setBrowserVersion(String browserVersion)
+	{
+		this.browserVersion = browserVersion;
+	}
+
 	public Date getStartedAt()
 	{
 		return startedAt;
@@ -15,6 +15,7 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.models.db;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -27,6 +28,9 @@ public class WorkItem extends AbstractEntity
 	private String description;
 	private boolean blocker;
 	private Integer hashCode;
+	// 64-bit value is not safe for JS clients
+	@JsonIgnore
+	private Long fingerprint;
 	private Long testCaseId;
 	private User user;
 	// TODO: think about default type
@@ -92,6 +96,16 @@ public class WorkItem extends AbstractEntity
 		this.hashCode = hashCode;
 	}
 
+	public Long getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	public void setFingerprint(Long fingerprint)
+	{
+		this.fingerprint = fingerprint;
+	}
+
 	public User getUser()
 	{
 		return user;
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.dto;
+
+import com.qaprosoft.zafira.models.db.Status;
+
+/**
+ * Light projection of test used for test runs comparison.
+ */
+public class TestCompareItem
+{
+	private long testRunId;
+	private long testId;
+	private String name;
+	private Status status;
+	private boolean knownIssue;
+	private Long duration;
+	private Long messageFingerprint;
+
+	public long getTestRunId()
+	{
+		return testRunId;
+	}
+
+	public void setTestRunId(long testRunId)
+	{
+		this.testRunId = testRunId;
+	}
+
+	public long getTestId()
+	{
+		return testId;
+	}
+
+	public void setTestId(long testId)
+	{
+		this.testId = testId;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	public void setStatus(Status status)
+	{
+		this.status = status;
+	}
+
+	public boolean isKnownIssue()
+	{
+		return knownIssue;
+	}
+
+	public void setKnownIssue(boolean knownIssue)
+	{
+		this.knownIssue = knownIssue;
+	}
+
+	public Long getDuration()
+	{
+		return duration;
+	}
+
+	public void setDuration(Long duration)
+	{
+		this.duration = duration;
+	}
+
+	public Long getMessageFingerprint()
+	{
+		return messageFingerprint;
+	}
+
+	public void setMessageFingerprint(Long messageFingerprint)
+	{
+		this.messageFingerprint = messageFingerprint;
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.dto;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.qaprosoft.zafira.models.db.Status;
+
+/**
+ * Columnar comparison of several test runs: row i of every column describes test testNames[i] in corresponding test run,
+ * test id is null if test run does not contain such test. Row is identical if test is present in all test runs with the
+ * same status and message.
+ */
+public class TestRunCompareMatrix implements Serializable
+{
+	private static final long serialVersionUID = -3473128612384559210L;
+
+	private List<Long> testRunIds;
+	private int total;
+	private int page;
+	private int pageSize;
+	private String[] testNames;
+	private boolean[] identical;
+	private Map<Long, Column> columns = new LinkedHashMap<>();
+
+	public static class Column implements Serializable
+	{
+		private static final long serialVersionUID = 6520975216301357312L;
+
+		private Long[] testIds;
+		private Status[] statuses;
+		private boolean[] knownIssues;
+		private Long[] durations;
+
+		public Column()
+		{
+		}
+
+		public Column(int size)
+		{
+			this.testIds = new Long[size];
+			this.statuses = new Status[size];
+			this.knownIssues = new boolean[size];
+			this.durations = new Long[size];
+		}
+
+		public Long[] getTestIds()
+		{
+			return testIds;
+		}
+
+		public void setTestIds(Long[] testIds)
+		{
+			this.testIds = testIds;
+		}
+
+		public Status[] getStatuses()
+		{
+			return statuses;
+		}
+
+		public void setStatuses(Status[] statuses)
+		{
+			this.statuses = statuses;
+		}
+
+		public boolean[] getKnownIssues()
+		{
+			return knownIssues;
+		}
+
+		public void setKnownIssues(boolean[] knownIssues)
+		{
+			this.knownIssues = knownIssues;
+		}
+
+		public Long[] getDurations()
+		{
+			return durations;
+		}
+
+		public void setDurations(Long[] durations)
+		{
+			this.durations = durations;
+		}
+	}
+
+	public List<Long> getTestRunIds()
+	{
+		return testRunIds;
+	}
+
+	public void setTestRunIds(List<Long> testRunIds)
+	{
+		this.testRunIds = testRunIds;
+	}
+
+	public int getTotal()
+	{
+		return total;
+	}
+
+	public void setTotal(int total)
+	{
+		this.total = total;
+	}
+
+	public int getPage()
+	{
+		return page;
+	}
+
+	public void setPage(int page)
+	{
+		this.page = page;
+	}
+
+	public int getPageSize()
+	{
+		return pageSize;
+	}
+
+	public void setPageSize(int pageSize)
+	{
+		this.pageSize = pageSize;
+	}
+
+	public String[] getTestNames()
+	{
+		return testNames;
+	}
+
+	public void setTestNames(String[] testNames)
+	{
+		this.testNames = testNames;
+	}
+
+	public boolean[] getIdentical()
+	{
+		return identical;
+	}
+
+	public void setIdentical(boolean[] identical)
+	{
+		this.identical = identical;
+	}
+
+	public Map<Long, Column> getColumns()
+	{
+		return columns;
+	}
+
+	public void setColumns(Map<Long, Column> columns)
+	{
+		this.columns = columns;
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Result of single dashboard widget query produced by dashboard rendering.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WidgetResultType
+{
+	private Long widgetId;
+	private List<Map<String, Object>> data;
+	private String error;
+	private boolean timedOut;
+	private long duration;
+
+	public WidgetResultType()
+	{
+	}
+
+	public WidgetResultType(Long widgetId)
+	{
+		this.widgetId = widgetId;
+	}
+
+	public Long getWidgetId()
+	{
+		return widgetId;
+	}
+
+	public void setWidgetId(Long widgetId)
+	{
+		this.widgetId = widgetId;
+	}
+
+	public List<Map<String, Object>> getData()
+	{
+		return data;
+	}
+
+	public void setData(List<Map<String, Object>> data)
+	{
+		this.data = data;
+	}
+
+	public String getError()
+	{
+		return error;
+	}
+
+	public void setError(String error)
+	{
+		this.error = error;
+	}
+
+	public boolean isTimedOut()
+	{
+		return timedOut;
+	}
+
+	public void setTimedOut(boolean timedOut)
+	{
+		this.timedOut = timedOut;
+	}
+
+	public long getDuration()
+	{
+		return duration;
+	}
+
+	public void setDuration(long duration)
+	{
+		this.duration = duration;
+	}
+}
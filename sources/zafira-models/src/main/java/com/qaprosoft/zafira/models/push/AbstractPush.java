@@ -21,7 +21,7 @@ public class AbstractPush
 {
 	public enum Type
 	{
-		TEST_RUN, TEST, TEST_RUN_STATISTICS
+		TEST_RUN, TEST, TESTS, TEST_RUN_STATISTICS
 	}
 
 	private Type type;
@@ -15,6 +15,8 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.models.push;
 
+import org.springframework.beans.BeanUtils;
+
 import com.qaprosoft.zafira.models.db.Test;
 
 public class TestPush extends AbstractPush {
@@ -23,14 +25,27 @@ public class TestPush extends AbstractPush {
 
 	public TestPush(Test test) {
 		super(Type.TEST);
-		this.test = test;
+		this.test = truncateMessage(test);
+	}
+
+	/**
+	 * Truncates test message on a copy, so the same test may be pushed several times without changing it.
+	 *
+	 * @param test - test to push
+	 * @return copy of test with truncated message or test itself if it has no message
+	 */
+	static Test truncateMessage(Test test) {
 		if(test.getMessage() != null && !test.getMessage().isEmpty())
 		{
 			// To improve performance on JS side
 			String message = test.getMessage();
 			message = message.length() > 255 ? message.substring(0, 255) : message;
-			this.test.setMessage(message + " ...");
+			Test copy = new Test();
+			BeanUtils.copyProperties(test, copy);
+			copy.setMessage(message + " ...");
+			return copy;
 		}
+		return test;
 	}
 
 	public Test getTest() {
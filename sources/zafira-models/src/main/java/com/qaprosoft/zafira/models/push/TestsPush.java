@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.models.push;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.qaprosoft.zafira.models.db.Test;
+
+/**
+ * Batch of test updates of the same test run delivered in one websocket frame.
+ */
+public class TestsPush extends AbstractPush
+{
+	private Long testRunId;
+	private List<Test> tests;
+
+	public TestsPush(Long testRunId, Collection<Test> tests)
+	{
+		super(Type.TESTS);
+		this.testRunId = testRunId;
+		this.tests = new ArrayList<>(tests.size());
+		for (Test test : tests)
+		{
+			this.tests.add(TestPush.truncateMessage(test));
+		}
+	}
+
+	public Long getTestRunId()
+	{
+		return testRunId;
+	}
+
+	public void setTestRunId(Long testRunId)
+	{
+		this.testRunId = testRunId;
+	}
+
+	public List<Test> getTests()
+	{
+		return tests;
+	}
+
+	public void setTests(List<Test> tests)
+	{
+		this.tests = tests;
+	}
+}
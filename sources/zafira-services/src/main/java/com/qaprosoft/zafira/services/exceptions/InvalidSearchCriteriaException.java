@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.exceptions;
+
+public class InvalidSearchCriteriaException extends ServiceException
+{
+	private static final long serialVersionUID = -4460361178523117245L;
+
+	public InvalidSearchCriteriaException()
+	{
+		super();
+	}
+
+	public InvalidSearchCriteriaException(String message)
+	{
+		super(message);
+	}
+
+	public InvalidSearchCriteriaException(Throwable cause)
+	{
+		super(cause);
+	}
+
+	public InvalidSearchCriteriaException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+}
\ No newline at end of file
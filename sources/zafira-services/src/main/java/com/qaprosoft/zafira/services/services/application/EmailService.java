@@ -15,30 +15,20 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.services.services.application;
 
-import static com.qaprosoft.zafira.models.db.Setting.Tool.EMAIL;
-
-import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
-import java.util.concurrent.Executors;
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.mail.javamail.MimeMessagePreparator;
 import org.springframework.stereotype.Service;
 
-import com.qaprosoft.zafira.models.db.Attachment;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import com.qaprosoft.zafira.services.services.application.emails.AsynSendEmailTask;
+import com.qaprosoft.zafira.services.services.application.emails.EmailOutbox;
 import com.qaprosoft.zafira.services.services.application.emails.IEmailMessage;
 import com.qaprosoft.zafira.services.util.FreemarkerUtil;
 
-import javax.mail.MessagingException;
-
 @Service
 public class EmailService
 {
@@ -47,63 +37,39 @@ public class EmailService
 	@Autowired
 	private FreemarkerUtil freemarkerUtil;
 
-	/*@Autowired
-	private AutowireCapableBeanFactory autowireizer;*/
-
 	@Autowired
-	private AsynSendEmailTask emailTask;
+	private EmailOutbox emailOutbox;
 
 	@Autowired
-	private SettingsService settingsService;
+	private AsynSendEmailTask emailTask;
 	
 	private static final EmailValidator validator = EmailValidator.getInstance();
 
-	@SuppressWarnings("SynchronizeOnNonFinalField")
+	/**
+	 * Renders email and puts it into outbox, email is sent in background.
+	 * @param message - email message
+	 * @param emails - recipients, invalid recipients are skipped
+	 * @return rendered email text or null if email integration is not configured
+	 * @throws ServiceException - if email can't be rendered or stored
+	 */
 	public String sendEmail(final IEmailMessage message, final String... emails) throws ServiceException
 	{
 
-		if(! settingsService.isConnected(EMAIL))
+		// SMTP availability is not checked here, outbox retries sending until SMTP server is available
+		if(! emailTask.isConfigured())
 		{
 			return null;
 		}
 
 		final String text = freemarkerUtil.getFreeMarkerTemplateContent(message.getType().getTemplateName(), message);
 
-		synchronized (emailTask) {
-			final String[] recipients = processRecipients(emails);
-
-			if (!ArrayUtils.isEmpty(recipients)) {
-				final MimeMessagePreparator preparator = mimeMessage -> {
-					boolean hasAttachments = message.getAttachments() != null;
-
-					MimeMessageHelper msg = new MimeMessageHelper(mimeMessage, hasAttachments);
-					msg.setSubject(message.getSubject());
-					msg.setTo(recipients);
-					msgSetFrom(msg);
-					msg.setText(text, true);
-					if (hasAttachments) {
-						for (Attachment attachment : message.getAttachments()) {
-							msg.addAttachment(attachment.getName() + "." + FilenameUtils.getExtension(attachment.getFile().getName()), attachment.getFile());
-							msg.addInline(attachment.getName().replaceAll(" ", "_"), attachment.getFile());
-						}
-					}
-				};
-				this.emailTask.setPreparator(preparator);
-				//autowireizer.autowireBean(this.emailTask);
-				Executors.newSingleThreadExecutor().execute(this.emailTask);
-			}
+		final String[] recipients = processRecipients(emails);
+		if (!ArrayUtils.isEmpty(recipients)) {
+			emailOutbox.enqueue(message, text, recipients);
 		}
 		return text;
 	}
 
-	private void msgSetFrom(MimeMessageHelper msg) throws UnsupportedEncodingException, MessagingException {
-		if(! StringUtils.isBlank(this.emailTask.getFromAddress())) {
-			msg.setFrom(this.emailTask.getFromAddress(), this.emailTask.getJavaMailSenderImpl().getUsername());
-		} else {
-			msg.setFrom(this.emailTask.getJavaMailSenderImpl().getUsername());
-		}
-	}
-	
 	private String [] processRecipients(String ... emails)
 	{
 		return Arrays.stream(emails).filter(email -> {
@@ -111,7 +77,7 @@ public class EmailService
 			if(! isValid) {
 				LOGGER.info("Not valid recipient specified: " + email);
 			}
-			return validator.isValid(email);
-		}).toArray(String[]::new);
+			return isValid;
+		}).distinct().toArray(String[]::new);
 	}
 }
@@ -15,22 +15,29 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.services.services.application;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.TestCaseMapper;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchResult;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestCaseSearchCriteria;
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
 import com.qaprosoft.zafira.models.db.Status;
 import com.qaprosoft.zafira.models.db.TestCase;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
@@ -40,20 +47,16 @@ import static com.qaprosoft.zafira.services.util.DateFormatter.*;
 @Service
 public class TestCaseService
 {
+	private static final String TEST_CASES_CACHE_NAME = "testCases";
+
+	// PostgreSQL JDBC driver allows up to 32767 parameters per statement, upsert binds 8 per test case
+	private static final int UPSERT_BATCH_SIZE = 4000;
+
 	@Autowired
 	private TestCaseMapper testCaseMapper;
-	
-	private static final LoadingCache<String, Lock> updateLocks = CacheBuilder.newBuilder()
-			.maximumSize(100000)
-			.expireAfterWrite(15, TimeUnit.SECONDS)
-			.build(
-					new CacheLoader<String, Lock>()
-					{
-						public Lock load(String key)
-						{
-							return new ReentrantLock();
-						}
-					});
+
+	@Autowired
+	private CacheManager cacheManager;
 	
 	@Transactional(rollbackFor = Exception.class)
 	public void createTestCase(TestCase testCase) throws ServiceException
@@ -92,45 +95,84 @@ public class TestCaseService
 	}
 	
 	@Transactional(rollbackFor = Exception.class)
-	public TestCase createOrUpdateCase(TestCase newTestCase) throws ServiceException, ExecutionException
+	public TestCase createOrUpdateCase(TestCase newTestCase) throws ServiceException
 	{
-		final String CLASS_METHOD = newTestCase.getTestClass() + "." + newTestCase.getTestMethod();
-		try
+		return createOrUpdateCases(new TestCase[] { newTestCase })[0];
+	}
+
+	/**
+	 * Registers test cases by class and method with bulk upsert, concurrent registration of the same test case is
+	 * resolved by unique constraint. Registered test cases are put into cache after commit.
+	 *
+	 * @param newTestCases - test cases to create or update
+	 * @return registered test cases in the same order
+	 * @throws ServiceException - on registration failure
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public TestCase [] createOrUpdateCases(TestCase [] newTestCases) throws ServiceException
+	{
+		// The last of duplicated test cases wins, sorted order keeps row locks of concurrent batches in the same order
+		Map<String, TestCase> testCasesByKey = new TreeMap<>();
+		for (TestCase newTestCase : newTestCases)
 		{
-			// Locking by class name and method name to avoid concurrent save of the same test case https://github.com/qaprosoft/zafira/issues/46
-			updateLocks.get(CLASS_METHOD).lock();
+			testCasesByKey.put(getKey(newTestCase), newTestCase);
+		}
+		List<TestCase> testCases = new ArrayList<>(testCasesByKey.values());
 
-			TestCase testCase = getTestCaseByClassAndMethod(newTestCase.getTestClass(), newTestCase.getTestMethod());
-			if(testCase == null)
-			{
-				createTestCase(newTestCase);
-			}
-			else if(!testCase.equals(newTestCase))
+		Map<String, TestCase> registeredTestCases = new HashMap<>();
+		for (List<TestCase> batch : Lists.partition(testCases, UPSERT_BATCH_SIZE))
+		{
+			testCaseMapper.upsertTestCases(batch).forEach(testCase -> registeredTestCases.put(getKey(testCase), testCase));
+		}
+		// Test cases inserted by concurrent transaction after statement start are skipped, next statement updates them
+		List<TestCase> skippedTestCases = testCases.stream().filter(testCase -> !registeredTestCases.containsKey(getKey(testCase)))
+				.collect(Collectors.toList());
+		for (List<TestCase> batch : Lists.partition(skippedTestCases, UPSERT_BATCH_SIZE))
+		{
+			testCaseMapper.upsertTestCases(batch).forEach(testCase -> registeredTestCases.put(getKey(testCase), testCase));
+		}
+		cacheAfterCommit(registeredTestCases.values());
+
+		TestCase [] result = new TestCase[newTestCases.length];
+		for (int i = 0; i < newTestCases.length; i++)
+		{
+			result[i] = registeredTestCases.get(getKey(newTestCases[i]));
+		}
+		return result;
+	}
+
+	private void cacheAfterCommit(Collection<TestCase> testCases)
+	{
+		final String tenantName = TenancyContext.getTenantName();
+		Runnable action = () -> {
+			Cache cache = cacheManager.getCache(TEST_CASES_CACHE_NAME);
+			for (TestCase testCase : testCases)
 			{
-				newTestCase.setId(testCase.getId());
-				updateTestCase(newTestCase);
+				// Same key as in getTestCaseByClassAndMethod
+				List<String> key = new ArrayList<>(Arrays.asList(tenantName + ":" + testCase.getTestClass(), tenantName + ":" + testCase.getTestMethod()));
+				cache.put(key, testCase);
 			}
-			else
+		};
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
 			{
-				newTestCase = testCase;
-			}
+				@Override
+				public void afterCommit()
+				{
+					action.run();
+				}
+			});
 		}
-		finally
+		else
 		{
-			updateLocks.get(CLASS_METHOD).unlock();
+			action.run();
 		}
-		return newTestCase;
 	}
-	
-	@Transactional(rollbackFor = Exception.class)
-	public TestCase [] createOrUpdateCases(TestCase [] newTestCases) throws ServiceException, ExecutionException
+
+	private static String getKey(TestCase testCase)
 	{
-		int index = 0;
-		for(TestCase newTestCase : newTestCases)
-		{
-			newTestCases[index++] = createOrUpdateCase(newTestCase);
-		}
-		return newTestCases;
+		return testCase.getTestClass() + "#" + testCase.getTestMethod();
 	}
 	
 	@Transactional(readOnly = true)
@@ -17,18 +17,23 @@ package com.qaprosoft.zafira.services.services.application;
 
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.TestConfigMapper;
 import com.qaprosoft.zafira.models.db.Test;
 import com.qaprosoft.zafira.models.db.TestConfig;
@@ -48,19 +53,34 @@ public class TestConfigService
 	@Autowired
 	private TestRunService testRunService;
 	
-	private Unmarshaller unmarshaller;
+	private static final int CONFIG_CACHE_SIZE = 5000;
+	
+	private final JAXBContext context;
+	
+	// Unmarshaller is not thread safe, so every thread uses its own one
+	private final ThreadLocal<Unmarshaller> unmarshallers;
+	
+	// Parsed arguments by SHA-1 of config XML, the same config is usually shared by many runs and tests
+	private final Cache<String, List<Argument>> configArgs = CacheBuilder.newBuilder().maximumSize(CONFIG_CACHE_SIZE).build();
 	
 	public TestConfigService()
 	{
-		JAXBContext context;
 		try
 		{
 			context = JAXBContext.newInstance(Configuration.class);
-			unmarshaller = context.createUnmarshaller();
 		} catch (JAXBException e)
 		{
 			throw new RuntimeException(e.getMessage());
 		}
+		unmarshallers = ThreadLocal.withInitial(() -> {
+			try
+			{
+				return context.createUnmarshaller();
+			} catch (JAXBException e)
+			{
+				throw new RuntimeException(e.getMessage());
+			}
+		});
 	}
 	
 	@Transactional(rollbackFor = Exception.class)
@@ -133,20 +153,59 @@ public class TestConfigService
 		testConfigMapper.deleteTestConfigById(id);
 	}
 	
+	/**
+	 * Parses config XML arguments, results are cached by XML hash and must not be modified.
+	 * 
+	 * @param configXML - config XML
+	 * @return config arguments
+	 */
 	public List<Argument> readConfigArgs(String configXML)
 	{
-		List<Argument> args = new ArrayList<>();
+		List<Argument> args = Collections.emptyList();
 		try
 		{
-			if(!StringUtils.isEmpty(configXML))
-			{
-				Configuration config = (Configuration) unmarshaller.unmarshal(new ByteArrayInputStream(configXML.getBytes()));
-				args.addAll(config.getArg());
-			}
+			args = getConfigArgs(configXML);
 		}
 		catch (Exception e) {
 			logger.error(e.getMessage());
 		}
 		return args;
 	}
+	
+	/**
+	 * Parses config XML into new configuration object, that may be modified by caller.
+	 * 
+	 * @param configXML - config XML
+	 * @return configuration
+	 * @throws JAXBException - invalid XML
+	 */
+	public Configuration readConfiguration(String configXML) throws JAXBException
+	{
+		Configuration configuration = new Configuration();
+		configuration.getArg().addAll(getConfigArgs(configXML));
+		return configuration;
+	}
+	
+	private List<Argument> getConfigArgs(String configXML) throws JAXBException
+	{
+		if(StringUtils.isEmpty(configXML))
+		{
+			return Collections.emptyList();
+		}
+		try
+		{
+			return configArgs.get(DigestUtils.sha1Hex(configXML), () -> {
+				Configuration config = (Configuration) unmarshallers.get().unmarshal(new ByteArrayInputStream(configXML.getBytes()));
+				return Collections.unmodifiableList(new ArrayList<>(config.getArg()));
+			});
+		}
+		catch (ExecutionException e)
+		{
+			if(e.getCause() instanceof JAXBException)
+			{
+				throw (JAXBException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
 }
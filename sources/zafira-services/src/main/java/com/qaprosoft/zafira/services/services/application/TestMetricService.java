@@ -52,6 +52,15 @@ public class TestMetricService
 		return result;
 	}
 	
+	@Transactional(rollbackFor = Exception.class)
+	public void createTestMetrics(List<TestMetric> testMetrics)
+	{
+		if(!testMetrics.isEmpty())
+		{
+			testMetricMapper.createTestMetrics(testMetrics);
+		}
+	}
+
 	@Transactional(rollbackFor = Exception.class)
 	public void createTestMetrics(Long testId, Map<String, Long> testMetrics)
 	{
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.qaprosoft.zafira.dbaccess.dao.mysql.application.TestRollupMapper;
+
+/**
+ * Maintains TEST_DAILY_ROLLUPS, TEST_MONTHLY_ROLLUPS and TEST_CASE_MONTHLY_ROLLUPS used by dashboard widgets. Database
+ * triggers log every counted change of tests into TEST_ROLLUP_DELTAS, service folds them into rollups and periodically
+ * rebuilds recent months from tests to correct possible drift. Monthly rollups count finished tests only.
+ */
+@Service
+public class TestRollupService
+{
+	@Autowired
+	private TestRollupMapper testRollupMapper;
+
+	/**
+	 * Folds oldest test deltas into rollups.
+	 *
+	 * @param limit - max count of deltas
+	 * @return count of folded deltas
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public int foldTestRollupDeltas(int limit)
+	{
+		testRollupMapper.lockTestRollups();
+		return testRollupMapper.foldTestRollupDeltas(limit);
+	}
+
+	/**
+	 * Rebuilds rollups from tests starting from the first day of month of specified date.
+	 *
+	 * @param from - any date of the first rebuilt month
+	 * @return count of corrected rollups
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public int rebuildTestRollups(Date from)
+	{
+		testRollupMapper.lockTestRollups();
+		return testRollupMapper.rebuildTestRollups(DateUtils.truncate(from, Calendar.MONTH));
+	}
+}
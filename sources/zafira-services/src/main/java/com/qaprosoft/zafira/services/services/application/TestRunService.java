@@ -19,30 +19,26 @@ import static com.qaprosoft.zafira.models.db.Setting.SettingType.JIRA_URL;
 import static com.qaprosoft.zafira.models.db.Status.*;
 import static com.qaprosoft.zafira.services.util.DateFormatter.actualizeSearchCriteriaDate;
 
-import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Function;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
 import com.qaprosoft.zafira.models.db.*;
 import com.qaprosoft.zafira.services.util.URLResolver;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.LocalDateTime;
 import org.joda.time.Seconds;
@@ -54,22 +50,24 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.TestRunMapper;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.JobSearchCriteria;
+import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchCriteria;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchResult;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestRunSearchCriteria;
 import com.qaprosoft.zafira.models.db.config.Argument;
 import com.qaprosoft.zafira.models.db.config.Configuration;
 import com.qaprosoft.zafira.models.dto.QueueTestRunParamsType;
+import com.qaprosoft.zafira.models.dto.TestCompareItem;
+import com.qaprosoft.zafira.models.dto.TestRunCompareMatrix;
 import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 import com.qaprosoft.zafira.services.exceptions.IntegrationException;
+import com.qaprosoft.zafira.services.exceptions.InvalidSearchCriteriaException;
 import com.qaprosoft.zafira.services.exceptions.InvalidTestRunException;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import com.qaprosoft.zafira.services.exceptions.TestRunNotFoundException;
-import com.qaprosoft.zafira.services.services.application.cache.StatisticsService;
+import com.qaprosoft.zafira.services.services.application.cache.TestRunStatisticsAggregator;
+import com.qaprosoft.zafira.services.services.application.cache.WidgetResultCache;
 import com.qaprosoft.zafira.services.services.application.emails.TestRunResultsEmail;
 import com.qaprosoft.zafira.services.util.FreemarkerUtil;
 
@@ -78,6 +76,7 @@ public class TestRunService
 {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestRunService.class);
 	public static final String DEFAULT_PROJECT = "UNKNOWN";
+	public static final int EXPORT_PAGE_SIZE = 500;
 
 	public enum FailureCause {
 		UNRECOGNIZED_FAILURE,
@@ -118,19 +117,10 @@ public class TestRunService
 	private ProjectService projectService;
 
 	@Autowired
-	private StatisticsService statisticsService;
+	private TestRunStatisticsAggregator testRunStatisticsAggregator;
 
-	private static final LoadingCache<Long, Lock> updateLocks = CacheBuilder.newBuilder()
-			.maximumSize(100000)
-			.expireAfterWrite(150, TimeUnit.MILLISECONDS)
-			.build(
-					new CacheLoader<Long, Lock>()
-					{
-						public Lock load(Long key)
-						{
-							return new ReentrantLock();
-						}
-					});
+	@Autowired
+	private WidgetResultCache widgetResultCache;
 
 	@Transactional(rollbackFor = Exception.class)
 	public void createTestRun(TestRun testRun) throws ServiceException
@@ -158,25 +148,26 @@ public class TestRunService
 	@Transactional(readOnly = true)
 	public SearchResult<TestRun> searchTestRuns(TestRunSearchCriteria sc) throws ServiceException
 	{
+		if(!sc.isCursorValid())
+		{
+			throw new InvalidSearchCriteriaException("Invalid search cursor: " + sc.getCursor());
+		}
 		actualizeSearchCriteriaDate(sc);
 		SearchResult<TestRun> results = new SearchResult<>();
 		results.setPage(sc.getPage());
 		results.setPageSize(sc.getPageSize());
 		results.setSortOrder(sc.getSortOrder());
 		List<TestRun> testRuns = testRunMapper.searchTestRuns(sc);
-		for(TestRun testRun: testRuns) {
-			if (!StringUtils.isEmpty(testRun.getConfigXML())) {
-				for (Argument arg : testConfigService.readConfigArgs(testRun.getConfigXML())) {
-					if (!StringUtils.isEmpty(arg.getValue())) {
-						if ("browser_version".equals(arg.getKey())&&!arg.getValue().equals("*")&&!arg.getValue().equals("")&&arg.getValue()!=null) {
-							testRun.setPlatform(testRun.getPlatform() + " " + arg.getValue());
-						}
-					}
-				}
-			}
-		}
 		results.setResults(testRuns);
-		results.setTotalResults(testRunMapper.getTestRunsSearchCount(sc));
+		if(testRuns.size() == sc.getPageSize())
+		{
+			TestRun last = testRuns.get(testRuns.size() - 1);
+			results.setNextCursor(SearchCriteria.buildCursor(last.getStartedAt(), last.getId()));
+		}
+		if(sc.isCountRequired())
+		{
+			results.setTotalResults(testRunMapper.getTestRunsSearchCount(sc));
+		}
 		return results;
 	}
 	
@@ -209,6 +200,12 @@ public class TestRunService
 	{
 		return testRunMapper.getTestRunsByStatusAndStartedBefore(status, startedBefore);
 	}
+
+	@Transactional(readOnly = true)
+	public List<Long> getActiveTestRunIds()
+	{
+		return testRunMapper.getActiveTestRunIds();
+	}
 	
 	@Transactional(readOnly = true)
 	public List<TestRun> getTestRunsByUpstreamJobIdAndUpstreamJobBuildNumber(Long jobId, Integer buildNumber) throws ServiceException
@@ -268,6 +265,7 @@ public class TestRunService
 				testRun.setCiRunId(queueTestRunParams.getCiRunId());
 				testRun.setElapsed(null);
 				testRun.setPlatform(null);
+				testRun.setBrowserVersion(null);
 				testRun.setConfigXML(null);
 				testRun.setConfig(null);
 				testRun.setComments(null);
@@ -279,13 +277,7 @@ public class TestRunService
 				testRun.setStartedAt(Calendar.getInstance().getTime());
 				testRun.setBuildNumber(Integer.valueOf(queueTestRunParams.getBuildNumber()));
 				createTestRun(testRun);
-				List<Test> tests = testService.getTestsByTestRunId(latestTestRunId);
-				TestRun queuedTestRun = getTestRunByCiRunId(queueTestRunParams.getCiRunId());
-				for (Test test : tests) {
-					if (test.getStatus() != Status.QUEUED) {
-						testService.createQueuedTest(test, queuedTestRun.getId());
-					}
-				}
+				testService.createQueuedTests(latestTestRunId, testRun.getId());
 			}
 		} else {
 			testRun = existingRun;
@@ -309,6 +301,7 @@ public class TestRunService
 	public void deleteTestRun(TestRun testRun) throws ServiceException
 	{
 		testRunMapper.deleteTestRun(testRun);
+		testRunStatisticsAggregator.expire(testRun.getId());
 	}
 
 	@CacheEvict(value = "environments", allEntries = true)
@@ -316,6 +309,7 @@ public class TestRunService
 	public void deleteTestRunById(Long id) throws ServiceException
 	{
 		testRunMapper.deleteTestRunById(id);
+		testRunStatisticsAggregator.expire(id);
 	}
 	
 	@Transactional(rollbackFor = Exception.class)
@@ -403,6 +397,10 @@ public class TestRunService
 			{
 				testRun.setPlatform(config.getPlatform());
 			}
+			if (!StringUtils.isEmpty(config.getBrowserVersion()) && !config.getBrowserVersion().equals("*"))
+			{
+				testRun.setBrowserVersion(config.getBrowserVersion());
+			}
 		}
 	}
 
@@ -410,16 +408,9 @@ public class TestRunService
 	public TestRun abortTestRun(TestRun testRun, String abortCause) throws ServiceException, InterruptedException
 	{
 		if(testRun != null){
-			List<Test> tests = testService.getTestsByTestRunId(testRun.getId());
 			if(IN_PROGRESS.equals(testRun.getStatus()) || QUEUED.equals(testRun.getStatus()) && isBuildFailure(abortCause))
 			{
-				for(Test test : tests)
-				{
-					if(IN_PROGRESS.equals(test.getStatus()) || QUEUED.equals(test.getStatus()))
-					{
-						testService.abortTest(test, abortCause);
-					}
-				}
+				testService.abortTests(testRun.getId(), abortCause);
 			}
 			testRun = addComment(testRun.getId(), abortCause);
 			testRun.setStatus(Status.ABORTED);
@@ -437,8 +428,7 @@ public class TestRunService
 			tr.setReviewed(true);
 		}
 		tr = updateTestRun(tr);
-		TestRunStatistics.Action action = tr.isReviewed() ? TestRunStatistics.Action.MARK_AS_REVIEWED : TestRunStatistics.Action.MARK_AS_NOT_REVIEWED;
-		updateStatistics(tr.getId(), action);
+		testRunStatisticsAggregator.markAsReviewed(tr.getId(), tr.isReviewed());
 		return tr;
 	}
 
@@ -461,12 +451,16 @@ public class TestRunService
 			// Do not update test run status if tests are running and one clicks mark as passed or mark as known issue (https://github.com/qaprosoft/zafira/issues/34)
 			if ((finishTestRun || !IN_PROGRESS.equals(testRun.getStatus())))
 			{
-				for (Test test : tests)
+				long inProgress = tests.stream().filter(test -> IN_PROGRESS.equals(test.getStatus())).count();
+				int skipped = testService.skipInProgressTests(testRun.getId());
+				if (skipped == inProgress)
 				{
-					if (IN_PROGRESS.equals(test.getStatus()))
-					{
-						testService.skipTest(test);
-					}
+					tests.stream().filter(test -> IN_PROGRESS.equals(test.getStatus())).forEach(test -> test.setStatus(SKIPPED));
+				}
+				else
+				{
+					// Some tests were started or finished concurrently, reload actual state
+					tests = testService.getTestsByTestRunId(testRun.getId());
 				}
 				testRun.setStatus(tests.size() > 0 ? PASSED : SKIPPED);
 				testRun.setKnownIssue(false);
@@ -507,35 +501,148 @@ public class TestRunService
 		}
 		
 		updateTestRun(testRun);
-		testService.updateTestRerunFlags(testRun, tests);
+		testService.updateTestRerunFlags(testRun);
+		if(finishTestRun)
+		{
+			widgetResultCache.invalidate();
+			testRunStatisticsAggregator.expire(testRun.getId());
+		}
 		return testRun;
 	}
 	
+	/**
+	 * Compares tests of several test runs by name, tests are streamed from database and kept in columns of primitive arrays
+	 * indexed by test name dictionary, only requested page of matrix is materialized.
+	 * @param testRunIds - ids of test runs to compare
+	 * @param differencesOnly - skip tests that are present in all test runs with the same status and message
+	 * @param page - page number starting from 1
+	 * @param pageSize - count of tests per page
+	 * @return compare matrix page
+	 */
 	@Transactional(readOnly=true)
-	public Map<Long, Map<String, Test>> createCompareMatrix(List<Long> testRunIds) throws ServiceException
+	public TestRunCompareMatrix createCompareMatrix(List<Long> testRunIds, boolean differencesOnly, int page, int pageSize)
 	{
-		Map<Long, Map<String, Test>> testNamesWithTests = new HashMap<>();
-		Set<String> testNames = new HashSet<>();
-		for(Long id : testRunIds)
+		Map<Long, Integer> runIndexes = new LinkedHashMap<>();
+		for (Long testRunId : testRunIds)
 		{
-			List<Test> tests = testService.getTestsByTestRunId(id);
-			testNamesWithTests.put(id, new HashMap<String, Test>());
-			for(Test test : tests)
+			runIndexes.putIfAbsent(testRunId, runIndexes.size());
+		}
+		Map<String, Integer> dictionary = new HashMap<>();
+		List<String> testNames = new ArrayList<>();
+		CompareColumn[] columns = new CompareColumn[runIndexes.size()];
+		for (int i = 0; i < columns.length; i++)
+		{
+			columns[i] = new CompareColumn();
+		}
+		testService.getTestCompareItemsByTestRunIds(new ArrayList<>(runIndexes.keySet()), item -> {
+			Integer row = dictionary.get(item.getName());
+			if (row == null)
 			{
-				testNames.add(test.getName());
-				testNamesWithTests.get(id).put(test.getName(), test);
+				row = testNames.size();
+				dictionary.put(item.getName(), row);
+				testNames.add(item.getName());
 			}
+			columns[runIndexes.get(item.getTestRunId())].set(row, item);
+		});
+
+		Integer[] rows = new Integer[testNames.size()];
+		for (int i = 0; i < rows.length; i++)
+		{
+			rows[i] = i;
 		}
-		for(Long testRunId : testRunIds)
+		Arrays.sort(rows, Comparator.comparing(testNames::get));
+
+		int[] selected = new int[rows.length];
+		boolean[] identical = new boolean[rows.length];
+		int total = 0;
+		for (int row : rows)
 		{
-			for(String testName : testNames)
+			boolean same = true;
+			for (CompareColumn column : columns)
+			{
+				same = same && column.contains(row) && column.statuses[row] == columns[0].statuses[row]
+						&& column.fingerprints[row] == columns[0].fingerprints[row];
+			}
+			if (!differencesOnly || !same)
 			{
-				testNamesWithTests.get(testRunId).putIfAbsent(testName, null);
+				identical[total] = same;
+				selected[total++] = row;
 			}
 		}
-		return testNamesWithTests;
+
+		int from = (int) Math.min((long) (page - 1) * pageSize, total);
+		int to = (int) Math.min((long) from + pageSize, total);
+		TestRunCompareMatrix matrix = new TestRunCompareMatrix();
+		matrix.setTestRunIds(new ArrayList<>(runIndexes.keySet()));
+		matrix.setTotal(total);
+		matrix.setPage(page);
+		matrix.setPageSize(pageSize);
+		matrix.setTestNames(new String[to - from]);
+		matrix.setIdentical(Arrays.copyOfRange(identical, from, to));
+		for (Map.Entry<Long, Integer> run : runIndexes.entrySet())
+		{
+			matrix.getColumns().put(run.getKey(), new TestRunCompareMatrix.Column(to - from));
+		}
+		for (int i = from; i < to; i++)
+		{
+			int row = selected[i];
+			matrix.getTestNames()[i - from] = testNames.get(row);
+			for (Map.Entry<Long, Integer> run : runIndexes.entrySet())
+			{
+				columns[run.getValue()].copyTo(row, matrix.getColumns().get(run.getKey()), i - from);
+			}
+		}
+		return matrix;
 	}
-	
+
+	/**
+	 * Tests of one test run in compare matrix, index in arrays is test name index, array grows as new names appear.
+	 */
+	private static class CompareColumn
+	{
+		private static final Status[] STATUSES = Status.values();
+
+		private long[] testIds = new long[1024];
+		private byte[] statuses = new byte[1024];
+		private boolean[] knownIssues = new boolean[1024];
+		private long[] durations = new long[1024];
+		private long[] fingerprints = new long[1024];
+
+		private void set(int row, TestCompareItem item)
+		{
+			if (row >= testIds.length)
+			{
+				int size = Math.max(testIds.length * 2, row + 1);
+				testIds = Arrays.copyOf(testIds, size);
+				statuses = Arrays.copyOf(statuses, size);
+				knownIssues = Arrays.copyOf(knownIssues, size);
+				durations = Arrays.copyOf(durations, size);
+				fingerprints = Arrays.copyOf(fingerprints, size);
+			}
+			testIds[row] = item.getTestId();
+			statuses[row] = (byte) (item.getStatus() != null ? item.getStatus().ordinal() + 1 : 0);
+			knownIssues[row] = item.isKnownIssue();
+			durations[row] = item.getDuration() != null ? item.getDuration() : -1;
+			fingerprints[row] = item.getMessageFingerprint() != null ? item.getMessageFingerprint() : 0;
+		}
+
+		private boolean contains(int row)
+		{
+			return row < testIds.length && testIds[row] != 0;
+		}
+
+		private void copyTo(int row, TestRunCompareMatrix.Column column, int index)
+		{
+			if (contains(row))
+			{
+				column.getTestIds()[index] = testIds[row];
+				column.getStatuses()[index] = statuses[row] > 0 ? STATUSES[statuses[row] - 1] : null;
+				column.getKnownIssues()[index] = knownIssues[row];
+				column.getDurations()[index] = durations[row] >= 0 ? durations[row] : null;
+			}
+		}
+	}
+
 	@Transactional(readOnly=true)
 	public String sendTestRunResultsEmail(final String testRunId, boolean showOnlyFailures, boolean showStacktrace, final String ... recipients) throws ServiceException, JAXBException
 	{
@@ -575,6 +682,21 @@ public class TestRunService
 
 	@Transactional(readOnly=true)
 	public String exportTestRunHTML(final String id) throws ServiceException, JAXBException
+	{
+		StringWriter writer = new StringWriter();
+		exportTestRunHTML(id, writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Renders test run results HTML directly into writer, tests are loaded by pages while rendering.
+	 * @param id - test run id or CI run id
+	 * @param writer - output writer
+	 * @throws ServiceException - if test run not found or template can't be processed
+	 * @throws JAXBException - if test run config is invalid
+	 */
+	@Transactional(readOnly=true)
+	public void exportTestRunHTML(final String id, Writer writer) throws ServiceException, JAXBException
 	{
 		TestRun testRun = getTestRunByIdFull(id);
 		if(testRun == null)
@@ -584,23 +706,17 @@ public class TestRunService
 		Configuration configuration = readConfiguration(testRun.getConfigXML());
 		configuration.getArg().add(new Argument("zafira_service_url", urlResolver.buildWebURL()));
 
-		List<Test> tests = testService.getTestsByTestRunId(id);
+		Iterable<Test> tests = testService.iterateTestsByTestRunId(testRun.getId(), EXPORT_PAGE_SIZE);
 
 		TestRunResultsEmail email = new TestRunResultsEmail(configuration, testRun, tests);
 		email.setJiraURL(settingsService.getSettingByType(JIRA_URL));
 		email.setSuccessRate(calculateSuccessRate(testRun));
-		return freemarkerUtil.getFreeMarkerTemplateContent(email.getType().getTemplateName(), email);
+		freemarkerUtil.processTemplate(email.getType().getTemplateName(), email, writer);
 	}
 
 	public Configuration readConfiguration(String xml) throws JAXBException
 	{
-        Configuration configuration = new Configuration();
-        if (!StringUtils.isEmpty(xml)) {
-            ByteArrayInputStream xmlBA = new ByteArrayInputStream(xml.getBytes());
-            configuration = (Configuration) JAXBContext.newInstance(Configuration.class).createUnmarshaller().unmarshal(xmlBA);
-            IOUtils.closeQuietly(xmlBA);
-        }
-		return configuration;
+		return testConfigService.readConfiguration(xml);
 	}
 
 	public static int calculateSuccessRate(TestRun testRun)
@@ -648,138 +764,129 @@ public class TestRunService
 	}
 
 	/**
-	 * Method contains a container needed to do a work safe with Test run statistics cache thread
+	 * Applies difference between previous and actual test counters to persisted test run statistics
 	 * @param testRunId - test run id
-	 * @param statisticsFunction - action with cached values
-	 * @return testRunStatistics with value incremented
+	 * @param previous - counters of test before update (null for new test)
+	 * @param actual - counters of test after update (null for deleted test)
 	 */
-	private TestRunStatistics updateStatisticsSafe(Long testRunId, Function<TestRunStatistics, TestRunStatistics> statisticsFunction)
+	@Transactional(rollbackFor = Exception.class)
+	public void updateTestRunCounters(Long testRunId, TestRunStatistics previous, TestRunStatistics actual)
 	{
-		TestRunStatistics testRunStatistics = null;
-		Lock lock = null;
-		try
+		TestRunStatistics delta = new TestRunStatistics();
+		delta.setTestRunId(testRunId);
+		if (actual != null)
 		{
-			lock = updateLocks.get(testRunId);
-			lock.lock();
-			testRunStatistics = statisticsService.getTestRunStatistic(testRunId);
-			testRunStatistics = statisticsFunction.apply(testRunStatistics);
-			testRunStatistics = statisticsService.setTestRunStatistic(testRunStatistics);
-		} catch (Exception e)
+			addCounters(delta, actual, 1);
+		}
+		if (previous != null)
 		{
-			LOGGER.error(e.getMessage(), e);
-		} finally
+			addCounters(delta, previous, -1);
+		}
+		if (delta.getPassed() != 0 || delta.getFailed() != 0 || delta.getFailedAsKnown() != 0 || delta.getFailedAsBlocker() != 0
+				|| delta.getSkipped() != 0 || delta.getInProgress() != 0 || delta.getAborted() != 0 || delta.getQueued() != 0)
 		{
-			if(lock != null)
+			testRunMapper.updateTestRunStatistics(delta);
+			testRunStatisticsAggregator.record(delta);
+		}
+	}
+
+	/**
+	 * Recalculates persisted statistics from tests for test runs started after specified date
+	 * @param startedAfter - test run start date
+	 * @return count of corrected test runs
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public int recalculateTestRunStatistics(Date startedAfter)
+	{
+		return testRunMapper.recalculateTestRunStatistics(startedAfter);
+	}
+
+	/**
+	 * Builds statistics counters of single test
+	 * @param test - test
+	 * @return counters of test
+	 */
+	public static TestRunStatistics countTest(Test test)
+	{
+		TestRunStatistics counters = new TestRunStatistics();
+		if (test.getStatus() != null)
+		{
+			updateCounters(counters, test.getStatus(), 1);
+			if (FAILED.equals(test.getStatus()))
 			{
-				lock.unlock();
+				counters.setFailedAsKnown(test.isKnownIssue() ? 1 : 0);
+				counters.setFailedAsBlocker(test.isBlocker() ? 1 : 0);
 			}
 		}
-		return testRunStatistics;
+		return counters;
+	}
+
+	/**
+	 * Builds statistics counters of several tests having the same status
+	 * @param status - tests status
+	 * @param count - count of tests
+	 * @return counters of tests
+	 */
+	public static TestRunStatistics countTests(Status status, int count)
+	{
+		TestRunStatistics counters = new TestRunStatistics();
+		updateCounters(counters, status, count);
+		return counters;
 	}
 
 	/**
-	 * Increment value to statistics
-	 * @param testRunStatistics - cached test run statistic
-	 * @param status - test status
-	 * @param increment - integer (to increment - positive number, to decrement - negative number)
-	 * @return testRunStatistics with value incremented
+	 * Calculates total count of tests in counters
+	 * @param counters - statistics counters
+	 * @return count of tests
 	 */
-	private TestRunStatistics updateStatistics(TestRunStatistics testRunStatistics, Status status, int increment)
+	public static int getTestsCount(TestRunStatistics counters)
+	{
+		return counters.getPassed() + counters.getFailed() + counters.getSkipped() + counters.getInProgress() + counters.getAborted()
+				+ counters.getQueued();
+	}
+
+	private static void updateCounters(TestRunStatistics counters, Status status, int increment)
 	{
 		switch (status)
 		{
 			case PASSED:
-				testRunStatistics.setPassed(testRunStatistics.getPassed() + increment);
+				counters.setPassed(counters.getPassed() + increment);
 				break;
 			case FAILED:
-				testRunStatistics.setFailed(testRunStatistics.getFailed() + increment);
+				counters.setFailed(counters.getFailed() + increment);
 				break;
 			case SKIPPED:
-				testRunStatistics.setSkipped(testRunStatistics.getSkipped() + increment);
+				counters.setSkipped(counters.getSkipped() + increment);
 				break;
 			case ABORTED:
-				testRunStatistics.setAborted(testRunStatistics.getAborted() + increment);
+				counters.setAborted(counters.getAborted() + increment);
 				break;
 			case IN_PROGRESS:
-				testRunStatistics.setInProgress(testRunStatistics.getInProgress() + increment);
-				break;
-			default:
-				break;
-		}
-		return testRunStatistics;
-	}
-
-	/**
-	 * Update statistic by {@link com.qaprosoft.zafira.models.dto.TestRunStatistics.Action}
-	 * @param testRunId - test run id
-	 * @return new statistics
-	 */
-	public TestRunStatistics updateStatistics(Long testRunId, TestRunStatistics.Action action)
-	{
-		return updateStatisticsSafe(testRunId, testRunStatistics -> {
-			switch (action)
-			{
-			case MARK_AS_KNOWN_ISSUE:
-				testRunStatistics.setFailedAsKnown(testRunStatistics.getFailedAsKnown() + 1);
-				break;
-			case REMOVE_KNOWN_ISSUE:
-				testRunStatistics.setFailedAsKnown(testRunStatistics.getFailedAsKnown() - 1);
-				break;
-			case MARK_AS_BLOCKER:
-				testRunStatistics.setFailedAsBlocker(testRunStatistics.getFailedAsBlocker() + 1);
+				counters.setInProgress(counters.getInProgress() + increment);
 				break;
-			case REMOVE_BLOCKER:
-				testRunStatistics.setFailedAsBlocker(testRunStatistics.getFailedAsBlocker() - 1);
-				break;
-			case MARK_AS_REVIEWED:
-				testRunStatistics.setReviewed(true);
-				break;
-			case MARK_AS_NOT_REVIEWED:
-				testRunStatistics.setReviewed(false);
+			case QUEUED:
+				counters.setQueued(counters.getQueued() + increment);
 				break;
 			default:
 				break;
-			}
-			return testRunStatistics;
-		});
-	}
-
-	/**
-	 * Calculate new statistic by {@link com.qaprosoft.zafira.models.db.TestRun getStatus}
-	 * @param testRunId - test run id
-	 * @param status - new status
-	 * @return new statistics
-	 */
-	public TestRunStatistics updateStatistics(Long testRunId, Status status, boolean isRerun)
-	{
-		int increment = isRerun ? -1 : 1;
-		TestRunStatistics trs = updateStatisticsSafe(testRunId, testRunStatistics -> ! status.equals(IN_PROGRESS) && (isRerun || testRunStatistics.getInProgress() > 0)
-				? updateStatistics(testRunStatistics, IN_PROGRESS, -increment) :  testRunStatistics);
-		if (trs != null && trs.getQueued() > 0 && status.equals(IN_PROGRESS))
-		{
-			updateStatisticsSafe(testRunId, testRunStatistics -> {
-				testRunStatistics.setQueued(testRunStatistics.getQueued() - 1);
-				return testRunStatistics;
-			});
 		}
-		return updateStatisticsSafe(testRunId, testRunStatistics -> updateStatistics(testRunStatistics, status, increment));
 	}
 
 	/**
-	 * Calculate new statistic by {@link com.qaprosoft.zafira.models.db.TestRun getStatus}
-	 * @param testRunId - test run id
-	 * @param newStatus - new test status
-	 * @param currentStatus - current test status
-	 * @return new statistics
+	 * Adds counters of source to target
+	 * @param target - counters to update
+	 * @param source - counters to add
+	 * @param sign - 1 to add counters, -1 to subtract
 	 */
-	public TestRunStatistics updateStatistics(Long testRunId, Status newStatus, Status currentStatus)
-	{
-		return updateStatisticsSafe(testRunId, testRunStatistics -> updateStatistics(
-				updateStatistics(testRunStatistics, currentStatus, -1), newStatus, 1));
-	}
-
-	public TestRunStatistics updateStatistics(Long testRunId, Status status)
-	{
-		return updateStatistics(testRunId, status, false);
+	public static void addCounters(TestRunStatistics target, TestRunStatistics source, int sign)
+	{
+		target.setPassed(target.getPassed() + sign * source.getPassed());
+		target.setFailed(target.getFailed() + sign * source.getFailed());
+		target.setFailedAsKnown(target.getFailedAsKnown() + sign * source.getFailedAsKnown());
+		target.setFailedAsBlocker(target.getFailedAsBlocker() + sign * source.getFailedAsBlocker());
+		target.setSkipped(target.getSkipped() + sign * source.getSkipped());
+		target.setInProgress(target.getInProgress() + sign * source.getInProgress());
+		target.setAborted(target.getAborted() + sign * source.getAborted());
+		target.setQueued(target.getQueued() + sign * source.getQueued());
 	}
 }
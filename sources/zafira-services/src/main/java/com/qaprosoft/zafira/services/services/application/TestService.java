@@ -15,11 +15,8 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.services.services.application;
 
-import static com.qaprosoft.zafira.models.dto.TestRunStatistics.Action.MARK_AS_BLOCKER;
-import static com.qaprosoft.zafira.models.dto.TestRunStatistics.Action.MARK_AS_KNOWN_ISSUE;
-import static com.qaprosoft.zafira.models.dto.TestRunStatistics.Action.REMOVE_BLOCKER;
-
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.qaprosoft.zafira.models.db.*;
@@ -33,28 +30,39 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.TestMapper;
+import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchCriteria;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchResult;
-import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestCaseSearchCriteria;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestSearchCriteria;
 import com.qaprosoft.zafira.models.db.TestRun.DriverMode;
 import com.qaprosoft.zafira.models.db.WorkItem.Type;
+import com.qaprosoft.zafira.models.dto.TestCompareItem;
 import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+import com.qaprosoft.zafira.services.exceptions.InvalidSearchCriteriaException;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import com.qaprosoft.zafira.services.exceptions.TestNotFoundException;
-import com.qaprosoft.zafira.services.services.application.jmx.JiraService;
-
-import net.rcarz.jiraclient.Issue;
+import com.qaprosoft.zafira.services.services.application.cache.JiraIssueStatusCache;
+import com.qaprosoft.zafira.services.util.MessageFingerprint;
+import com.qaprosoft.zafira.services.util.PagedIterable;
 
 @Service
 public class TestService
 {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestService.class);
 
-	private static final String INV_COUNT = "InvCount";
+	/**
+	 * Max count of test results saved in one transaction
+	 */
+	public static final int RESULTS_CHUNK_SIZE = 100;
 
-	private static final String SPACE = " ";
+	private static final Map<String, Integer> SELENIUM_ERROR_HASH_CODES = new LinkedHashMap<>();
 
-	private static final List<String> SELENIUM_ERRORS = Arrays.asList("org.openqa.selenium.remote.UnreachableBrowserException", "org.openqa.selenium.TimeoutException", "Session");
+	static
+	{
+		for (String error : Arrays.asList("org.openqa.selenium.remote.UnreachableBrowserException", "org.openqa.selenium.TimeoutException", "Session"))
+		{
+			SELENIUM_ERROR_HASH_CODES.put(error, Long.hashCode(MessageFingerprint.of(error)));
+		}
+	}
 
 	@Autowired
 	private TestMapper testMapper;
@@ -72,7 +80,7 @@ public class TestService
 	private TestRunService testRunService;
 
 	@Autowired
-	private JiraService jiraService;
+	private JiraIssueStatusCache jiraIssueStatusCache;
 
 	@Autowired
 	private TestArtifactService testArtifactService;
@@ -80,14 +88,35 @@ public class TestService
 	@Autowired
 	private TagService tagService;
 
+	@Autowired
+	private TestMetricService testMetricService;
+
 	@Transactional(rollbackFor = Exception.class)
 	public Test startTest(Test test, List<String> jiraIds, String configXML) throws ServiceException
+	{
+		TestConfig config = isNewOrQueued(test) ? testConfigService.createTestConfigForTest(test, configXML) : null;
+		TestRunStatistics delta = new TestRunStatistics();
+		startTest(test, jiraIds, config, delta);
+		testRunService.updateTestRunCounters(test.getTestRunId(), null, delta);
+		return test;
+	}
+
+	/**
+	 * Starts test and adds change of test run counters to delta.
+	 *
+	 * @param test - test to start
+	 * @param jiraIds - work items of new test
+	 * @param config - config of new or queued test
+	 * @param delta - test run counters delta
+	 * @throws ServiceException - if existing test does not exist
+	 */
+	private void startTest(Test test, List<String> jiraIds, TestConfig config, TestRunStatistics delta) throws ServiceException
 	{
 		// New or Queued test
-		if ((test.getId() == null || test.getId() == 0) || test.getStatus() == Status.QUEUED)
+		if (isNewOrQueued(test))
 		{
+			TestRunStatistics previous = null;
 			//This code block is executed only for the first job run
-			TestConfig config = testConfigService.createTestConfigForTest(test, configXML);
 			test.setTestConfig(config);
 			test.setStatus(Status.IN_PROGRESS);
 
@@ -108,24 +137,68 @@ public class TestService
 			}
 			else
 			{
-				updateTest(test);
+				previous = updateTestAndGetPreviousStatistics(test);
 			}
-			testRunService.updateStatistics(test.getTestRunId(), test.getStatus());
+			addCounters(delta, previous, test);
 		}
 		// Existing test
 		else
 		{
-			testRunService.updateStatistics(test.getTestRunId(), test.getStatus(), true);
 			test.setMessage(null);
 			test.setFinishTime(null);
 			test.setStatus(Status.IN_PROGRESS);
 			test.setKnownIssue(false);
 			test.setBlocker(false);
-			updateTest(test);
+			TestRunStatistics previous = updateTestAndGetPreviousStatistics(test);
+			addCounters(delta, previous, test);
 			workItemService.deleteKnownIssuesByTestId(test.getId());
 			testArtifactService.deleteTestArtifactsByTestId(test.getId());
 		}
-		return test;
+	}
+
+	private static boolean isNewOrQueued(Test test)
+	{
+		return test.getId() == null || test.getId() == 0 || test.getStatus() == Status.QUEUED;
+	}
+
+	private static void addCounters(TestRunStatistics delta, TestRunStatistics previous, Test actual)
+	{
+		if (previous != null)
+		{
+			TestRunService.addCounters(delta, previous, -1);
+		}
+		TestRunService.addCounters(delta, TestRunService.countTest(actual), 1);
+	}
+
+	/**
+	 * Updates test and returns its counters read from database before update, so that statistics delta does not depend
+	 * on test state sent by client.
+	 *
+	 * @param test - test to update
+	 * @return counters of test before update
+	 * @throws ServiceException - if test does not exist
+	 */
+	private TestRunStatistics updateTestAndGetPreviousStatistics(Test test) throws ServiceException
+	{
+		TestRunStatistics previous = testMapper.updateTestAndGetPreviousStatistics(test);
+		if (previous == null)
+		{
+			throw new TestNotFoundException();
+		}
+		updateTags(test.getTags(), test.getId());
+		return previous;
+	}
+
+	/**
+	 * Updates test and adjusts test run counters by difference between locked test row and updated test.
+	 *
+	 * @param test - test to update
+	 * @throws ServiceException - if test does not exist
+	 */
+	private void updateTestAndCounters(Test test) throws ServiceException
+	{
+		TestRunStatistics previous = updateTestAndGetPreviousStatistics(test);
+		testRunService.updateTestRunCounters(test.getTestRunId(), previous, TestRunService.countTest(test));
 	}
 
 	@Transactional(rollbackFor = Exception.class)
@@ -134,17 +207,23 @@ public class TestService
 		addTags(test.getTags(), test.getId());
 	}
 
+	/**
+	 * Copies all not queued tests of source test run into queued test run, test run statistics are seeded with count of
+	 * copied tests.
+	 *
+	 * @param sourceTestRunId - id of test run to copy tests from
+	 * @param queuedTestRunId - queued test run id
+	 * @return count of queued tests
+	 */
 	@Transactional(rollbackFor = Exception.class)
-	public void createQueuedTest(Test test, Long queuedTestRunId) throws ServiceException
+	public int createQueuedTests(long sourceTestRunId, long queuedTestRunId)
 	{
-		test.setId(null);
-		test.setTestRunId(queuedTestRunId);
-		test.setStatus(Status.QUEUED);
-		test.setTestConfig(null);
-		test.setNeedRerun(true);
-		test.setCiTestId(null);
-		test.setTags(null);
-		createTest(test);
+		int count = testMapper.createQueuedTestsFromTestRun(sourceTestRunId, queuedTestRunId);
+		if (count > 0)
+		{
+			testRunService.updateTestRunCounters(queuedTestRunId, null, TestRunService.countTests(Status.QUEUED, count));
+		}
+		return count;
 	}
 
 	@Transactional(rollbackFor = Exception.class)
@@ -158,49 +237,49 @@ public class TestService
 	public Test finishTest(Test test, String configXML) throws ServiceException
 	{
 		Test existingTest = getNotNullTestById(test.getId());
+		TestRunStatistics delta = new TestRunStatistics();
+		finishTest(test, existingTest, testConfigService.createTestConfigForTest(test, configXML), delta);
+		testRunService.updateTestRunCounters(existingTest.getTestRunId(), null, delta);
+		return existingTest;
+	}
 
+	/**
+	 * Finishes test and adds change of test run counters to delta.
+	 *
+	 * @param test - test result
+	 * @param existingTest - test loaded from database, updated with result
+	 * @param config - test config
+	 * @param delta - test run counters delta
+	 */
+	private void finishTest(Test test, Test existingTest, TestConfig config, TestRunStatistics delta)
+	{
 		existingTest.setFinishTime(test.getFinishTime());
 		existingTest.setStatus(test.getStatus());
 		existingTest.setRetry(test.getRetry());
-		existingTest.setTestConfig(testConfigService.createTestConfigForTest(test, configXML));
+		existingTest.setTestConfig(config);
 
 		// Wrap all additional test finalization logic to make sure status saved
 		try
 		{
 			String message = test.getMessage();
+			long messageFingerprint = getTestMessageFingerprint(message);
 			if (message != null)
 			{
 				existingTest.setMessage(message);
-				// Handling of known Selenium errors
-				for (String error : SELENIUM_ERRORS)
-				{
-					if (message.startsWith(error))
-					{
-						message = error;
-						break;
-					}
-				}
-				existingTest.setMessageHashCode(getTestMessageHashCode(message));
+				existingTest.setMessageFingerprint(messageFingerprint);
+				existingTest.setMessageHashCode(getTestMessageHashCode(message, messageFingerprint));
 			}
 			
 			// Resolve known issues
 			if (Status.FAILED.equals(test.getStatus()))
 			{
-				WorkItem knownIssue = workItemService.getWorkItemByTestCaseIdAndHashCode(existingTest.getTestCaseId(), getTestMessageHashCode(test.getMessage()));
+				WorkItem knownIssue = workItemService.getWorkItemByTestCaseIdAndFingerprint(existingTest.getTestCaseId(), messageFingerprint);
 				if (knownIssue != null)
 				{
-					Issue issueFromJira = jiraService.getIssue(knownIssue.getJiraId());
-					boolean isJiraIdClosed = jiraService.isConnected() && issueFromJira != null
-							&& jiraService.isIssueClosed(issueFromJira);
-					if (!isJiraIdClosed)
+					if (!jiraIssueStatusCache.isIssueClosed(knownIssue.getJiraId()))
 					{
 						existingTest.setKnownIssue(true);
 						existingTest.setBlocker(knownIssue.isBlocker());
-						testRunService.updateStatistics(test.getTestRunId(), MARK_AS_KNOWN_ISSUE);
-						if (existingTest.isBlocker())
-						{
-							testRunService.updateStatistics(test.getTestRunId(), TestRunStatistics.Action.MARK_AS_BLOCKER);
-						}
 						testMapper.createTestWorkItem(existingTest, knownIssue);
 						if (existingTest.getWorkItems() == null)
 						{
@@ -236,18 +315,146 @@ public class TestService
 		}
 		finally 
 		{
-			testMapper.updateTest(existingTest);
-			testRunService.updateStatistics(existingTest.getTestRunId(), existingTest.getStatus());
+			// Counters before update are read from locked row, concurrent results of the same test are not counted twice
+			TestRunStatistics previous = testMapper.updateTestAndGetPreviousStatistics(existingTest);
+			if (previous != null)
+			{
+				addCounters(delta, previous, existingTest);
+			}
 		}
-		return existingTest;
 	}
 	
+	/**
+	 * Registers chunk of test results of one test run in one transaction: tests without id are started (and finished if
+	 * final status is provided), tests with id are finished. Results are idempotent, so that request can be retried
+	 * after some of its chunks are committed: test without id matching existing test of test run by test case and CI
+	 * test id is not created again, result which is already saved is skipped. Test configs are resolved once per config
+	 * XML and test run counters are updated once per chunk, chunk should not exceed {@link #RESULTS_CHUNK_SIZE}.
+	 * @param testRunId - test run id
+	 * @param tests - test results with config XML, work items and metrics
+	 * @return saved tests in order of results
+	 * @throws ServiceException - on any of results failure
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public List<Test> saveTestResults(long testRunId, List<Test> tests) throws ServiceException
+	{
+		List<Long> ids = new ArrayList<>();
+		List<String> ciTestIds = new ArrayList<>();
+		for (Test test : tests)
+		{
+			test.setTestRunId(testRunId);
+			if (test.getId() != null && test.getId() != 0)
+			{
+				ids.add(test.getId());
+			}
+			else if (test.getCiTestId() != null)
+			{
+				ciTestIds.add(test.getCiTestId());
+			}
+		}
+		Map<Long, Test> existingById = new HashMap<>();
+		Map<String, Test> existingByKey = new HashMap<>();
+		if (!ids.isEmpty() || !ciTestIds.isEmpty())
+		{
+			for (Test existing : testMapper.getTestsByTestRunIdAndIdsOrCiTestIds(testRunId, ids, ciTestIds))
+			{
+				existingById.put(existing.getId(), existing);
+				if (existing.getCiTestId() != null)
+				{
+					existingByKey.put(getTestKey(existing), existing);
+				}
+			}
+		}
+
+		Map<String, TestConfig> configs = new HashMap<>();
+		TestRunStatistics delta = new TestRunStatistics();
+		List<Test> savedTests = new ArrayList<>(tests.size());
+		List<TestMetric> testMetrics = new ArrayList<>();
+		for (Test test : tests)
+		{
+			Status status = test.getStatus();
+			boolean isNew = test.getId() == null || test.getId() == 0;
+			Test existingTest = isNew ? (test.getCiTestId() != null ? existingByKey.get(getTestKey(test)) : null) : existingById.get(test.getId());
+			if (existingTest != null && !Status.QUEUED.equals(existingTest.getStatus())
+					&& (existingTest.getStatus().equals(status) || (isNew && !isFinished(status))))
+			{
+				// Result is saved by previous attempt of request
+				savedTests.add(existingTest);
+				continue;
+			}
+
+			String configXML = StringUtils.defaultString(test.getConfigXML());
+			TestConfig config = configs.get(configXML);
+			if (config == null)
+			{
+				config = testConfigService.createTestConfigForTest(test, configXML);
+				configs.put(configXML, config);
+			}
+
+			if (isNew && (existingTest == null || Status.QUEUED.equals(existingTest.getStatus())))
+			{
+				if (existingTest != null)
+				{
+					// Queued test is started
+					test.setId(existingTest.getId());
+					test.setStatus(Status.QUEUED);
+				}
+				List<String> jiraIds = test.getWorkItems() != null ? test.getWorkItems().stream().map(WorkItem::getJiraId).collect(Collectors.toList())
+						: null;
+				startTest(test, jiraIds, config, delta);
+				if (test.getCiTestId() != null)
+				{
+					existingByKey.put(getTestKey(test), test);
+				}
+				if (!isFinished(status))
+				{
+					savedTests.add(test);
+					continue;
+				}
+				test.setStatus(status);
+			}
+			else if (isNew)
+			{
+				// Test is started by previous attempt of request
+				test.setId(existingTest.getId());
+			}
+			existingTest = getNotNullTestById(test.getId());
+			finishTest(test, existingTest, config, delta);
+			deleteQueuedTest(existingTest, delta);
+			if (test.getTestMetrics() != null)
+			{
+				for (Map.Entry<String, Long> metric : test.getTestMetrics().entrySet())
+				{
+					testMetrics.add(new TestMetric(metric.getKey(), metric.getValue(), existingTest.getId()));
+				}
+			}
+			existingById.put(existingTest.getId(), existingTest);
+			if (existingTest.getCiTestId() != null)
+			{
+				existingByKey.put(getTestKey(existingTest), existingTest);
+			}
+			savedTests.add(existingTest);
+		}
+		testMetricService.createTestMetrics(testMetrics);
+		testRunService.updateTestRunCounters(testRunId, null, delta);
+		return savedTests;
+	}
+
+	private static boolean isFinished(Status status)
+	{
+		return status != null && !Status.IN_PROGRESS.equals(status) && !Status.QUEUED.equals(status);
+	}
+
+	private static String getTestKey(Test test)
+	{
+		return test.getTestCaseId() + ":" + test.getCiTestId();
+	}
+
 	@Transactional(rollbackFor = Exception.class)
 	public Test skipTest(Test test) throws ServiceException
 	{
 		test.setStatus(Status.SKIPPED);
-		testRunService.updateStatistics(test.getTestRunId(), Status.SKIPPED);
-		updateTest(test);
+		updateTestAndCounters(test);
 		return test;
 	}
 
@@ -256,11 +463,46 @@ public class TestService
 	{
 		test.setStatus(Status.ABORTED);
 		test.setMessage(abortCause);
-		testRunService.updateStatistics(test.getTestRunId(), Status.ABORTED);
-		updateTest(test);
+		updateTestAndCounters(test);
 		return test;
 	}
 
+	/**
+	 * Marks all in progress tests of test run as skipped, test run statistics are adjusted once for all tests.
+	 *
+	 * @param testRunId - test run id
+	 * @return count of skipped tests
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public int skipInProgressTests(long testRunId)
+	{
+		return updateTestsStatus(testRunId, Collections.singletonList(Status.IN_PROGRESS), Status.SKIPPED, null);
+	}
+
+	/**
+	 * Marks all in progress and queued tests of test run as aborted, test run statistics are adjusted once for all tests.
+	 *
+	 * @param testRunId - test run id
+	 * @param abortCause - abort message
+	 * @return count of aborted tests
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public int abortTests(long testRunId, String abortCause)
+	{
+		return updateTestsStatus(testRunId, Arrays.asList(Status.IN_PROGRESS, Status.QUEUED), Status.ABORTED, abortCause);
+	}
+
+	private int updateTestsStatus(long testRunId, List<Status> statuses, Status status, String message)
+	{
+		TestRunStatistics previous = testMapper.updateTestsStatusByTestRunId(testRunId, statuses, status, message);
+		int count = previous != null ? TestRunService.getTestsCount(previous) : 0;
+		if (count > 0)
+		{
+			testRunService.updateTestRunCounters(testRunId, previous, TestRunService.countTests(status, count));
+		}
+		return count;
+	}
+
 	@Transactional(rollbackFor = Exception.class)
 	public Test changeTestStatus(long id, Status newStatus) throws ServiceException, InterruptedException
 	{
@@ -269,9 +511,8 @@ public class TestService
 		{
 			throw new TestNotFoundException();
 		}
-		testRunService.updateStatistics(test.getTestRunId(), newStatus, test.getStatus());
 		test.setStatus(newStatus);
-		updateTest(test);
+		updateTestAndCounters(test);
 		TestCase testCase = testCaseService.getTestCaseById(test.getTestCaseId());
 		if (testCase != null)
 		{
@@ -325,6 +566,32 @@ public class TestService
 		return testMapper.getTestsByTestRunId(testRunId);
 	}
 
+	/**
+	 * Streams light projections of tests of specified test runs without collecting them into list.
+	 *
+	 * @param testRunIds - test run ids
+	 * @param consumer - consumer of tests
+	 */
+	@Transactional(readOnly = true)
+	public void getTestCompareItemsByTestRunIds(List<Long> testRunIds, Consumer<TestCompareItem> consumer)
+	{
+		testMapper.getTestCompareItemsByTestRunIds(testRunIds, context -> consumer.accept((TestCompareItem) context.getResultObject()));
+	}
+
+	/**
+	 * Iterates over tests of test run ordered by test group and id, tests are loaded by pages while iterating so that
+	 * memory usage does not depend on test run size.
+	 *
+	 * @param testRunId - test run id
+	 * @param pageSize - count of tests loaded at once
+	 * @return tests iterable
+	 */
+	public Iterable<Test> iterateTestsByTestRunId(long testRunId, int pageSize)
+	{
+		return new PagedIterable<>(last -> testMapper.getTestsPageByTestRunId(testRunId, last != null ? last.getNotNullTestGroup() : null,
+				last != null ? last.getId() : null, pageSize), pageSize);
+	}
+
 	@Transactional(readOnly = true)
 	public List<Test> getTestsByTestRunId(String testRunId) throws ServiceException
 	{
@@ -360,24 +627,47 @@ public class TestService
 	@Transactional(rollbackFor = Exception.class)
 	public void deleteTest(Test test) throws ServiceException
 	{
-		testMapper.deleteTest(test);
+		TestRunStatistics previous = testMapper.deleteTest(test);
+		if (previous != null)
+		{
+			testRunService.updateTestRunCounters(previous.getTestRunId(), previous, null);
+		}
 	}
 
 	@Transactional(rollbackFor = Exception.class)
 	public void deleteTestById(long id) throws ServiceException
 	{
-		testMapper.deleteTestById(id);
+		TestRunStatistics previous = testMapper.deleteTestById(id);
+		if (previous != null)
+		{
+			testRunService.updateTestRunCounters(previous.getTestRunId(), previous, null);
+		}
 	}
 
 	@Transactional(rollbackFor = Exception.class)
 	public void deleteQueuedTest(Test test) throws ServiceException
 	{
-		testMapper.deleteTestByTestRunIdAndNameAndStatus(test.getTestRunId(), test.getName(), Status.QUEUED);
+		TestRunStatistics delta = new TestRunStatistics();
+		deleteQueuedTest(test, delta);
+		testRunService.updateTestRunCounters(test.getTestRunId(), null, delta);
+	}
+
+	private void deleteQueuedTest(Test test, TestRunStatistics delta)
+	{
+		int deleted = testMapper.deleteTestByTestRunIdAndNameAndStatus(test.getTestRunId(), test.getName(), Status.QUEUED);
+		if (deleted > 0)
+		{
+			TestRunService.addCounters(delta, TestRunService.countTests(Status.QUEUED, deleted), -1);
+		}
 	}
 
 	@Transactional(readOnly = true)
 	public SearchResult<Test> searchTests(TestSearchCriteria sc) throws ServiceException
 	{
+		if (!sc.isCursorValid())
+		{
+			throw new InvalidSearchCriteriaException("Invalid search cursor: " + sc.getCursor());
+		}
 		SearchResult<Test> results = new SearchResult<>();
 		results.setPage(sc.getPage());
 		results.setPageSize(sc.getPageSize());
@@ -388,7 +678,14 @@ public class TestService
 			test.setArtifacts(new TreeSet<>(test.getArtifacts()));
 		}
 		results.setResults(tests);
-		results.setTotalResults(testMapper.getTestsSearchCount(sc));
+		if (tests.size() == sc.getPageSize())
+		{
+			results.setNextCursor(SearchCriteria.buildCursor(null, tests.get(tests.size() - 1).getId()));
+		}
+		if (sc.isCountRequired())
+		{
+			results.setTotalResults(testMapper.getTestsSearchCount(sc));
+		}
 		return results;
 	}
 
@@ -401,16 +698,10 @@ public class TestService
 
 		if (workItemType == Type.BUG) {
 			workItem.setHashCode(getTestMessageHashCode(test.getMessage()));
-			if (!test.isKnownIssue())
-				testRunService.updateStatistics(test.getTestRunId(), MARK_AS_KNOWN_ISSUE);
-			if (!test.isBlocker() && workItem.isBlocker())
-				testRunService.updateStatistics(test.getTestRunId(), MARK_AS_BLOCKER);
-			else if (test.isBlocker() && !workItem.isBlocker())
-				testRunService.updateStatistics(test.getTestRunId(), REMOVE_BLOCKER);
-
+			workItem.setFingerprint(getTestMessageFingerprint(test.getMessage()));
 			test.setKnownIssue(true);
 			test.setBlocker(workItem.isBlocker());
-			updateTest(test);
+			updateTestAndCounters(test);
 		}
 
 		if (workItem.getId() != null && attachedWorkItem == null)
@@ -423,6 +714,7 @@ public class TestService
 			if (workItemType == Type.BUG) {
 				// Generate random hashcode to unlink known issue
 				attachedWorkItem.setHashCode(RandomUtils.nextInt());
+				attachedWorkItem.setFingerprint(RandomUtils.nextLong());
 				workItemService.updateWorkItem(attachedWorkItem);
 			}
 			workItemService.updateWorkItem(workItem);
@@ -454,12 +746,13 @@ public class TestService
 	{
 		test.setKnownIssue(false);
 		test.setBlocker(false);
-		updateTest(test);
+		updateTestAndCounters(test);
 
 		WorkItem workItem = workItemService.getWorkItemById(workItemId);
 		// Generate random hashcode to unlink known issue
 		if (workItem.getType() == Type.BUG) {
 			workItem.setHashCode(RandomUtils.nextInt());
+			workItem.setFingerprint(RandomUtils.nextLong());
 		}
 		workItemService.updateWorkItem(workItem);
 		deleteTestWorkItemByWorkItemIdAndTestId(workItemId, test.getId());
@@ -481,113 +774,17 @@ public class TestService
 		testMapper.deleteTestWorkItemByTestIdAndWorkItemType(testId, type);
 	}
 
-	@Transactional
-	public void updateTestRerunFlags(TestRun testRun, List<Test> tests)
+	/**
+	 * Calculates rerun flags of all test run tests according to driver mode in one bulk update.
+	 *
+	 * @param testRun - test run with calculated status
+	 */
+	@Transactional(rollbackFor = Exception.class)
+	public void updateTestRerunFlags(TestRun testRun)
 	{
-		List<Long> testIds = getTestIds(tests);
-		testMapper.updateTestsNeedRerun(testIds, false);
-
-		try
-		{
-			// In case of SUITE_MODE we are rerunning all tests if test run status not PASSED
-			if (DriverMode.SUITE_MODE.equals(testRun.getDriverMode()))
-			{
-				if (!Status.PASSED.equals(testRun.getStatus()))
-				{
-					testMapper.updateTestsNeedRerun(testIds, true);
-				}
-			}
-			else
-			{
-				// Look #Test implements comparable so that all SKIPPED and FAILED tests go first
-				Collections.sort(tests);
-
-				TestCaseSearchCriteria sc = new TestCaseSearchCriteria();
-				sc.setPageSize(Integer.MAX_VALUE);
-				for (Test test : tests)
-				{
-					sc.addId(test.getTestCaseId());
-				}
-
-				Map<Long, TestCase> testCasesById = new HashMap<>();
-				Map<String, List<Long>> testCasesByClass = new HashMap<>();
-				Map<String, List<Long>> testCasesByMethod = new HashMap<>();
-				Set<Long> testCasesToRerun = new HashSet<>();
-
-				for (TestCase tc : testCaseService.searchTestCases(sc).getResults())
-				{
-					testCasesById.put(tc.getId(), tc);
-
-					if (!testCasesByClass.containsKey(tc.getTestClass()))
-					{
-						testCasesByClass.put(tc.getTestClass(), new ArrayList<>());
-					}
-					testCasesByClass.get(tc.getTestClass()).add(tc.getId());
-
-					if (!testCasesByMethod.containsKey(tc.getTestMethod()))
-					{
-						testCasesByMethod.put(tc.getTestMethod(), new ArrayList<>());
-					}
-					testCasesByMethod.get(tc.getTestMethod()).add(tc.getId());
-				}
-
-				for (Test test : tests)
-				{
-
-					if ((Arrays.asList(Status.FAILED, Status.SKIPPED).contains(test.getStatus()) && !test.isKnownIssue())
-							|| test.getStatus().equals(Status.ABORTED)
-							|| test.getStatus().equals(Status.QUEUED))
-					{
-						switch (testRun.getDriverMode())
-						{
-						case SUITE_MODE:
-							// Do nothing
-							break;
-						case CLASS_MODE:
-							String className = testCasesById.get(test.getTestCaseId()).getTestClass();
-							testCasesToRerun.addAll(testCasesByClass.get(className));
-							break;
-
-						case METHOD_MODE:
-							String methodName = testCasesById.get(test.getTestCaseId()).getTestMethod();
-
-							if (test.getName().contains(INV_COUNT))
-							{
-								testCasesToRerun.addAll(testCasesByMethod.get(methodName));
-							}
-							else
-							{
-								testMapper.updateTestsNeedRerun(Collections.singletonList(test.getId()), true);
-							}
-
-							if (!StringUtils.isEmpty(test.getDependsOnMethods()))
-							{
-								for (String method : test.getDependsOnMethods().split(SPACE))
-								{
-									testCasesToRerun.addAll(testCasesByMethod.get(method));
-								}
-							}
-							break;
-						}
-					}
-				}
-
-				testIds = new ArrayList<>();
-				for (Test test : tests)
-				{
-					if (testCasesToRerun.contains(test.getTestCaseId()))
-					{
-						testIds.add(test.getId());
-					}
-				}
-				testMapper.updateTestsNeedRerun(testIds, true);
-			}
-		}
-		catch (Exception e)
-		{
-			LOGGER.error("Unable to calculate rurun flags", e);
-			testMapper.updateTestsNeedRerun(testIds, true);
-		}
+		// In case of SUITE_MODE we are rerunning all tests if test run status not PASSED
+		boolean rerunAll = !DriverMode.SUITE_MODE.equals(testRun.getDriverMode()) || !Status.PASSED.equals(testRun.getStatus());
+		testMapper.updateTestsNeedRerunByTestRunId(testRun.getId(), testRun.getDriverMode(), rerunAll);
 	}
 
 	@Transactional(rollbackFor = Exception.class)
@@ -612,9 +809,43 @@ public class TestService
 		testMapper.deleteTag(testId, tagId);
 	}
 
+	/**
+	 * Calculates hash code of test message used for failures grouping: known Selenium errors are grouped by error type,
+	 * other messages by fingerprint.
+	 *
+	 * @param message - test message
+	 * @return message hash code
+	 */
 	public int getTestMessageHashCode(String message)
 	{
-		return message != null ? message.replaceAll("\\d+", "*").replaceAll("\\[.*\\]", "*").hashCode() : 0;
+		return getTestMessageHashCode(message, getTestMessageFingerprint(message));
+	}
+
+	private static int getTestMessageHashCode(String message, long messageFingerprint)
+	{
+		if (message == null)
+		{
+			return 0;
+		}
+		for (Map.Entry<String, Integer> error : SELENIUM_ERROR_HASH_CODES.entrySet())
+		{
+			if (message.startsWith(error.getKey()))
+			{
+				return error.getValue();
+			}
+		}
+		return Long.hashCode(messageFingerprint);
+	}
+
+	/**
+	 * Calculates fingerprint of test message used for known issues matching, see {@link MessageFingerprint}.
+	 *
+	 * @param message - test message
+	 * @return message fingerprint
+	 */
+	public long getTestMessageFingerprint(String message)
+	{
+		return MessageFingerprint.of(message);
 	}
 
 	@Transactional(rollbackFor = Exception.class)
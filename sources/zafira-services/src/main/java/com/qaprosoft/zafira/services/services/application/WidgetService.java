@@ -18,7 +18,9 @@ package com.qaprosoft.zafira.services.services.application;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.session.RowBounds;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -33,6 +35,12 @@ public class WidgetService
 	@Autowired
 	private WidgetMapper widgetMapper;
 
+	@Value("${zafira.widgets.queryTimeout}")
+	private long queryTimeout;
+
+	@Value("${zafira.widgets.maxRows}")
+	private int maxRows;
+
 	@Transactional(rollbackFor = Exception.class)
 	public Widget createWidget(Widget widget) throws ServiceException
 	{
@@ -65,9 +73,17 @@ public class WidgetService
 		widgetMapper.deleteWidgetById(id);
 	}
 
+	/**
+	 * Executes widget query with statement timeout, rows above limit are not fetched.
+	 *
+	 * @param sql - widget query
+	 * @return query result
+	 * @throws ServiceException - on query failure
+	 */
 	@Transactional(readOnly = true)
 	public List<Map<String, Object>> executeSQL(String sql) throws ServiceException
 	{
-		return widgetMapper.executeSQL(new SQLAdapter(sql));
+		widgetMapper.setStatementTimeout(queryTimeout);
+		return widgetMapper.executeSQL(new SQLAdapter(sql), new RowBounds(0, maxRows));
 	}
-}
\ No newline at end of file
+}
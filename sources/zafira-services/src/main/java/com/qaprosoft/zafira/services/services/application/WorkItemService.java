@@ -51,9 +51,9 @@ public class WorkItemService
 	}
 	
 	@Transactional(readOnly = true)
-	public WorkItem getWorkItemByTestCaseIdAndHashCode(long testCaseId, int hashCode) throws ServiceException
+	public WorkItem getWorkItemByTestCaseIdAndFingerprint(long testCaseId, long fingerprint) throws ServiceException
 	{
-		return workItemMapper.getWorkItemByTestCaseIdAndHashCode(testCaseId, hashCode);
+		return workItemMapper.getWorkItemByTestCaseIdAndFingerprint(testCaseId, fingerprint);
 	}
 	
 	@Transactional(readOnly = true)
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cache value codec: registered types are written as one byte type id followed by their fields, other values and
+ * entries written by previous versions use JDK serialization. Type ids are positions in the list of registered types,
+ * so new types must be appended to the end of the list.
+ */
+public class CacheValueSerializer implements RedisSerializer<Object>
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CacheValueSerializer.class);
+
+	// First byte of JDK serialization stream
+	private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+	private static final byte[] EMPTY_ARRAY = new byte[0];
+
+	private final List<Class<?>> types;
+	private final Map<Class<?>, Byte> typeIds = new HashMap<>();
+	private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+	// Fields only, so that derived getters and REST annotations of models do not affect cached values
+	private final ObjectMapper mapper = new ObjectMapper()
+			.configure(MapperFeature.USE_ANNOTATIONS, false)
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+			.setVisibility(PropertyAccessor.ALL, Visibility.NONE)
+			.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+
+	public CacheValueSerializer(List<Class<?>> types)
+	{
+		if (types.size() > Byte.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Max count of cache value types is " + Byte.MAX_VALUE);
+		}
+		this.types = new ArrayList<>(types);
+		for (int i = 0; i < types.size(); i++)
+		{
+			typeIds.put(types.get(i), (byte) (i + 1));
+		}
+	}
+
+	/**
+	 * @return registered types ordered by type id
+	 */
+	public List<Class<?>> getTypes()
+	{
+		return Collections.unmodifiableList(types);
+	}
+
+	@Override
+	public byte[] serialize(Object value) throws SerializationException
+	{
+		if (value == null)
+		{
+			return EMPTY_ARRAY;
+		}
+		Byte typeId = typeIds.get(value.getClass());
+		if (typeId != null)
+		{
+			try
+			{
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				out.write(typeId);
+				mapper.writeValue(out, value);
+				return out.toByteArray();
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Unable to encode " + value.getClass().getSimpleName() + ", JDK serialization is used: " + e.getMessage());
+			}
+		}
+		return jdkSerializer.serialize(value);
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) throws SerializationException
+	{
+		if (bytes == null || bytes.length == 0)
+		{
+			return null;
+		}
+		if (bytes[0] == JDK_STREAM_MAGIC)
+		{
+			return jdkSerializer.deserialize(bytes);
+		}
+		if (bytes[0] < 1 || bytes[0] > types.size())
+		{
+			throw new SerializationException("Unknown cache value type id: " + bytes[0]);
+		}
+		try
+		{
+			return mapper.readValue(bytes, 1, bytes.length - 1, types.get(bytes[0] - 1));
+		}
+		catch (IOException e)
+		{
+			throw new SerializationException("Unable to decode " + types.get(bytes[0] - 1).getSimpleName(), e);
+		}
+	}
+}
@@ -16,7 +16,9 @@
 package com.qaprosoft.zafira.services.services.application.cache;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public interface ICacheableService<T, R> extends Serializable
 {
@@ -24,4 +26,12 @@ public interface ICacheableService<T, R> extends Serializable
 	long serialVersionUID = -1915862222225912222L;
 
 	Function<T, R> getValue();
+
+	/**
+	 * @return function loading values of several keys at once, missing values are skipped
+	 */
+	default Function<List<T>, List<R>> getValues()
+	{
+		return keys -> keys.stream().map(getValue()).filter(value -> value != null).collect(Collectors.toList());
+	}
 }
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.cache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.services.services.application.jmx.JiraService;
+
+import net.rcarz.jiraclient.Issue;
+
+/**
+ * Tenant scoped cache of JIRA issue states used for known issues resolution. Lookups never wait for JIRA: missing or
+ * expired states are refreshed in background, concurrent refreshes of the same issue share one JIRA call and the last
+ * known state is kept while JIRA is slow or unavailable.
+ */
+@Component
+@ManagedResource(objectName = "bean:name=jiraIssueStatusCache", description = "JIRA issue status cache")
+public class JiraIssueStatusCache
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(JiraIssueStatusCache.class);
+
+	private static final int MAX_SIZE = 10000;
+	private static final int REFRESH_THREADS = 2;
+
+	private final Cache<String, IssueState> states = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(1, TimeUnit.DAYS).build();
+	private final Set<String> refreshes = ConcurrentHashMap.newKeySet();
+	private final ExecutorService executor;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder jiraCalls = new LongAdder();
+	private final LongAdder jiraFailures = new LongAdder();
+	private final LongAdder jiraTime = new LongAdder();
+
+	@Autowired
+	private JiraService jiraService;
+
+	@Value("${zafira.jira.issueStatusTtl}")
+	private long ttl;
+
+	public JiraIssueStatusCache()
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(REFRESH_THREADS, r -> {
+			Thread thread = new Thread(r, "jira-issue-refresh-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns last known state of JIRA issue, schedules background refresh if state is unknown or expired.
+	 *
+	 * @param jiraId - JIRA ticket
+	 * @return true if issue is closed, false if issue is open or state is not known yet
+	 */
+	public boolean isIssueClosed(String jiraId)
+	{
+		String key = TenancyContext.getTenantName() + ":" + jiraId;
+		IssueState state = states.getIfPresent(key);
+		if (state != null)
+		{
+			hits.increment();
+		}
+		else
+		{
+			misses.increment();
+		}
+		if (state == null || System.currentTimeMillis() - state.loadedAt > ttl)
+		{
+			refresh(key, TenancyContext.getTenantName(), jiraId);
+		}
+		return state != null && state.closed;
+	}
+
+	@ManagedOperation(description = "Clear cached issue states")
+	public void invalidateAll()
+	{
+		states.invalidateAll();
+	}
+
+	@ManagedAttribute(description = "Cache hit ratio")
+	public double getHitRatio()
+	{
+		long total = hits.sum() + misses.sum();
+		return total > 0 ? (double) hits.sum() / total : 0;
+	}
+
+	@ManagedAttribute(description = "Cache hits")
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Cache misses")
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "JIRA calls")
+	public long getJiraCallCount()
+	{
+		return jiraCalls.sum();
+	}
+
+	@ManagedAttribute(description = "Failed JIRA calls")
+	public long getJiraFailureCount()
+	{
+		return jiraFailures.sum();
+	}
+
+	@ManagedAttribute(description = "Average JIRA call time in ms")
+	public double getJiraAverageTime()
+	{
+		long calls = jiraCalls.sum();
+		return calls > 0 ? (double) jiraTime.sum() / calls : 0;
+	}
+
+	private void refresh(String key, String tenantName, String jiraId)
+	{
+		// Only one refresh per issue at a time
+		if (!refreshes.add(key))
+		{
+			return;
+		}
+		try
+		{
+			executor.execute(() -> {
+				try
+				{
+					TenancyContext.setTenantName(tenantName);
+					load(key, jiraId);
+				}
+				finally
+				{
+					TenancyContext.setTenantName(null);
+					refreshes.remove(key);
+				}
+			});
+		}
+		catch (Exception e)
+		{
+			refreshes.remove(key);
+			LOGGER.warn("Unable to schedule refresh of JIRA issue " + jiraId + ": " + e.getMessage());
+		}
+	}
+
+	private void load(String key, String jiraId)
+	{
+		long start = System.currentTimeMillis();
+		try
+		{
+			Issue issue = jiraService.getIssue(jiraId);
+			if (issue != null)
+			{
+				states.put(key, new IssueState(jiraService.isIssueClosed(issue)));
+			}
+			else
+			{
+				jiraFailures.increment();
+			}
+		}
+		catch (Exception e)
+		{
+			jiraFailures.increment();
+			LOGGER.error("Unable to refresh JIRA issue " + jiraId + ": " + e.getMessage());
+		}
+		finally
+		{
+			jiraCalls.increment();
+			jiraTime.add(System.currentTimeMillis() - start);
+		}
+	}
+
+	private static class IssueState
+	{
+		private final boolean closed;
+		private final long loadedAt = System.currentTimeMillis();
+
+		private IssueState(boolean closed)
+		{
+			this.closed = closed;
+		}
+	}
+}
@@ -15,12 +15,19 @@
  *******************************************************************************/
 package com.qaprosoft.zafira.services.services.application.cache;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
 import com.qaprosoft.zafira.models.db.TestRun;
 import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -32,20 +39,39 @@ public class StatisticsService
 
 	private ICacheableService<Long, TestRunStatistics> cacheableService;
 
+	private CacheManager cacheManager;
+
+	private Consumer<Long> loadListener = testRunId -> {};
+
 	public void setCacheableService(ICacheableService<Long, TestRunStatistics> cacheableService)
 	{
 		this.cacheableService = cacheableService;
 	}
 
+	public void setCacheManager(CacheManager cacheManager)
+	{
+		this.cacheManager = cacheManager;
+	}
+
 	/**
-	 * Get and put (unique) into cache test run statistic by {@link TestRun} id key
+	 * Sets listener notified right before test run statistic is loaded from source
+	 * @param loadListener - consumer of test run id
+	 */
+	public void setLoadListener(Consumer<Long> loadListener)
+	{
+		this.loadListener = loadListener;
+	}
+
+	/**
+	 * Get and put (unique) into cache test run statistic by {@link TestRun} id key, concurrent misses load statistic once
 	 * @param testRunId - to get statistic for
 	 * @return test run statistics
 	 */
-	@Cacheable(value = TEST_RUN_STATISTICS_CACHE_NAME, key = "T(com.qaprosoft.zafira.dbaccess.utils.TenancyContext).tenantName + ':' + #testRunId")
+	@Cacheable(value = TEST_RUN_STATISTICS_CACHE_NAME, key = "T(com.qaprosoft.zafira.dbaccess.utils.TenancyContext).tenantName + ':' + #testRunId", sync = true)
 	@Transactional(readOnly = true)
 	public TestRunStatistics getTestRunStatistic(Long testRunId)
 	{
+		loadListener.accept(testRunId);
 		return cacheableService.getValue().apply(testRunId);
 	}
 
@@ -56,12 +82,48 @@ public class StatisticsService
 	}
 
 	/**
-	 * Evict all entries from cache in several hours after start crone expression
-	 * <h2>0 0 0/4 ? * * *</h2> - every 4 hours
+	 * Reload test run statistic from source and put into cache
+	 * @param testRunId - to reload statistic for
+	 * @return test run statistics
+	 */
+	@CachePut(value = TEST_RUN_STATISTICS_CACHE_NAME, key = "T(com.qaprosoft.zafira.dbaccess.utils.TenancyContext).tenantName + ':' + #testRunId", unless = "#result == null")
+	@Transactional(readOnly = true)
+	public TestRunStatistics refreshTestRunStatistic(Long testRunId)
+	{
+		loadListener.accept(testRunId);
+		return cacheableService.getValue().apply(testRunId);
+	}
+
+	/**
+	 * Reload statistics of several test runs from source in one query and put them into cache at once
+	 * @param testRunIds - to reload statistics for
+	 * @return test runs statistics
+	 */
+	@Transactional(readOnly = true)
+	public List<TestRunStatistics> refreshTestRunStatistics(List<Long> testRunIds)
+	{
+		testRunIds.forEach(loadListener);
+		List<TestRunStatistics> statistics = cacheableService.getValues().apply(testRunIds);
+		Map<Object, Object> entries = new HashMap<>();
+		statistics.forEach(statistic -> entries.put(TenancyContext.getTenantName() + ":" + statistic.getTestRunId(), statistic));
+		if (cacheManager instanceof TwoLevelCacheManager)
+		{
+			((TwoLevelCacheManager) cacheManager).putAll(TEST_RUN_STATISTICS_CACHE_NAME, entries);
+		}
+		else
+		{
+			Cache cache = cacheManager.getCache(TEST_RUN_STATISTICS_CACHE_NAME);
+			entries.forEach(cache::put);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Evict test run statistic from cache
+	 * @param testRunId - to evict statistic for
 	 */
-	@CacheEvict(value = TEST_RUN_STATISTICS_CACHE_NAME, allEntries = true)
-	@Scheduled(cron = "0 0 0/4 ? * * *")
-	public void cacheEvict()
+	@CacheEvict(value = TEST_RUN_STATISTICS_CACHE_NAME, key = "T(com.qaprosoft.zafira.dbaccess.utils.TenancyContext).tenantName + ':' + #testRunId")
+	public void evictTestRunStatistic(Long testRunId)
 	{
 	}
 }
@@ -20,6 +20,7 @@ import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.function.Function;
 
 @Component(value = "testRunMapperCacheableService")
@@ -35,4 +36,10 @@ public class TestRunMapperCacheableService implements ICacheableService<Long, Te
 	{
 		return testRunId -> testRunMapper.getTestRunStatistics(testRunId);
 	}
+
+	@Override
+	public Function<List<Long>, List<TestRunStatistics>> getValues()
+	{
+		return testRunIds -> testRunMapper.getTestRunStatisticsByIds(testRunIds);
+	}
 }
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+
+/**
+ * Lock-free write-behind aggregator of cached test run statistics.
+ * Deltas are accumulated per tenant and test run after transaction commit and overlaid on cached statistics,
+ * flush reloads touched test runs of every tenant from database (shared by all nodes) by one query and puts them into
+ * cache at once, so that other nodes get one invalidation message per flush.
+ * Flush and eviction run on their own single thread scheduler, so that long running jobs don't delay them.
+ * Only cache is written behind: database counters are updated in the transaction of test change, so they stay
+ * consistent with tests and deltas of all nodes are merged by database.
+ * When statistics are loaded from database already recorded deltas are part of loaded value, so only deltas
+ * recorded after load are overlaid.
+ * Statistics of finished test runs are evicted from cache with delay, any new delta cancels eviction.
+ */
+@Component
+public class TestRunStatisticsAggregator
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestRunStatisticsAggregator.class);
+
+	// Max count of test runs reloaded by one query
+	private static final int FLUSH_BATCH_SIZE = 500;
+
+	private final ConcurrentMap<String, Counters> pending = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Expiration> expirations = new ConcurrentHashMap<>();
+
+	@Autowired
+	private StatisticsService statisticsService;
+
+	@Value("${zafira.statistics.finishedTtl}")
+	private long finishedTtl;
+
+	@PostConstruct
+	public void init()
+	{
+		statisticsService.setLoadListener(this::rebase);
+	}
+
+	/**
+	 * Records statistics delta, delta is applied after commit if transaction is active
+	 * @param delta - counters difference with test run id
+	 */
+	public void record(TestRunStatistics delta)
+	{
+		final String tenantName = TenancyContext.getTenantName();
+		afterCommit(() -> {
+			getCounters(tenantName, delta.getTestRunId()).add(delta);
+			expirations.remove(getKey(tenantName, delta.getTestRunId()));
+		});
+	}
+
+	/**
+	 * Schedules eviction of finished or deleted test run statistics, eviction is scheduled after commit if transaction is active
+	 * @param testRunId - test run id
+	 */
+	public void expire(Long testRunId)
+	{
+		final String tenantName = TenancyContext.getTenantName();
+		afterCommit(() -> expirations.put(getKey(tenantName, testRunId),
+				new Expiration(tenantName, testRunId, System.currentTimeMillis() + finishedTtl)));
+	}
+
+	/**
+	 * Records test run review flag, flag is applied after commit if transaction is active
+	 * @param testRunId - test run id
+	 * @param reviewed - review flag
+	 */
+	public void markAsReviewed(Long testRunId, boolean reviewed)
+	{
+		final String tenantName = TenancyContext.getTenantName();
+		afterCommit(() -> getCounters(tenantName, testRunId).reviewed = reviewed);
+	}
+
+	/**
+	 * Returns cached test run statistics with not flushed deltas applied
+	 * @param testRunId - test run id
+	 * @return test run statistics
+	 */
+	public TestRunStatistics getTestRunStatistic(Long testRunId)
+	{
+		TestRunStatistics statistics = statisticsService.getTestRunStatistic(testRunId);
+		Counters counters = pending.get(getKey(TenancyContext.getTenantName(), testRunId));
+		return statistics != null && counters != null ? counters.applyTo(statistics) : statistics;
+	}
+
+	/**
+	 * Excludes deltas recorded so far from overlay, called before statistics are loaded from database
+	 * @param testRunId - test run id
+	 */
+	private void rebase(Long testRunId)
+	{
+		Counters counters = pending.get(getKey(TenancyContext.getTenantName(), testRunId));
+		if (counters != null)
+		{
+			counters.rebase();
+		}
+	}
+
+	/**
+	 * Reloads statistics of test runs touched since previous flush into cache
+	 */
+	public void flush()
+	{
+		Map<String, List<Long>> testRunIdsByTenant = new HashMap<>();
+		for (Map.Entry<String, Counters> entry : pending.entrySet())
+		{
+			Counters counters = entry.getValue();
+			if (pending.remove(entry.getKey(), counters))
+			{
+				testRunIdsByTenant.computeIfAbsent(counters.tenantName, tenantName -> new ArrayList<>()).add(counters.testRunId);
+			}
+		}
+		testRunIdsByTenant.forEach((tenantName, testRunIds) -> {
+			TenancyContext.setTenantName(tenantName);
+			try
+			{
+				for (List<Long> batch : Lists.partition(testRunIds, FLUSH_BATCH_SIZE))
+				{
+					try
+					{
+						statisticsService.refreshTestRunStatistics(batch);
+					}
+					catch (Exception e)
+					{
+						LOGGER.error("Unable to flush statistics of test runs " + batch + ": " + e.getMessage(), e);
+					}
+				}
+			}
+			finally
+			{
+				TenancyContext.setTenantName(null);
+			}
+		});
+	}
+
+	/**
+	 * Evicts statistics of test runs finished more than finishedTtl ago
+	 */
+	public void evictFinished()
+	{
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<String, Expiration>> it = expirations.entrySet().iterator(); it.hasNext();)
+		{
+			Map.Entry<String, Expiration> entry = it.next();
+			Expiration expiration = entry.getValue();
+			// Not flushed deltas are applied on cached statistics, so test run is evicted after flush
+			if (expiration.evictAt > now || pending.containsKey(entry.getKey()) || !expirations.remove(entry.getKey(), expiration))
+			{
+				continue;
+			}
+			TenancyContext.setTenantName(expiration.tenantName);
+			try
+			{
+				statisticsService.evictTestRunStatistic(expiration.testRunId);
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to evict statistics of test run " + expiration.testRunId + ": " + e.getMessage(), e);
+			}
+			finally
+			{
+				TenancyContext.setTenantName(null);
+			}
+		}
+	}
+
+	private void afterCommit(Runnable action)
+	{
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+			{
+				@Override
+				public void afterCommit()
+				{
+					action.run();
+				}
+			});
+		}
+		else
+		{
+			action.run();
+		}
+	}
+
+	private Counters getCounters(String tenantName, Long testRunId)
+	{
+		return pending.computeIfAbsent(getKey(tenantName, testRunId), key -> new Counters(tenantName, testRunId));
+	}
+
+	private static String getKey(String tenantName, Long testRunId)
+	{
+		return tenantName + ":" + testRunId;
+	}
+
+	private static class Expiration
+	{
+		private final String tenantName;
+		private final long testRunId;
+		private final long evictAt;
+
+		private Expiration(String tenantName, long testRunId, long evictAt)
+		{
+			this.tenantName = tenantName;
+			this.testRunId = testRunId;
+			this.evictAt = evictAt;
+		}
+	}
+
+	private static class Counters
+	{
+		private final String tenantName;
+		private final long testRunId;
+		private final LongAdder passed = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder failedAsKnown = new LongAdder();
+		private final LongAdder failedAsBlocker = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final LongAdder inProgress = new LongAdder();
+		private final LongAdder aborted = new LongAdder();
+		private final LongAdder queued = new LongAdder();
+		private volatile Boolean reviewed;
+		// Sums of deltas already included into cached statistics
+		private volatile TestRunStatistics base = new TestRunStatistics();
+
+		private Counters(String tenantName, long testRunId)
+		{
+			this.tenantName = tenantName;
+			this.testRunId = testRunId;
+		}
+
+		private void add(TestRunStatistics delta)
+		{
+			passed.add(delta.getPassed());
+			failed.add(delta.getFailed());
+			failedAsKnown.add(delta.getFailedAsKnown());
+			failedAsBlocker.add(delta.getFailedAsBlocker());
+			skipped.add(delta.getSkipped());
+			inProgress.add(delta.getInProgress());
+			aborted.add(delta.getAborted());
+			queued.add(delta.getQueued());
+		}
+
+		private void rebase()
+		{
+			TestRunStatistics sums = new TestRunStatistics();
+			sums.setPassed(passed.intValue());
+			sums.setFailed(failed.intValue());
+			sums.setFailedAsKnown(failedAsKnown.intValue());
+			sums.setFailedAsBlocker(failedAsBlocker.intValue());
+			sums.setSkipped(skipped.intValue());
+			sums.setInProgress(inProgress.intValue());
+			sums.setAborted(aborted.intValue());
+			sums.setQueued(queued.intValue());
+			base = sums;
+		}
+
+		private TestRunStatistics applyTo(TestRunStatistics statistics)
+		{
+			TestRunStatistics base = this.base;
+			TestRunStatistics result = new TestRunStatistics();
+			result.setTestRunId(statistics.getTestRunId());
+			result.setPassed(statistics.getPassed() + passed.intValue() - base.getPassed());
+			result.setFailed(statistics.getFailed() + failed.intValue() - base.getFailed());
+			result.setFailedAsKnown(statistics.getFailedAsKnown() + failedAsKnown.intValue() - base.getFailedAsKnown());
+			result.setFailedAsBlocker(statistics.getFailedAsBlocker() + failedAsBlocker.intValue() - base.getFailedAsBlocker());
+			result.setSkipped(statistics.getSkipped() + skipped.intValue() - base.getSkipped());
+			result.setInProgress(statistics.getInProgress() + inProgress.intValue() - base.getInProgress());
+			result.setAborted(statistics.getAborted() + aborted.intValue() - base.getAborted());
+			result.setQueued(statistics.getQueued() + queued.intValue() - base.getQueued());
+			result.setReviewed(reviewed != null ? reviewed : statistics.isReviewed());
+			return result;
+		}
+	}
+}
@@ -0,0 +1,498 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache manager that keeps local near-cache with size and TTL eviction in front of shared (Redis) caches. Puts and
+ * evictions are published to Redis channel, so that other nodes drop their local copies. Values read from shared
+ * cache concurrently with invalidation are not cached locally. TTL bounds staleness if invalidation is lost.
+ * Concurrent loads of the same missing key are executed once per node. Local entries are kept serialized, so every
+ * caller gets its own copy of cached value.
+ */
+@ManagedResource(objectName = "bean:name=cacheManager", description = "Local and Redis caches")
+public class TwoLevelCacheManager implements CacheManager, MessageListener
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+	private static final String INVALIDATION_CHANNEL = "zafira:cache:invalidation";
+
+	private final String nodeId = UUID.randomUUID().toString();
+	private final CacheManager remoteCacheManager;
+	private final RedisConnectionFactory connectionFactory;
+	private final JdkSerializationRedisSerializer keySerializer = new JdkSerializationRedisSerializer();
+	private final RedisSerializer<Object> valueSerializer;
+	private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Consumer<Object>> invalidationListeners = new ConcurrentHashMap<>();
+
+	private final LongAdder publishFailures = new LongAdder();
+
+	private final int localMaxSize;
+	private final long localTtl;
+
+	/**
+	 * @param remoteCacheManager - shared caches
+	 * @param connectionFactory - Redis connection factory used to publish invalidations
+	 * @param localMaxSize - max entries of every local cache
+	 * @param localTtl - time to live of local entries in seconds
+	 * @param valueSerializer - serializer of local entries
+	 */
+	public TwoLevelCacheManager(CacheManager remoteCacheManager, RedisConnectionFactory connectionFactory, int localMaxSize, long localTtl,
+			RedisSerializer<Object> valueSerializer)
+	{
+		this.remoteCacheManager = remoteCacheManager;
+		this.connectionFactory = connectionFactory;
+		this.localMaxSize = localMaxSize;
+		this.localTtl = localTtl;
+		this.valueSerializer = valueSerializer;
+	}
+
+	@Override
+	public Cache getCache(String name)
+	{
+		return caches.computeIfAbsent(name, n -> {
+			Cache remote = remoteCacheManager.getCache(n);
+			return remote != null ? new TwoLevelCache(remote) : null;
+		});
+	}
+
+	@Override
+	public Collection<String> getCacheNames()
+	{
+		return remoteCacheManager.getCacheNames();
+	}
+
+	/**
+	 * @return topic of invalidation messages
+	 */
+	public ChannelTopic getInvalidationTopic()
+	{
+		return new ChannelTopic(INVALIDATION_CHANNEL);
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern)
+	{
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody())))
+		{
+			if (nodeId.equals(in.readUTF()))
+			{
+				return;
+			}
+			String cacheName = in.readUTF();
+			TwoLevelCache cache = caches.get(cacheName);
+			Consumer<Object> listener = cache != null ? cache::invalidateLocal : invalidationListeners.get(cacheName);
+			int count = in.readInt();
+			if (listener != null && count < 0)
+			{
+				listener.accept(null);
+			}
+			for (int i = 0; listener != null && i < count; i++)
+			{
+				byte[] key = new byte[in.readInt()];
+				in.readFully(key);
+				listener.accept(keySerializer.deserialize(key));
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unable to process cache invalidation: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Registers listener of invalidations published by other nodes for cache not managed by this manager.
+	 *
+	 * @param cacheName - cache name
+	 * @param listener - consumer of invalidated key, null key invalidates all entries
+	 */
+	public void addInvalidationListener(String cacheName, Consumer<Object> listener)
+	{
+		invalidationListeners.put(cacheName, listener);
+	}
+
+	/**
+	 * Notifies other nodes about invalidated entry of cache not managed by this manager.
+	 *
+	 * @param cacheName - cache name
+	 * @param key - entry key, null to invalidate all entries
+	 */
+	public void publishInvalidation(String cacheName, Object key)
+	{
+		publish(cacheName, key != null ? Collections.singleton(key) : null);
+	}
+
+	/**
+	 * Puts entries into cache, other nodes are notified with one message.
+	 *
+	 * @param cacheName - cache name
+	 * @param entries - values by keys
+	 */
+	public void putAll(String cacheName, Map<?, ?> entries)
+	{
+		if (!entries.isEmpty() && getCache(cacheName) != null)
+		{
+			caches.get(cacheName).putAll(entries);
+		}
+	}
+
+	@ManagedOperation(description = "Clear local caches of this node")
+	public void clearLocalCaches()
+	{
+		caches.values().forEach(cache -> cache.invalidateLocal(null));
+	}
+
+	@ManagedAttribute(description = "Hits, misses and size per cache")
+	public Map<String, String> getStatistics()
+	{
+		Map<String, String> statistics = new TreeMap<>();
+		caches.forEach((name, cache) -> statistics.put(name, cache.toString()));
+		return statistics;
+	}
+
+	@ManagedAttribute(description = "Share of reads served by local caches")
+	public double getLocalHitRatio()
+	{
+		long localHits = 0, total = 0;
+		for (TwoLevelCache cache : caches.values())
+		{
+			localHits += cache.localHits.sum();
+			total += cache.localHits.sum() + cache.remoteHits.sum() + cache.misses.sum();
+		}
+		return total > 0 ? (double) localHits / total : 0;
+	}
+
+	@ManagedAttribute(description = "Share of local misses served by Redis")
+	public double getRemoteHitRatio()
+	{
+		long remoteHits = 0, total = 0;
+		for (TwoLevelCache cache : caches.values())
+		{
+			remoteHits += cache.remoteHits.sum();
+			total += cache.remoteHits.sum() + cache.misses.sum();
+		}
+		return total > 0 ? (double) remoteHits / total : 0;
+	}
+
+	@ManagedAttribute(description = "Invalidations not published to other nodes")
+	public long getPublishFailureCount()
+	{
+		return publishFailures.sum();
+	}
+
+	@ManagedAttribute(description = "Max entries of local cache")
+	public int getLocalMaxSize()
+	{
+		return localMaxSize;
+	}
+
+	@ManagedAttribute(description = "Time to live of local entries in seconds")
+	public long getLocalTtl()
+	{
+		return localTtl;
+	}
+
+	/**
+	 * Notifies other nodes about changed entries.
+	 *
+	 * @param cacheName - cache name
+	 * @param keys - entry keys, null if cache is cleared
+	 */
+	private void publish(String cacheName, Collection<?> keys)
+	{
+		RedisConnection connection = null;
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(nodeId);
+			out.writeUTF(cacheName);
+			out.writeInt(keys != null ? keys.size() : -1);
+			if (keys != null)
+			{
+				for (Object key : keys)
+				{
+					byte[] serializedKey = keySerializer.serialize(key);
+					out.writeInt(serializedKey.length);
+					out.write(serializedKey);
+				}
+			}
+			connection = connectionFactory.getConnection();
+			connection.publish(INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+		}
+		catch (Exception e)
+		{
+			publishFailures.increment();
+			LOGGER.error("Unable to publish cache invalidation: " + e.getMessage());
+		}
+		finally
+		{
+			if (connection != null)
+			{
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Local near-cache in front of shared cache.
+	 */
+	private class TwoLevelCache implements Cache
+	{
+		private final Cache remote;
+		// Serialized values, cached instances are never shared between callers
+		private final com.google.common.cache.Cache<Object, byte[]> local;
+		private final ConcurrentMap<Object, CompletableFuture<byte[]>> loads = new ConcurrentHashMap<>();
+		// Incremented on every invalidation, remote reads started before it are not cached locally
+		private final AtomicLong generation = new AtomicLong();
+
+		private final LongAdder localHits = new LongAdder();
+		private final LongAdder remoteHits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder sharedLoads = new LongAdder();
+
+		private TwoLevelCache(Cache remote)
+		{
+			this.remote = remote;
+			this.local = CacheBuilder.newBuilder().maximumSize(localMaxSize).expireAfterWrite(localTtl, TimeUnit.SECONDS).build();
+		}
+
+		@Override
+		public String getName()
+		{
+			return remote.getName();
+		}
+
+		@Override
+		public Object getNativeCache()
+		{
+			return remote.getNativeCache();
+		}
+
+		@Override
+		public ValueWrapper get(Object key)
+		{
+			byte[] snapshot = local.getIfPresent(key);
+			if (snapshot != null)
+			{
+				localHits.increment();
+				return new SimpleValueWrapper(valueSerializer.deserialize(snapshot));
+			}
+			long currentGeneration = generation.get();
+			ValueWrapper value = remote.get(key);
+			if (value == null)
+			{
+				misses.increment();
+				return null;
+			}
+			remoteHits.increment();
+			putLocal(key, valueSerializer.serialize(value.get()), currentGeneration);
+			return value;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T get(Object key, Class<T> type)
+		{
+			ValueWrapper wrapper = get(key);
+			Object value = wrapper != null ? wrapper.get() : null;
+			if (value != null && type != null && !type.isInstance(value))
+			{
+				throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+			}
+			return (T) value;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T get(Object key, Callable<T> valueLoader)
+		{
+			long currentGeneration = generation.get();
+			ValueWrapper wrapper = get(key);
+			if (wrapper != null)
+			{
+				return (T) wrapper.get();
+			}
+			CompletableFuture<byte[]> load = new CompletableFuture<>();
+			CompletableFuture<byte[]> running = loads.putIfAbsent(key, load);
+			if (running != null)
+			{
+				sharedLoads.increment();
+				return (T) valueSerializer.deserialize(await(key, running, valueLoader));
+			}
+			try
+			{
+				T value = remote.get(key, valueLoader);
+				byte[] snapshot = valueSerializer.serialize(value);
+				putLocal(key, snapshot, currentGeneration);
+				load.complete(snapshot);
+				return value;
+			}
+			catch (RuntimeException e)
+			{
+				load.completeExceptionally(e);
+				throw e;
+			}
+			finally
+			{
+				loads.remove(key, load);
+			}
+		}
+
+		private byte[] await(Object key, CompletableFuture<byte[]> load, Callable<?> valueLoader)
+		{
+			try
+			{
+				return load.join();
+			}
+			catch (CompletionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw new ValueRetrievalException(key, valueLoader, e.getCause());
+			}
+		}
+
+		@Override
+		public void put(Object key, Object value)
+		{
+			remote.put(key, value);
+			invalidateLocal(key);
+			if (value != null)
+			{
+				local.put(key, valueSerializer.serialize(value));
+			}
+			publish(getName(), Collections.singleton(key));
+		}
+
+		private void putAll(Map<?, ?> entries)
+		{
+			entries.forEach((key, value) -> {
+				remote.put(key, value);
+				invalidateLocal(key);
+				if (value != null)
+				{
+					local.put(key, valueSerializer.serialize(value));
+				}
+			});
+			publish(getName(), entries.keySet());
+		}
+
+		@Override
+		public ValueWrapper putIfAbsent(Object key, Object value)
+		{
+			ValueWrapper existing = remote.putIfAbsent(key, value);
+			invalidateLocal(key);
+			publish(getName(), Collections.singleton(key));
+			return existing;
+		}
+
+		@Override
+		public void evict(Object key)
+		{
+			remote.evict(key);
+			invalidateLocal(key);
+			publish(getName(), Collections.singleton(key));
+		}
+
+		@Override
+		public void clear()
+		{
+			remote.clear();
+			invalidateLocal(null);
+			publish(getName(), null);
+		}
+
+		/**
+		 * @param key - entry key, null to invalidate all entries
+		 */
+		private void invalidateLocal(Object key)
+		{
+			generation.incrementAndGet();
+			if (key != null)
+			{
+				local.invalidate(key);
+			}
+			else
+			{
+				local.invalidateAll();
+			}
+		}
+
+		private void putLocal(Object key, byte[] value, long expectedGeneration)
+		{
+			if (generation.get() == expectedGeneration)
+			{
+				local.put(key, value);
+				// Invalidation may happen right before put
+				if (generation.get() != expectedGeneration)
+				{
+					local.invalidate(key);
+				}
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			long hits = localHits.sum(), remote = remoteHits.sum(), missed = misses.sum();
+			long total = hits + remote + missed;
+			return String.format("size: %d, local hits: %d, remote hits: %d, misses: %d, shared loads: %d, local hit ratio: %.1f%%, remote hit ratio: %.1f%%",
+					local.size(), hits, remote, missed, sharedLoads.sum(),
+					total > 0 ? 100.0 * hits / total : 0.0,
+					remote + missed > 0 ? 100.0 * remote / (remote + missed) : 0.0);
+		}
+	}
+}
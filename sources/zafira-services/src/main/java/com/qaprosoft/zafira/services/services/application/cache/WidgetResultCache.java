@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.services.exceptions.ServiceException;
+
+/**
+ * Tenant scoped cache of widget query results keyed by rendered SQL. Concurrent requests of the same query wait for
+ * one database call. Results of tenant are invalidated when any of its test runs is finished, invalidation is
+ * published to other nodes over cache invalidation channel, results loaded concurrently with invalidation are not
+ * cached. Cache size is limited by total count of cached rows.
+ */
+@Component
+@ManagedResource(objectName = "bean:name=widgetResultCache", description = "Widget SQL result cache")
+public class WidgetResultCache
+{
+	private static final String CACHE_NAME = "widgetResults";
+
+	private Cache<String, Result> results;
+	private final ConcurrentMap<String, CompletableFuture<List<Map<String, Object>>>> loads = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder sharedLoads = new LongAdder();
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder queryFailures = new LongAdder();
+	private final LongAdder queryTime = new LongAdder();
+	private final AtomicLong maxQueryTime = new AtomicLong();
+
+	@Autowired
+	private TwoLevelCacheManager cacheManager;
+
+	@Value("${zafira.widgets.cacheTtl}")
+	private long defaultTtl;
+
+	@Value("${zafira.widgets.cacheMaxTtl}")
+	private long maxTtl;
+
+	@Value("${zafira.widgets.cacheMaxRows}")
+	private long maxRows;
+
+	@PostConstruct
+	public void init()
+	{
+		this.results = CacheBuilder.newBuilder()
+				.maximumWeight(maxRows)
+				.weigher((String key, Result result) -> Math.max(1, result.rows.size()))
+				.expireAfterWrite(maxTtl, TimeUnit.MILLISECONDS)
+				.build();
+		cacheManager.addInvalidationListener(CACHE_NAME, tenantName -> getGeneration((String) tenantName).incrementAndGet());
+	}
+
+	/**
+	 * Returns cached result of query or loads it, concurrent loads of the same query are executed once.
+	 *
+	 * @param query - rendered SQL query
+	 * @param ttl - time to live of result in ms, default is used if null, 0 disables caching, limited by max ttl
+	 * @param loader - executes query
+	 * @return query result
+	 * @throws ServiceException - on query failure
+	 */
+	public List<Map<String, Object>> get(String query, Long ttl, Callable<List<Map<String, Object>>> loader) throws ServiceException
+	{
+		String tenantName = TenancyContext.getTenantName();
+		String key = tenantName + ":" + query;
+		AtomicLong tenantGeneration = getGeneration(tenantName);
+		long generation = tenantGeneration.get();
+		Result result = results.getIfPresent(key);
+		if (result != null && result.isValid(System.currentTimeMillis()))
+		{
+			hits.increment();
+			return result.rows;
+		}
+		misses.increment();
+
+		CompletableFuture<List<Map<String, Object>>> load = new CompletableFuture<>();
+		CompletableFuture<List<Map<String, Object>>> running = loads.putIfAbsent(key, load);
+		if (running != null)
+		{
+			sharedLoads.increment();
+			return await(running);
+		}
+		try
+		{
+			List<Map<String, Object>> rows = execute(loader);
+			long timeToLive = Math.min(ttl != null ? ttl : defaultTtl, maxTtl);
+			if (timeToLive > 0 && generation == tenantGeneration.get())
+			{
+				results.put(key, new Result(rows, tenantGeneration, generation, System.currentTimeMillis() + timeToLive));
+			}
+			load.complete(rows);
+			return rows;
+		}
+		catch (ServiceException | RuntimeException e)
+		{
+			load.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * Invalidates cached results of current tenant on all nodes after transaction commit (immediately if there is no
+	 * transaction).
+	 */
+	public void invalidate()
+	{
+		String tenantName = TenancyContext.getTenantName();
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+			{
+				@Override
+				public void afterCommit()
+				{
+					invalidate(tenantName);
+				}
+			});
+		}
+		else
+		{
+			invalidate(tenantName);
+		}
+	}
+
+	private void invalidate(String tenantName)
+	{
+		getGeneration(tenantName).incrementAndGet();
+		cacheManager.publishInvalidation(CACHE_NAME, tenantName);
+	}
+
+	@ManagedOperation(description = "Clear cached results of this node")
+	public void invalidateAll()
+	{
+		results.invalidateAll();
+	}
+
+	@ManagedAttribute(description = "Cached results")
+	public long getSize()
+	{
+		return results.size();
+	}
+
+	@ManagedAttribute(description = "Cache hit ratio")
+	public double getHitRatio()
+	{
+		long total = hits.sum() + misses.sum();
+		return total > 0 ? (double) hits.sum() / total : 0;
+	}
+
+	@ManagedAttribute(description = "Cache hits")
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute(description = "Cache misses")
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute(description = "Misses served by concurrent load of the same query")
+	public long getSharedLoadCount()
+	{
+		return sharedLoads.sum();
+	}
+
+	@ManagedAttribute(description = "Executed queries")
+	public long getQueryCount()
+	{
+		return queries.sum();
+	}
+
+	@ManagedAttribute(description = "Failed queries")
+	public long getQueryFailureCount()
+	{
+		return queryFailures.sum();
+	}
+
+	@ManagedAttribute(description = "Average query time in ms")
+	public double getQueryAverageTime()
+	{
+		long count = queries.sum();
+		return count > 0 ? (double) queryTime.sum() / count : 0;
+	}
+
+	@ManagedAttribute(description = "Max query time in ms")
+	public long getQueryMaxTime()
+	{
+		return maxQueryTime.get();
+	}
+
+	private List<Map<String, Object>> execute(Callable<List<Map<String, Object>>> loader) throws ServiceException
+	{
+		long start = System.currentTimeMillis();
+		try
+		{
+			return loader.call();
+		}
+		catch (ServiceException | RuntimeException e)
+		{
+			queryFailures.increment();
+			throw e;
+		}
+		catch (Exception e)
+		{
+			queryFailures.increment();
+			throw new ServiceException(e.getMessage(), e);
+		}
+		finally
+		{
+			long time = System.currentTimeMillis() - start;
+			queries.increment();
+			queryTime.add(time);
+			maxQueryTime.accumulateAndGet(time, Math::max);
+		}
+	}
+
+	private List<Map<String, Object>> await(CompletableFuture<List<Map<String, Object>>> load) throws ServiceException
+	{
+		try
+		{
+			return load.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ServiceException(e.getMessage());
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof ServiceException)
+			{
+				throw (ServiceException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ServiceException(e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private AtomicLong getGeneration(String tenantName)
+	{
+		return generations.computeIfAbsent(String.valueOf(tenantName), name -> new AtomicLong());
+	}
+
+	private static class Result
+	{
+		private final List<Map<String, Object>> rows;
+		private final AtomicLong tenantGeneration;
+		private final long generation;
+		private final long expiresAt;
+
+		private Result(List<Map<String, Object>> rows, AtomicLong tenantGeneration, long generation, long expiresAt)
+		{
+			this.rows = rows;
+			this.tenantGeneration = tenantGeneration;
+			this.generation = generation;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isValid(long now)
+		{
+			return expiresAt > now && generation == tenantGeneration.get();
+		}
+	}
+}
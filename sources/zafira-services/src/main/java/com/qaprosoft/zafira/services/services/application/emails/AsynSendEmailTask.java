@@ -24,14 +24,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
-import org.springframework.mail.javamail.MimeMessagePreparator;
 
 import javax.mail.MessagingException;
 import java.util.List;
 
 import static com.qaprosoft.zafira.models.db.Setting.Tool.EMAIL;
 
-public class AsynSendEmailTask implements Runnable, IJMXService<EmailContext> {
+public class AsynSendEmailTask implements IJMXService<EmailContext> {
 
     private static final Logger LOGGER = Logger.getLogger(AsynSendEmailTask.class);
 
@@ -41,13 +40,6 @@ public class AsynSendEmailTask implements Runnable, IJMXService<EmailContext> {
     @Autowired
     private CryptoService cryptoService;
 
-    private MimeMessagePreparator preparator;
-
-    @Override
-    public void run() {
-        getJavaMailSenderImpl().send(preparator);
-    }
-
     @Override
     public void init() {
         String host = null;
@@ -112,8 +104,12 @@ public class AsynSendEmailTask implements Runnable, IJMXService<EmailContext> {
         return connected;
     }
 
-    public void setPreparator(MimeMessagePreparator preparator) {
-        this.preparator = preparator;
+    /**
+     * Checks that SMTP integration is configured for current tenant without connecting to SMTP server.
+     * @return true if SMTP settings are present
+     */
+    public boolean isConfigured() {
+        return getContext(EMAIL) != null;
     }
 
     public JavaMailSenderImpl getJavaMailSenderImpl() {
@@ -0,0 +1,500 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.emails;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.qaprosoft.zafira.dbaccess.dao.mysql.application.OutboxEmailMapper;
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.models.db.Attachment;
+import com.qaprosoft.zafira.models.db.OutboxEmail;
+import com.qaprosoft.zafira.models.db.OutboxEmailAttachment;
+import com.qaprosoft.zafira.services.exceptions.ServiceException;
+import com.qaprosoft.zafira.services.services.management.TenancyService;
+
+/**
+ * Email outbox - rendered emails are stored in tenant database and sent by fixed pool of workers, so that requests
+ * never wait for SMTP. Workers take queued emails in batches and send emails of one tenant over one SMTP connection.
+ * Attachments are stored with their content, so that email can be sent by any node. Emails are claimed with lease
+ * before sending, failed emails are retried with exponential backoff, emails which
+ * didn't fit into in-memory queue or were left by stopped node are picked up by periodic poll.
+ */
+@Component
+@ManagedResource(objectName = "bean:name=emailOutbox", description = "Email outbox")
+public class EmailOutbox
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(EmailOutbox.class);
+
+	private static final String RECIPIENTS_SEPARATOR = ",";
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	private final Set<Entry> queued = ConcurrentHashMap.newKeySet();
+	private BlockingQueue<Entry> queue;
+	private ExecutorService executor;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder overflows = new LongAdder();
+	private final LongAdder connections = new LongAdder();
+	private final LongAdder sendTime = new LongAdder();
+	private final AtomicLong maxSendTime = new AtomicLong();
+	private final LongAdder deliveryDelay = new LongAdder();
+	private final AtomicLong maxDeliveryDelay = new AtomicLong();
+	private volatile int pendingCount;
+
+	@Autowired
+	private OutboxEmailMapper outboxEmailMapper;
+
+	@Autowired
+	private AsynSendEmailTask emailTask;
+
+	@Autowired
+	private TenancyService tenancyService;
+
+	@Value("${zafira.email.outbox.threads}")
+	private int threads;
+
+	@Value("${zafira.email.outbox.queueSize}")
+	private int queueSize;
+
+	@Value("${zafira.email.outbox.batchSize}")
+	private int batchSize;
+
+	@Value("${zafira.email.outbox.maxAttempts}")
+	private int maxAttempts;
+
+	@Value("${zafira.email.outbox.retryDelay}")
+	private long retryDelay;
+
+	@Value("${zafira.email.outbox.maxRetryDelay}")
+	private long maxRetryDelay;
+
+	@Value("${zafira.email.outbox.lease}")
+	private long lease;
+
+	@Value("${zafira.email.outbox.failedRetentionDays}")
+	private int failedRetentionDays;
+
+	@PostConstruct
+	public void init()
+	{
+		this.queue = new LinkedBlockingQueue<>(queueSize);
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "email-outbox-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < threads; i++)
+		{
+			executor.execute(this::work);
+		}
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Stores email in outbox of current tenant, email is queued for sending after commit. Email is stored in own
+	 * transaction, so it is kept even if caller transaction is read only.
+	 *
+	 * @param message - email message
+	 * @param text - rendered email text
+	 * @param recipients - valid recipients
+	 * @throws ServiceException - if attachments can't be stored
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+	public void enqueue(IEmailMessage message, String text, String[] recipients) throws ServiceException
+	{
+		OutboxEmail email = new OutboxEmail();
+		email.setSubject(message.getSubject());
+		email.setText(text);
+		email.setRecipients(String.join(RECIPIENTS_SEPARATOR, recipients));
+		outboxEmailMapper.createOutboxEmail(email);
+		if (message.getAttachments() != null && !message.getAttachments().isEmpty())
+		{
+			for (Attachment attachment : message.getAttachments())
+			{
+				File file = attachment.getFile();
+				OutboxEmailAttachment outboxAttachment = new OutboxEmailAttachment();
+				outboxAttachment.setOutboxEmailId(email.getId());
+				outboxAttachment.setName(attachment.getName());
+				outboxAttachment.setFileName(file.getName());
+				try
+				{
+					outboxAttachment.setContent(Files.readAllBytes(file.toPath()));
+				}
+				catch (IOException e)
+				{
+					throw new ServiceException("Unable to store email attachment " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+				}
+				email.getAttachments().add(outboxAttachment);
+			}
+			outboxEmailMapper.createOutboxEmailAttachments(email.getAttachments());
+		}
+
+		final Entry entry = new Entry(TenancyContext.getTenantName(), email.getId());
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+		{
+			@Override
+			public void afterCommit()
+			{
+				offer(entry);
+			}
+		});
+	}
+
+	/**
+	 * Queues due emails of all tenants and removes old failed emails.
+	 */
+	@ManagedOperation(description = "Queue due emails of all tenants")
+	@Scheduled(initialDelayString = "${zafira.email.outbox.pollInterval}", fixedDelayString = "${zafira.email.outbox.pollInterval}")
+	public void poll()
+	{
+		AtomicInteger pending = new AtomicInteger();
+		tenancyService.iterateItems(() -> {
+			try
+			{
+				String tenantName = TenancyContext.getTenantName();
+				outboxEmailMapper.deleteFailedOutboxEmails(failedRetentionDays);
+				pending.addAndGet(outboxEmailMapper.getOutboxEmailsCount(OutboxEmail.Status.QUEUED));
+				outboxEmailMapper.getDueOutboxEmailIds(queueSize).forEach(id -> offer(new Entry(tenantName, id)));
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to poll email outbox: " + e.getMessage(), e);
+			}
+		});
+		this.pendingCount = pending.get();
+	}
+
+	@ManagedAttribute(description = "Emails in memory queue")
+	public int getQueueSize()
+	{
+		return queue.size();
+	}
+
+	@ManagedAttribute(description = "Queued emails in database of all tenants on last poll")
+	public int getPendingCount()
+	{
+		return pendingCount;
+	}
+
+	@ManagedAttribute(description = "Sent emails")
+	public long getSentCount()
+	{
+		return sent.sum();
+	}
+
+	@ManagedAttribute(description = "Failed attempts rescheduled for retry")
+	public long getRetryCount()
+	{
+		return retried.sum();
+	}
+
+	@ManagedAttribute(description = "Emails failed after all attempts")
+	public long getFailedCount()
+	{
+		return failed.sum();
+	}
+
+	@ManagedAttribute(description = "Emails left for poll because memory queue was full")
+	public long getOverflowCount()
+	{
+		return overflows.sum();
+	}
+
+	@ManagedAttribute(description = "SMTP connections")
+	public long getConnectionCount()
+	{
+		return connections.sum();
+	}
+
+	@ManagedAttribute(description = "Average SMTP send time of batch in milliseconds")
+	public double getAverageSendTime()
+	{
+		long count = connections.sum();
+		return count > 0 ? sendTime.sum() / 1e6 / count : 0;
+	}
+
+	@ManagedAttribute(description = "Max SMTP send time of batch in milliseconds")
+	public double getMaxSendTime()
+	{
+		return maxSendTime.get() / 1e6;
+	}
+
+	@ManagedAttribute(description = "Average time from enqueue to delivery in milliseconds")
+	public double getAverageDeliveryDelay()
+	{
+		long count = sent.sum();
+		return count > 0 ? (double) deliveryDelay.sum() / count : 0;
+	}
+
+	@ManagedAttribute(description = "Max time from enqueue to delivery in milliseconds")
+	public long getMaxDeliveryDelay()
+	{
+		return maxDeliveryDelay.get();
+	}
+
+	private void offer(Entry entry)
+	{
+		if (queued.add(entry) && !queue.offer(entry))
+		{
+			// Email stays in database and is queued by next poll
+			queued.remove(entry);
+			overflows.increment();
+		}
+	}
+
+	private void work()
+	{
+		while (!Thread.currentThread().isInterrupted())
+		{
+			try
+			{
+				List<Entry> entries = new ArrayList<>();
+				entries.add(queue.take());
+				queue.drainTo(entries, batchSize - 1);
+				entries.forEach(queued::remove);
+
+				Map<String, List<Long>> ids = new LinkedHashMap<>();
+				entries.forEach(entry -> ids.computeIfAbsent(entry.tenantName, tenantName -> new ArrayList<>()).add(entry.id));
+				ids.forEach(this::send);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to send emails: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private void send(String tenantName, List<Long> ids)
+	{
+		TenancyContext.setTenantName(tenantName);
+		try
+		{
+			List<OutboxEmail> emails = outboxEmailMapper.claimOutboxEmails(ids, lease);
+			if (emails.isEmpty())
+			{
+				return;
+			}
+			Map<Long, OutboxEmail> claimed = emails.stream().collect(Collectors.toMap(OutboxEmail::getId, Function.identity()));
+			outboxEmailMapper.getOutboxEmailAttachments(new ArrayList<>(claimed.keySet()))
+					.forEach(attachment -> claimed.get(attachment.getOutboxEmailId()).getAttachments().add(attachment));
+			JavaMailSenderImpl sender = emailTask.getJavaMailSenderImpl();
+			if (sender == null)
+			{
+				emails.forEach(email -> retry(email, "SMTP integration is not configured"));
+				return;
+			}
+
+			Map<MimeMessage, OutboxEmail> messages = new LinkedHashMap<>();
+			for (OutboxEmail email : emails)
+			{
+				try
+				{
+					messages.put(createMessage(sender, email), email);
+				}
+				catch (Exception e)
+				{
+					fail(email, "Unable to create email: " + e.getMessage());
+				}
+			}
+			if (messages.isEmpty())
+			{
+				return;
+			}
+
+			// All messages of batch are sent over one SMTP connection
+			Map<Object, Exception> failedMessages = Collections.emptyMap();
+			long start = System.nanoTime();
+			try
+			{
+				sender.send(messages.keySet().toArray(new MimeMessage[messages.size()]));
+			}
+			catch (MailSendException e)
+			{
+				failedMessages = e.getFailedMessages();
+			}
+			catch (MailException e)
+			{
+				failedMessages = new LinkedHashMap<>();
+				for (MimeMessage message : messages.keySet())
+				{
+					failedMessages.put(message, e);
+				}
+			}
+			finally
+			{
+				long time = System.nanoTime() - start;
+				connections.increment();
+				sendTime.add(time);
+				maxSendTime.accumulateAndGet(time, Math::max);
+			}
+
+			for (Map.Entry<MimeMessage, OutboxEmail> message : messages.entrySet())
+			{
+				OutboxEmail email = message.getValue();
+				Exception e = failedMessages.get(message.getKey());
+				if (e != null)
+				{
+					retry(email, e.getMessage());
+				}
+				else
+				{
+					outboxEmailMapper.deleteOutboxEmailById(email.getId());
+					long delay = System.currentTimeMillis() - email.getCreatedAt().getTime();
+					sent.increment();
+					deliveryDelay.add(delay);
+					maxDeliveryDelay.accumulateAndGet(delay, Math::max);
+				}
+			}
+		}
+		finally
+		{
+			TenancyContext.setTenantName(null);
+		}
+	}
+
+	private MimeMessage createMessage(JavaMailSenderImpl sender, OutboxEmail email) throws Exception
+	{
+		MimeMessage mimeMessage = sender.createMimeMessage();
+		MimeMessageHelper msg = new MimeMessageHelper(mimeMessage, !email.getAttachments().isEmpty());
+		msg.setSubject(email.getSubject());
+		msg.setTo(email.getRecipients().split(RECIPIENTS_SEPARATOR));
+		if (!StringUtils.isBlank(emailTask.getFromAddress()))
+		{
+			msg.setFrom(emailTask.getFromAddress(), sender.getUsername());
+		}
+		else
+		{
+			msg.setFrom(sender.getUsername());
+		}
+		msg.setText(email.getText(), true);
+		for (OutboxEmailAttachment attachment : email.getAttachments())
+		{
+			ByteArrayResource content = new ByteArrayResource(attachment.getContent());
+			msg.addAttachment(attachment.getName() + "." + FilenameUtils.getExtension(attachment.getFileName()), content);
+			msg.addInline(attachment.getName().replaceAll(" ", "_"), content, msg.getFileTypeMap().getContentType(attachment.getFileName()));
+		}
+		return mimeMessage;
+	}
+
+	private void retry(OutboxEmail email, String error)
+	{
+		if (email.getAttempts() >= maxAttempts)
+		{
+			fail(email, error);
+			return;
+		}
+		long delay = Math.min(retryDelay << Math.min(email.getAttempts() - 1, 20), maxRetryDelay);
+		outboxEmailMapper.updateOutboxEmailAttempt(email.getId(), OutboxEmail.Status.QUEUED, delay, StringUtils.left(error, MAX_ERROR_LENGTH));
+		retried.increment();
+		LOGGER.warn("Unable to send email " + email.getId() + ", attempt " + email.getAttempts() + " of " + maxAttempts + " is retried in "
+				+ TimeUnit.MILLISECONDS.toSeconds(delay) + " s: " + error);
+	}
+
+	private void fail(OutboxEmail email, String error)
+	{
+		outboxEmailMapper.updateOutboxEmailAttempt(email.getId(), OutboxEmail.Status.FAILED, 0, StringUtils.left(error, MAX_ERROR_LENGTH));
+		failed.increment();
+		LOGGER.error("Unable to send email " + email.getId() + " '" + email.getSubject() + "': " + error);
+	}
+
+	/**
+	 * Queued email reference.
+	 */
+	private static final class Entry
+	{
+		private final String tenantName;
+		private final Long id;
+
+		private Entry(String tenantName, Long id)
+		{
+			this.tenantName = tenantName;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Entry))
+			{
+				return false;
+			}
+			Entry entry = (Entry) o;
+			return tenantName.equals(entry.tenantName) && id.equals(entry.id);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * tenantName.hashCode() + id.hashCode();
+		}
+	}
+}
@@ -29,14 +29,14 @@ public class TestRunResultsEmail implements IEmailMessage
 
 	private Map<String, String> configuration = new HashMap<>();
 	private TestRun testRun;
-	private List<Test> tests;
+	private Iterable<Test> tests;
 	private String jiraURL;
 	private boolean showOnlyFailures = false;
 	private boolean showStacktrace = true;
 	private int successRate;
 	private String elapsed;
 
-	public TestRunResultsEmail(Configuration config, TestRun testRun, List<Test> tests)
+	public TestRunResultsEmail(Configuration config, TestRun testRun, Iterable<Test> tests)
 	{
 		for (Argument arg : config.getArg())
 		{
@@ -71,12 +71,12 @@ public class TestRunResultsEmail implements IEmailMessage
 		this.testRun = testRun;
 	}
 
-	public List<Test> getTests()
+	public Iterable<Test> getTests()
 	{
 		return tests;
 	}
 
-	public void setTests(List<Test> tests)
+	public void setTests(Iterable<Test> tests)
 	{
 		this.tests = tests;
 	}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.jobs;
+
+import java.util.Calendar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.services.services.application.TestRollupService;
+import com.qaprosoft.zafira.services.services.management.TenancyService;
+
+/**
+ * Folds test deltas into widget rollups and re-derives recent rollups from tests to correct possible drift
+ */
+@Component
+@ManagedResource(objectName = "bean:name=testRollupsJob", description = "Widget rollups maintenance")
+public class TestRollupsJob
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestRollupsJob.class);
+
+	@Autowired
+	private TestRollupService testRollupService;
+
+	@Autowired
+	private TenancyService tenancyService;
+
+	@Value("${zafira.batch.jobs.foldTestRollups.batchSize}")
+	private int batchSize;
+
+	@Value("${zafira.batch.jobs.repairTestRollups.days}")
+	private int days;
+
+	@Scheduled(fixedDelayString = "${zafira.batch.jobs.foldTestRollups.interval}")
+	public void foldTestRollups()
+	{
+		tenancyService.iterateItems(() -> {
+			try
+			{
+				while (testRollupService.foldTestRollupDeltas(batchSize) == batchSize)
+				{
+					LOGGER.debug("Test rollups batch folded, tenant: " + TenancyContext.getTenantName());
+				}
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to fold test rollups: " + e.getMessage(), e);
+			}
+		});
+	}
+
+	@Scheduled(cron = "${zafira.batch.jobs.repairTestRollups.trigger.cronExpression}")
+	public void repairTestRollups()
+	{
+		rebuildTestRollups(days);
+	}
+
+	/**
+	 * Backfills rollups of all tenants, e.g. after import of historical tests.
+	 *
+	 * @param days - count of days to rebuild, rebuild starts from the first day of month
+	 */
+	@ManagedOperation(description = "Rebuild test rollups from tests")
+	@ManagedOperationParameters({ @ManagedOperationParameter(name = "days", description = "Count of days to rebuild") })
+	public void rebuildTestRollups(int days)
+	{
+		Calendar from = Calendar.getInstance();
+		from.add(Calendar.DAY_OF_YEAR, -days);
+		tenancyService.iterateItems(() -> {
+			try
+			{
+				int repaired = testRollupService.rebuildTestRollups(from.getTime());
+				if (repaired > 0)
+				{
+					LOGGER.warn("Test rollups corrected: " + repaired + ", tenant: " + TenancyContext.getTenantName());
+				}
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to repair test rollups: " + e.getMessage(), e);
+			}
+		});
+	}
+}
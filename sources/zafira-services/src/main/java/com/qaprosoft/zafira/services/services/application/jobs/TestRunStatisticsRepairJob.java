@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.jobs;
+
+import java.util.Calendar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.services.services.application.TestRunService;
+import com.qaprosoft.zafira.services.services.management.TenancyService;
+
+/**
+ * Re-derives persisted test run statistics from tests to correct possible counters drift
+ */
+@Component
+public class TestRunStatisticsRepairJob
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestRunStatisticsRepairJob.class);
+
+	@Autowired
+	private TestRunService testRunService;
+
+	@Autowired
+	private TenancyService tenancyService;
+
+	@Value("${zafira.batch.jobs.repairTestRunStatistics.days}")
+	private int days;
+
+	@Scheduled(cron = "${zafira.batch.jobs.repairTestRunStatistics.trigger.cronExpression}")
+	public void repairTestRunStatistics()
+	{
+		Calendar startedAfter = Calendar.getInstance();
+		startedAfter.add(Calendar.DAY_OF_YEAR, -days);
+		tenancyService.iterateItems(() -> {
+			try
+			{
+				int repaired = testRunService.recalculateTestRunStatistics(startedAfter.getTime());
+				if (repaired > 0)
+				{
+					LOGGER.warn("Test run statistics corrected for " + repaired + " test runs, tenant: " + TenancyContext.getTenantName());
+				}
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to repair test run statistics: " + e.getMessage(), e);
+			}
+		});
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.services.application.jobs;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.services.services.application.TestRunService;
+import com.qaprosoft.zafira.services.services.application.cache.StatisticsService;
+import com.qaprosoft.zafira.services.services.management.TenancyService;
+
+/**
+ * Loads statistics of in progress and queued test runs into cache after startup and periodically, so that cache
+ * restored after Redis failover is filled in background instead of by concurrent statistics pushes.
+ */
+@Component
+@ManagedResource(objectName = "bean:name=testRunStatisticsWarmUpJob", description = "Test run statistics cache warm-up")
+public class TestRunStatisticsWarmUpJob
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestRunStatisticsWarmUpJob.class);
+
+	@Autowired
+	private TestRunService testRunService;
+
+	@Autowired
+	private StatisticsService statisticsService;
+
+	@Autowired
+	private TenancyService tenancyService;
+
+	@ManagedOperation(description = "Load statistics of active test runs into cache")
+	@Scheduled(initialDelayString = "${zafira.statistics.warmUp.initialDelay}", fixedDelayString = "${zafira.statistics.warmUp.interval}")
+	public void warmUp()
+	{
+		tenancyService.iterateItems(() -> {
+			try
+			{
+				List<Long> testRunIds = testRunService.getActiveTestRunIds();
+				// Cached statistics are not reloaded
+				testRunIds.forEach(statisticsService::getTestRunStatistic);
+				LOGGER.debug("Statistics of " + testRunIds.size() + " active test runs are cached, tenant: " + TenancyContext.getTenantName());
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to warm up test run statistics: " + e.getMessage(), e);
+			}
+		});
+	}
+}
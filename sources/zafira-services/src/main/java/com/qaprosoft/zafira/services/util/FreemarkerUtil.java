@@ -15,6 +15,8 @@
  ******************************************************************************/
 package com.qaprosoft.zafira.services.util;
 
+import java.io.Writer;
+
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import freemarker.template.Configuration;
 import org.apache.log4j.Logger;
@@ -45,4 +47,24 @@ public class FreemarkerUtil
 		}
 		return content.toString();
 	}
+
+	/**
+	 * Renders template directly into writer without buffering whole content in memory.
+	 *
+	 * @param template - template name
+	 * @param obj - data model
+	 * @param writer - output writer
+	 * @throws ServiceException - on template processing error
+	 */
+	public void processTemplate(String template, Object obj, Writer writer) throws ServiceException
+	{
+		try
+		{
+			freemarkerConfiguration.getTemplate(template).process(obj, writer);
+		} catch (Exception e)
+		{
+			LOGGER.error("Problem with free marker template compilation: " + e.getMessage());
+			throw new ServiceException(e.getMessage());
+		}
+	}
 }
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stable 64-bit fingerprint of test failure message used for known issues matching. Message and top stack frames (first
+ * {@link #MAX_LINES} lines) are normalized in single pass: bracketed values, hex addresses, identity hash codes and
+ * numbers (including line numbers) are replaced by '*'. Fingerprint is first 8 bytes of MD5 of normalized UTF-8 text,
+ * so it may be calculated in database the same way, see message_fingerprint() function.
+ */
+public final class MessageFingerprint
+{
+	public static final int MAX_LINES = 10;
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final ThreadLocal<Digest> DIGESTS = ThreadLocal.withInitial(Digest::new);
+
+	private MessageFingerprint()
+	{
+	}
+
+	/**
+	 * Calculates message fingerprint.
+	 *
+	 * @param message - test failure message
+	 * @return fingerprint or 0 if message is null
+	 */
+	public static long of(String message)
+	{
+		if (message == null)
+		{
+			return 0;
+		}
+		Digest digest = DIGESTS.get();
+		int length = message.length();
+		int lines = 0;
+		int i = 0;
+		while (i < length)
+		{
+			char c = message.charAt(i);
+			int end = i + 1;
+			boolean masked = false;
+			if (c == '\n')
+			{
+				if (++lines == MAX_LINES)
+				{
+					break;
+				}
+			}
+			else if (c == '[')
+			{
+				int close = i + 1;
+				while (close < length && message.charAt(close) != ']' && message.charAt(close) != '\n')
+				{
+					close++;
+				}
+				if (close < length && message.charAt(close) == ']')
+				{
+					end = close + 1;
+					masked = true;
+				}
+			}
+			else if (c == '@')
+			{
+				int hexEnd = hexEnd(message, i + 1);
+				if (hexEnd > i + 1)
+				{
+					end = hexEnd;
+					masked = true;
+				}
+			}
+			else if (isDigit(c))
+			{
+				while (end < length && isDigit(message.charAt(end)))
+				{
+					end++;
+				}
+				// The longest of number and 0x address wins
+				if (c == '0' && end == i + 1 && i + 2 < length && message.charAt(i + 1) == 'x')
+				{
+					int hexEnd = hexEnd(message, i + 2);
+					end = hexEnd > i + 2 ? hexEnd : end;
+				}
+				masked = true;
+			}
+			if (masked)
+			{
+				digest.write('*');
+			}
+			else if (Character.isHighSurrogate(c) && end < length && Character.isLowSurrogate(message.charAt(end)))
+			{
+				digest.write(Character.toCodePoint(c, message.charAt(end)));
+				end++;
+			}
+			else
+			{
+				digest.write(Character.isSurrogate(c) ? '?' : c);
+			}
+			i = end;
+		}
+		return digest.finish();
+	}
+
+	private static boolean isDigit(char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	private static int hexEnd(String message, int start)
+	{
+		int end = start;
+		while (end < message.length() && (isDigit(message.charAt(end)) || (message.charAt(end) >= 'a' && message.charAt(end) <= 'f')
+				|| (message.charAt(end) >= 'A' && message.charAt(end) <= 'F')))
+		{
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Reusable MD5 digest with UTF-8 encoding buffer.
+	 */
+	private static class Digest
+	{
+		private final MessageDigest md5;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position;
+
+		private Digest()
+		{
+			try
+			{
+				this.md5 = MessageDigest.getInstance("MD5");
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void write(int codePoint)
+		{
+			if (position > BUFFER_SIZE - 4)
+			{
+				md5.update(buffer, 0, position);
+				position = 0;
+			}
+			if (codePoint < 0x80)
+			{
+				buffer[position++] = (byte) codePoint;
+			}
+			else if (codePoint < 0x800)
+			{
+				buffer[position++] = (byte) (0xC0 | (codePoint >> 6));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else if (codePoint < 0x10000)
+			{
+				buffer[position++] = (byte) (0xE0 | (codePoint >> 12));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else
+			{
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+		}
+
+		private long finish()
+		{
+			try
+			{
+				md5.update(buffer, 0, position);
+				md5.digest(buffer, 0, 16);
+				long fingerprint = 0;
+				for (int i = 0; i < 8; i++)
+				{
+					fingerprint = (fingerprint << 8) | (buffer[i] & 0xFF);
+				}
+				return fingerprint;
+			}
+			catch (DigestException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			finally
+			{
+				position = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.services.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterable that loads elements page by page while iterating, next page is requested with the last element of previous
+ * one (null for the first page), so that only one page is kept in memory. Iteration stops on incomplete page.
+ *
+ * @param <T> - element type
+ */
+public class PagedIterable<T> implements Iterable<T>
+{
+	private final Function<T, List<T>> pageLoader;
+	private final int pageSize;
+
+	public PagedIterable(Function<T, List<T>> pageLoader, int pageSize)
+	{
+		this.pageLoader = pageLoader;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public Iterator<T> iterator()
+	{
+		return new Iterator<T>()
+		{
+			private Iterator<T> page = Collections.emptyIterator();
+			private T last;
+			private boolean lastPage;
+
+			@Override
+			public boolean hasNext()
+			{
+				if (!page.hasNext() && !lastPage)
+				{
+					List<T> elements = pageLoader.apply(last);
+					lastPage = elements.size() < pageSize;
+					page = elements.iterator();
+				}
+				return page.hasNext();
+			}
+
+			@Override
+			public T next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				last = page.next();
+				return last;
+			}
+		};
+	}
+}
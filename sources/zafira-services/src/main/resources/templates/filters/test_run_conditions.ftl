@@ -1,5 +1,6 @@
+            WHERE TRUE
 <#if (criteriasSize?number > 0)>
-            WHERE
+            AND (
     <#list 0..criteriasSize - 1 as index>
         <#if (! isPenultimate(index) && isNextSame(criterias, index))>
             <#if (!isPreviousSame(criterias, index) || index?number == 0)>
@@ -28,4 +29,5 @@
         <#elseif (isPenultimate(index) && isPreviousSame(criterias, index))>)</#if>
         <#if (! isPenultimate(index) && ! isNextSame(criterias, index))> AND </#if>
     </#list>
-</#if>
\ No newline at end of file
+            )
+</#if>
@@ -20,6 +20,7 @@ SELECT
     TR.KNOWN_ISSUE AS TEST_RUN_KNOWN_ISSUE,
     TR.BLOCKER AS TEST_RUN_BLOCKER,
     TR.PLATFORM AS TEST_RUN_PLATFORM,
+    TR.BROWSER_VERSION AS TEST_RUN_BROWSER_VERSION,
     TR.APP_VERSION AS TEST_RUN_APP_VERSION,
     TR.ENV AS TEST_RUN_ENV,
     TR.STARTED_AT AS TEST_RUN_STARTED_AT,
@@ -28,14 +29,14 @@ SELECT
     TR.COMMENTS AS TEST_RUN_COMMENTS,
     TR.DRIVER_MODE AS TEST_RUN_DRIVER_MODE,
     TR.REVIEWED AS TEST_RUN_REVIEWED,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'PASSED') AS TEST_RUN_PASSED,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'FAILED') AS TEST_RUN_FAILED,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'FAILED' AND T.KNOWN_ISSUE = TRUE) AS TEST_RUN_FAILED_AS_KNOWN,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'FAILED' AND T.BLOCKER = TRUE) AS TEST_RUN_FAILED_AS_BLOCKER,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'SKIPPED') AS TEST_RUN_SKIPPED,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'IN_PROGRESS') AS TEST_RUN_IN_PROGRESS,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'ABORTED') AS TEST_RUN_ABORTED,
-    (SELECT COUNT(*) FROM TESTS T WHERE T.TEST_RUN_ID = TR.ID AND T.STATUS = 'QUEUED') AS TEST_RUN_QUEUED,
+    COALESCE(S.PASSED, 0) AS TEST_RUN_PASSED,
+    COALESCE(S.FAILED, 0) AS TEST_RUN_FAILED,
+    COALESCE(S.FAILED_AS_KNOWN, 0) AS TEST_RUN_FAILED_AS_KNOWN,
+    COALESCE(S.FAILED_AS_BLOCKER, 0) AS TEST_RUN_FAILED_AS_BLOCKER,
+    COALESCE(S.SKIPPED, 0) AS TEST_RUN_SKIPPED,
+    COALESCE(S.IN_PROGRESS, 0) AS TEST_RUN_IN_PROGRESS,
+    COALESCE(S.ABORTED, 0) AS TEST_RUN_ABORTED,
+    COALESCE(S.QUEUED, 0) AS TEST_RUN_QUEUED,
     TR.MODIFIED_AT AS TEST_RUN_MODIFIED_AT,
     TR.CREATED_AT AS TEST_RUN_CREATED_AT,
 
@@ -71,4 +72,6 @@ LEFT JOIN TEST_SUITES TS
     ON TR.TEST_SUITE_ID = TS.ID
 LEFT JOIN
     PROJECTS P ON TR.PROJECT_ID = P.ID
+LEFT JOIN LATERAL
+    (SELECT * FROM TEST_RUN_STATISTICS WHERE TEST_RUN_ID = TR.ID) S ON TRUE
 <#include 'test_run_conditions.ftl'>
@@ -146,8 +146,13 @@
                 <th width="10%" align="center">Jira</th>
                 <th width="10%" align="center">Test info</th>
             </tr>
-            <#assign testList = tests?sort_by("id")>
-            <#list testList?sort_by("notNullTestGroup") as test>
+            <#-- Streamed tests are already ordered by group and id -->
+            <#if tests?is_sequence>
+                <#assign testList = tests?sort_by("id")?sort_by("notNullTestGroup")>
+            <#else>
+                <#assign testList = tests.iterator()>
+            </#if>
+            <#list testList as test>
                 <#assign currentGroup = test.notNullTestGroup>
                 <#if currentGroup != previousGroup!''>
                     <td colspan="4" style="background-color: gray;border: 1px solid white;padding: 5px;color: white;background-position: initial initial;background-repeat: initial initial;">
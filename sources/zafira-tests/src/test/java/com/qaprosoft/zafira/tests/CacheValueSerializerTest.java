@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.zafira.models.db.Group;
+import com.qaprosoft.zafira.models.db.Permission;
+import com.qaprosoft.zafira.models.db.Project;
+import com.qaprosoft.zafira.models.db.Status;
+import com.qaprosoft.zafira.models.db.TestCase;
+import com.qaprosoft.zafira.models.db.User;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+import com.qaprosoft.zafira.services.services.application.cache.CacheValueSerializer;
+import com.qaprosoft.zafira.services.services.application.cache.TwoLevelCacheManager;
+
+/**
+ * Verifies that every type registered in {@link CacheValueSerializer} keeps its type id and survives serialization
+ * round trip, and that local cache of {@link TwoLevelCacheManager} does not share instances between callers.
+ */
+public class CacheValueSerializerTest
+{
+	// Type id is position in this list, entries cached by running nodes become unreadable if it is changed
+	private static final List<Class<?>> REGISTERED_TYPES = Arrays.asList(User.class, Project.class, TestCase.class, Group.class,
+			TestRunStatistics.class);
+
+	private CacheValueSerializer serializer;
+
+	@BeforeClass
+	public void setup()
+	{
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		new XmlBeanDefinitionReader(beanFactory).loadBeanDefinitions("classpath:zafira-services.xml");
+		this.serializer = beanFactory.getBean("cacheValueSerializer", CacheValueSerializer.class);
+	}
+
+	@DataProvider(name = "getCacheValues")
+	public static Object[][] getCacheValues()
+	{
+		return new Object[][]
+		{
+				{ createUser() },
+				{ createProject() },
+				{ createTestCase() },
+				{ createGroup() },
+				{ createTestRunStatistics() }
+		};
+	}
+
+	@Test
+	public void verifyRegisteredTypesTest()
+	{
+		Assert.assertEquals(serializer.getTypes(), REGISTERED_TYPES, "Cache value types must be appended to the end of the list");
+		Set<Class<?>> testedTypes = Arrays.stream(getCacheValues()).map(value -> value[0].getClass()).collect(Collectors.toSet());
+		Assert.assertEquals(testedTypes, new HashSet<>(serializer.getTypes()), "Every registered type must be verified");
+	}
+
+	@Test(dataProvider = "getCacheValues")
+	public void verifyRoundTripTest(Object value)
+	{
+		byte[] bytes = serializer.serialize(value);
+		Assert.assertEquals(bytes[0], serializer.getTypes().indexOf(value.getClass()) + 1, "Unexpected type id");
+		Object copy = serializer.deserialize(bytes);
+		Assert.assertEquals(copy.getClass(), value.getClass());
+		Assert.assertNotSame(copy, value);
+		Assert.assertEquals(serializer.serialize(copy), bytes, "Fields are lost in round trip");
+	}
+
+	@Test
+	public void verifyLocalCacheCopiesTest()
+	{
+		// Invalidations are not published without Redis connection, local tier works as usual
+		TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(new ConcurrentMapCacheManager("users"), null, 100, 60, serializer);
+		Cache cache = cacheManager.getCache("users");
+		User user = createUser();
+		cache.put(user.getId(), user);
+		user.setFirstName("Changed");
+
+		User cachedUser = cache.get(user.getId(), User.class);
+		Assert.assertEquals(cachedUser.getFirstName(), "John", "Cached value must not be affected by changes of put value");
+		cachedUser.setFirstName("Changed");
+		Assert.assertEquals(cache.get(user.getId(), User.class).getFirstName(), "John", "Cached value must not be affected by changes of read value");
+		Assert.assertNotSame(cache.get(user.getId(), User.class), cache.get(user.getId(), User.class));
+	}
+
+	private static User createUser()
+	{
+		User user = new User("jdoe");
+		user.setId(1L);
+		user.setEmail("jdoe@qaprosoft.com");
+		user.setFirstName("John");
+		user.setLastName("Doe");
+		user.setLastLogin(new Date(1500000000000L));
+		user.setTenant("zafira");
+		user.setSource(User.Source.LDAP);
+		user.setStatus(User.Status.ACTIVE);
+		user.setGroups(Collections.singletonList(createGroup()));
+		return user;
+	}
+
+	private static Project createProject()
+	{
+		Project project = new Project("UNKNOWN");
+		project.setId(2L);
+		project.setDescription("Default project");
+		project.setCreatedAt(new Date(1500000000000L));
+		return project;
+	}
+
+	private static TestCase createTestCase()
+	{
+		TestCase testCase = new TestCase();
+		testCase.setId(3L);
+		testCase.setTestClass("com.qaprosoft.LoginTest");
+		testCase.setTestMethod("testLogin");
+		testCase.setStatus(Status.PASSED);
+		testCase.setInfo("Login test");
+		testCase.setTestSuiteId(4L);
+		testCase.setPrimaryOwner(new User(1L));
+		testCase.setProject(createProject());
+		testCase.setStability(95L);
+		return testCase;
+	}
+
+	private static Group createGroup()
+	{
+		Group group = new Group("Admins", Group.Role.ROLE_ADMIN, Collections.singleton(new Permission(Permission.Name.MODIFY_USERS)));
+		group.setId(5L);
+		return group;
+	}
+
+	private static TestRunStatistics createTestRunStatistics()
+	{
+		TestRunStatistics statistics = new TestRunStatistics();
+		statistics.setTestRunId(6L);
+		statistics.setPassed(10);
+		statistics.setFailed(2);
+		statistics.setFailedAsKnown(1);
+		statistics.setFailedAsBlocker(1);
+		statistics.setSkipped(3);
+		statistics.setInProgress(4);
+		statistics.setAborted(5);
+		statistics.setQueued(6);
+		statistics.setReviewed(true);
+		return statistics;
+	}
+}
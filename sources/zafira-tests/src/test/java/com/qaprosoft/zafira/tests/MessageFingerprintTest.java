@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.tests;
+
+import java.util.Collections;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.zafira.dbaccess.dao.mysql.application.WorkItemMapper;
+import com.qaprosoft.zafira.dbaccess.utils.TenancyDataSourceWrapper;
+import com.qaprosoft.zafira.models.db.User;
+import com.qaprosoft.zafira.models.db.WorkItem;
+import com.qaprosoft.zafira.services.services.application.TestService;
+import com.qaprosoft.zafira.services.util.MessageFingerprint;
+
+/**
+ * Verifies that {@link MessageFingerprint} and database message_fingerprint() function calculate the same values, so
+ * that known issues with fingerprints calculated in database are matched by fingerprints of new test failures. Message
+ * hash codes recalculated in database must match hash codes of new test failures as well.
+ */
+@ContextConfiguration("classpath:dbaccess-app-test.xml")
+public class MessageFingerprintTest extends AbstractTestNGSpringContextTests
+{
+	private static final String STACK_TRACE = "java.lang.AssertionError: expected [true] but found [false]\n"
+			+ "\tat org.testng.Assert.fail(Assert.java:94)\n"
+			+ "\tat com.qaprosoft.LoginTest.testLogin(LoginTest.java:42)\n";
+
+	@Autowired
+	private TenancyDataSourceWrapper tenancyAppDSWrapper;
+
+	@Autowired
+	private WorkItemMapper workItemMapper;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeClass
+	public void setup()
+	{
+		this.jdbcTemplate = new JdbcTemplate(tenancyAppDSWrapper.getDataSource());
+	}
+
+	@DataProvider(name = "getMessages")
+	public static Object[][] getMessages()
+	{
+		return new Object[][]
+		{
+				{ "" },
+				{ "Element not found" },
+				{ "Timed out after 30 seconds waiting for [[ChromeDriver: chrome on LINUX (3f2a)] -> id: login]" },
+				{ "Unclosed [bracket and [multi\nline] bracket" },
+				{ "Nested [[value]] and empty [] brackets" },
+				{ "Object com.qaprosoft.Page@1b6d3586 at 0x7ffe5fb0 and 0x without address, 10x1F" },
+				{ "Identity @ghost and @abcdefg" },
+				{ "Trailing newline\n" },
+				{ "Unicode: Ошибка входа 😀 and é" },
+				{ "org.openqa.selenium.TimeoutException: Expected condition failed after 10 seconds" },
+				{ "Session [3f2a] not found" },
+				{ STACK_TRACE },
+				{ String.join("", Collections.nCopies(20, STACK_TRACE)) }
+		};
+	}
+
+	@Test(groups = { "acceptance", "fingerprint" }, dataProvider = "getMessages")
+	public void verifyMessageFingerprintTest(String message)
+	{
+		Long fingerprint = jdbcTemplate.queryForObject("SELECT message_fingerprint(?)", Long.class, message);
+		Assert.assertEquals(MessageFingerprint.of(message), fingerprint.longValue(), "Fingerprint must match database fingerprint");
+	}
+
+	@Test(groups = { "acceptance", "fingerprint" }, dataProvider = "getMessages")
+	public void verifyMessageHashCodeTest(String message)
+	{
+		Integer hashCode = jdbcTemplate.queryForObject("SELECT message_hash_code(?, message_fingerprint(?))", Integer.class, message, message);
+		Assert.assertEquals(new TestService().getTestMessageHashCode(message), hashCode.intValue(), "Hash code must match database hash code");
+	}
+
+	@Test(groups = { "acceptance", "fingerprint" })
+	public void verifyKnownIssueFingerprintTest()
+	{
+		User user = new User();
+		user.setId(1L);
+		WorkItem knownIssue = new WorkItem("JIRA-" + RandomUtils.nextInt(1, Integer.MAX_VALUE), WorkItem.Type.BUG);
+		knownIssue.setHashCode(RandomUtils.nextInt(1, Integer.MAX_VALUE));
+		knownIssue.setUser(user);
+		knownIssue.setTestCaseId(1L);
+		knownIssue.setFingerprint(jdbcTemplate.queryForObject("SELECT message_fingerprint(?)", Long.class, STACK_TRACE));
+		workItemMapper.createWorkItem(knownIssue);
+		try
+		{
+			WorkItem workItem = workItemMapper.getWorkItemByTestCaseIdAndFingerprint(knownIssue.getTestCaseId(),
+					MessageFingerprint.of(STACK_TRACE.replace("42", "57")));
+			Assert.assertNotNull(workItem, "Known issue must be found by fingerprint of message with other line numbers");
+			Assert.assertEquals(workItem.getId(), knownIssue.getId(), "Known issue must match");
+		}
+		finally
+		{
+			workItemMapper.deleteWorkItemById(knownIssue.getId());
+		}
+	}
+}
@@ -19,6 +19,7 @@ import org.testng.annotations.Test;
 import com.qaprosoft.zafira.models.db.Status;
 import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 import com.qaprosoft.zafira.services.services.application.TestRunService;
+import com.qaprosoft.zafira.services.services.application.cache.TestRunStatisticsAggregator;
 import com.qaprosoft.zafira.tests.services.TestRunMockCacheableService;
 
 @SuppressWarnings({"rawtypes", "unused"})
@@ -26,7 +27,7 @@ public class TestRunStatisticsCacheTest extends AbstractServiceTest<TestRunStati
 {
 
 	@Autowired
-	private TestRunService testRunService;
+	private TestRunStatisticsAggregator testRunStatisticsAggregator;
 
 	@Autowired
 	private TestRunMockCacheableService cacheableService;
@@ -70,16 +71,13 @@ public class TestRunStatisticsCacheTest extends AbstractServiceTest<TestRunStati
 		return new Object[][]
 				{
 						{
-								(Function<Object[], TestRunStatistics>) functionParams -> testRunService.updateStatistics((Long) functionParams[0], (Status) functionParams[1], (Boolean) functionParams[2]), new Class[] { Long.class, Status.class, Boolean.class }
+								(Function<Object[], TestRunStatistics>) functionParams -> recordStatus((Long) functionParams[0], (Status) functionParams[1]), new Class[] { Long.class, Status.class }
 						},
 						{
-								(Function<Object[], TestRunStatistics>) functionParams -> testRunService.updateStatistics((Long) functionParams[0], (Status) functionParams[1]), new Class[] { Long.class, Status.class }
+								(Function<Object[], TestRunStatistics>) functionParams -> recordStatusChange((Long) functionParams[0], (Status) functionParams[1], (Status) functionParams[2]), new Class[] { Long.class, Status.class, Status.class }
 						},
 						{
-								(Function<Object[], TestRunStatistics>) functionParams -> testRunService.updateStatistics((Long) functionParams[0], (Status) functionParams[1], (Status) functionParams[2]), new Class[] { Long.class, Status.class, Status.class }
-						},
-						{
-								(Function<Object[], TestRunStatistics>) functionParams -> testRunService.updateStatistics((Long) functionParams[0], (TestRunStatistics.Action) functionParams[1]), new Class[] { Long.class, TestRunStatistics.Action.class }
+								(Function<Object[], TestRunStatistics>) functionParams -> recordReview((Long) functionParams[0], (Boolean) functionParams[1]), new Class[] { Long.class, Boolean.class }
 						}
 				};
 	}
@@ -145,8 +143,8 @@ public class TestRunStatisticsCacheTest extends AbstractServiceTest<TestRunStati
 
 	private void verifyCacheValues(TestRunStatistics trs)
 	{
-		TestRunStatistics testRunStatistics = getCachedValue(TenancyContext.getTenantName() + ":" + trs.getTestRunId());
-		Assert.assertNotNull(testRunStatistics, "Test run statistics cache does not exist");
+		Assert.assertNotNull(getCachedValue(TenancyContext.getTenantName() + ":" + trs.getTestRunId()), "Test run statistics cache does not exist");
+		TestRunStatistics testRunStatistics = testRunStatisticsAggregator.getTestRunStatistic(trs.getTestRunId());
 
 		Assert.assertEquals(testRunStatistics.getPassed(), trs.getPassed(), "Passed count is not actual");
 		Assert.assertEquals(testRunStatistics.getFailed(), trs.getFailed(), "Failed count is not actual");
@@ -158,6 +156,41 @@ public class TestRunStatisticsCacheTest extends AbstractServiceTest<TestRunStati
 		Assert.assertEquals(testRunStatistics.getQueued(), trs.getQueued(), "Queued count is not actual");
 	}
 
+	private TestRunStatistics recordStatus(Long testRunId, Status status)
+	{
+		testRunStatisticsAggregator.record(countTest(testRunId, status));
+		return testRunStatisticsAggregator.getTestRunStatistic(testRunId);
+	}
+
+	private TestRunStatistics recordStatusChange(Long testRunId, Status newStatus, Status currentStatus)
+	{
+		TestRunStatistics current = countTest(testRunId, currentStatus);
+		TestRunStatistics delta = countTest(testRunId, newStatus);
+		delta.setPassed(delta.getPassed() - current.getPassed());
+		delta.setFailed(delta.getFailed() - current.getFailed());
+		delta.setSkipped(delta.getSkipped() - current.getSkipped());
+		delta.setInProgress(delta.getInProgress() - current.getInProgress());
+		delta.setAborted(delta.getAborted() - current.getAborted());
+		delta.setQueued(delta.getQueued() - current.getQueued());
+		testRunStatisticsAggregator.record(delta);
+		return testRunStatisticsAggregator.getTestRunStatistic(testRunId);
+	}
+
+	private TestRunStatistics recordReview(Long testRunId, Boolean reviewed)
+	{
+		testRunStatisticsAggregator.markAsReviewed(testRunId, reviewed);
+		return testRunStatisticsAggregator.getTestRunStatistic(testRunId);
+	}
+
+	private TestRunStatistics countTest(Long testRunId, Status status)
+	{
+		com.qaprosoft.zafira.models.db.Test test = new com.qaprosoft.zafira.models.db.Test();
+		test.setStatus(status);
+		TestRunStatistics counters = TestRunService.countTest(test);
+		counters.setTestRunId(testRunId);
+		return counters;
+	}
+
 	/**
 	 * Method generates random parameters
 	 * @param count - count of suppliers - threads
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.tests.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.qaprosoft.zafira.services.util.MessageFingerprint;
+
+/**
+ * Compares regex based test message hash code (previous implementation) with {@link MessageFingerprint} on failure
+ * messages with stack traces of different depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageFingerprintBenchmark
+{
+	private static final Pattern NUMBERS = Pattern.compile("\\d+");
+
+	private static final Pattern BRACKETS = Pattern.compile("\\[.*\\]");
+
+	@Param({ "10", "1000", "50000" })
+	private int frames;
+
+	private String message;
+
+	@Setup
+	public void setup()
+	{
+		StringBuilder sb = new StringBuilder("org.openqa.selenium.NoSuchElementException: Unable to locate element: {\"method\":\"id\",\"selector\":\"login-42\"}\n")
+				.append("Build info: version: '3.14.0', revision: 'aacccce0', time: '2018-08-02T20:19:58.91Z'\n")
+				.append("Driver info: [[RemoteWebDriver: chrome on LINUX (8f2a3b1c)] -> id: login-42] session: 0x7f3a9c2e\n");
+		for (int i = 0; i < frames; i++)
+		{
+			sb.append("\tat com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebElement.click(ExtendedWebElement.java:")
+					.append(100 + i).append(")\n");
+		}
+		message = sb.toString();
+	}
+
+	@Benchmark
+	public int regexHashCode()
+	{
+		return message.replaceAll("\\d+", "*").replaceAll("\\[.*\\]", "*").hashCode();
+	}
+
+	@Benchmark
+	public int compiledRegexHashCode()
+	{
+		return BRACKETS.matcher(NUMBERS.matcher(message).replaceAll("*")).replaceAll("*").hashCode();
+	}
+
+	@Benchmark
+	public long fingerprint()
+	{
+		return MessageFingerprint.of(message);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(MessageFingerprintBenchmark.class.getSimpleName()).build()).run();
+	}
+}
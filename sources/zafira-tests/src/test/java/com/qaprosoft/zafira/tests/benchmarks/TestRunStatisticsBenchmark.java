@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.tests.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+import com.qaprosoft.zafira.services.services.application.cache.TestRunStatisticsAggregator;
+
+/**
+ * Compares test event statistics update via per run lock with cache round-trips (previous implementation)
+ * against {@link TestRunStatisticsAggregator}. Cache stores values by serialization to emulate Redis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(200)
+@Fork(1)
+public class TestRunStatisticsBenchmark
+{
+	@Param({ "1", "20" })
+	private int testRuns;
+
+	private LoadingCache<Long, Lock> updateLocks;
+
+	private Cache cache;
+
+	private TestRunStatisticsAggregator aggregator;
+
+	@Setup
+	public void setup()
+	{
+		updateLocks = CacheBuilder.newBuilder()
+				.maximumSize(100000)
+				.expireAfterWrite(150, TimeUnit.MILLISECONDS)
+				.build(new CacheLoader<Long, Lock>()
+				{
+					public Lock load(Long key)
+					{
+						return new ReentrantLock();
+					}
+				});
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("testRunStatistics");
+		cacheManager.setStoreByValue(true);
+		cache = cacheManager.getCache("testRunStatistics");
+		for (long testRunId = 0; testRunId < testRuns; testRunId++)
+		{
+			TestRunStatistics statistics = new TestRunStatistics();
+			statistics.setTestRunId(testRunId);
+			cache.put(testRunId, statistics);
+		}
+		aggregator = new TestRunStatisticsAggregator();
+	}
+
+	/**
+	 * Finished test event: in progress counter decrement and passed counter increment, one lock and cache round-trip each
+	 */
+	@Benchmark
+	public TestRunStatistics lockAndCacheRoundTrip() throws Exception
+	{
+		long testRunId = ThreadLocalRandom.current().nextInt(testRuns);
+		updateSafe(testRunId, statistics -> statistics.setInProgress(statistics.getInProgress() - 1));
+		return updateSafe(testRunId, statistics -> statistics.setPassed(statistics.getPassed() + 1));
+	}
+
+	/**
+	 * Finished test event as single delta
+	 */
+	@Benchmark
+	public void aggregatorRecord()
+	{
+		TestRunStatistics delta = new TestRunStatistics();
+		delta.setTestRunId(ThreadLocalRandom.current().nextInt(testRuns));
+		delta.setInProgress(-1);
+		delta.setPassed(1);
+		aggregator.record(delta);
+	}
+
+	private TestRunStatistics updateSafe(long testRunId, Consumer<TestRunStatistics> update) throws Exception
+	{
+		Lock lock = updateLocks.get(testRunId);
+		lock.lock();
+		try
+		{
+			TestRunStatistics statistics = cache.get(testRunId, TestRunStatistics.class);
+			update.accept(statistics);
+			cache.put(testRunId, statistics);
+			return statistics;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(TestRunStatisticsBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -472,8 +472,11 @@
             $scope.testsWebsocket.connect({withCredentials: false}, function () {
                 if($scope.testsWebsocket.connected) {
                     $scope.testsWebsocket.subscribe("/topic/" + TENANT + ".testRuns." + testRun.id + ".tests", function (data) {
-                        var test = $scope.getEventFromMessage(data.body).test;
-                        if(test.id == $scope.test.id) {
+                        var event = $scope.getEventFromMessage(data.body);
+                        var test = event.type == 'TESTS' ? event.tests.filter(function (t) {
+                            return t.id == $scope.test.id;
+                        })[0] : event.test;
+                        if(test && test.id == $scope.test.id) {
 
                             if(test.status == 'IN_PROGRESS') {
                                 addDrivers(getArtifactsByPartName(test, LIVE_DEMO_ARTIFACT_NAME));
@@ -3,13 +3,13 @@
 
     angular
         .module('app.testrun')
-        .controller('TestRunListController', ['$scope', '$rootScope', '$mdToast', '$mdMenu', '$location', '$window', '$cookieStore', '$mdDialog', '$mdConstant', '$interval', '$timeout', '$stateParams', '$mdDateRangePicker', '$q', 'FilterService', 'ProjectService', 'TestService', 'TestRunService', 'UtilService', 'UserService', 'SettingsService', 'ProjectProvider', 'ConfigService', 'SlackService', 'DownloadService', 'API_URL', 'DEFAULT_SC', 'OFFSET', 'TestRunsStorage', '$tableExpandUtil', '$transitions', TestRunListController])
+        .controller('TestRunListController', ['$scope', '$rootScope', '$mdToast', '$mdMenu', '$location', '$window', '$cookieStore', '$mdDialog', '$mdConstant', '$interval', '$timeout', '$stateParams', '$mdDateRangePicker', '$q', 'FilterService', 'ProjectService', 'TestService', 'TestRunService', 'UtilService', 'UserService', 'SettingsService', 'ProjectProvider', 'ConfigService', 'SlackService', 'DownloadService', 'API_URL', 'DEFAULT_SC', 'OFFSET', 'WEBSOCKET_UPDATE_INTERVAL', 'TestRunsStorage', '$tableExpandUtil', '$transitions', TestRunListController])
         .config(function ($compileProvider) {
             $compileProvider.preAssignBindingsEnabled(true);
         });
 
     // **************************************************************************
-    function TestRunListController($scope, $rootScope, $mdToast, $mdMenu, $location, $window, $cookieStore, $mdDialog, $mdConstant, $interval, $timeout, $stateParams, $mdDateRangePicker, $q, FilterService, ProjectService, TestService, TestRunService, UtilService, UserService, SettingsService, ProjectProvider, ConfigService, SlackService, DownloadService, API_URL, DEFAULT_SC, OFFSET, TestRunsStorage, $tableExpandUtil, $transitions) {
+    function TestRunListController($scope, $rootScope, $mdToast, $mdMenu, $location, $window, $cookieStore, $mdDialog, $mdConstant, $interval, $timeout, $stateParams, $mdDateRangePicker, $q, FilterService, ProjectService, TestService, TestRunService, UtilService, UserService, SettingsService, ProjectProvider, ConfigService, SlackService, DownloadService, API_URL, DEFAULT_SC, OFFSET, WEBSOCKET_UPDATE_INTERVAL, TestRunsStorage, $tableExpandUtil, $transitions) {
 
         var VALUES_TO_STORE = ["predicate", "reverse", "fastSearch", "testRunId", "testRuns", "totalResults", "selectedTestRuns", "searchFormIsEmpty", "showRealTimeEvents", "projects", "showReset", "selectAll", "sc", "currentCriteria", "currentOperator", "currentValue", "subjectBuilder", "filters", "filter", "selectedFilterRange", "rabbitmq", "jira", "jenkins", "currentMode", "testRunInDebugMode", "debugHost", "debugPort", "selectedRange", "slackChannels", "isSlackAvailable", "filterBlockExpand", "collapseFilter", "testGroupDataToStore", "testGroups", "testGroupMode", "tr", "testsTagsOptions", "testsStatusesOptions"];
 
@@ -396,7 +396,7 @@
                     currentTestRun.aborted = event.testRunStatistics.aborted;
                     currentTestRun.queued = event.testRunStatistics.queued;
                 }
-                $scope.$apply();
+                $scope.applyWebsocketUpdates();
             });
         };
 
@@ -410,7 +410,7 @@
                     return;
                 }
                 $scope.addTestRun(event.testRun);
-                $scope.$apply();
+                $scope.applyWebsocketUpdates();
             });
         };
 
@@ -418,13 +418,28 @@
             if($scope.zafiraWebsocket.connected) {
                 return $scope.zafiraWebsocket.subscribe("/topic/" + TENANT + ".testRuns." + testRunId + ".tests", function (data) {
                     var event = $scope.getEventFromMessage(data.body);
-                    $scope.addTest(event.test);
-                    $scope.$apply();
+                    var tests = event.type == 'TESTS' ? event.tests : [event.test];
+                    tests.forEach(function (test) {
+                        $scope.addTest(test);
+                    });
+                    $scope.applyWebsocketUpdates();
                 });
             }
         };
 
+        var websocketUpdatesTimeout;
+
+        // Websocket events are applied to model immediately, page is refreshed at most once per WEBSOCKET_UPDATE_INTERVAL
+        $scope.applyWebsocketUpdates = function () {
+            if(! websocketUpdatesTimeout) {
+                websocketUpdatesTimeout = $timeout(function () {
+                    websocketUpdatesTimeout = null;
+                }, WEBSOCKET_UPDATE_INTERVAL);
+            }
+        };
+
         $scope.$on('$destroy', function () {
+            $timeout.cancel(websocketUpdatesTimeout);
             if($scope.zafiraWebsocket && $scope.zafiraWebsocket.connected) {
                 $scope.zafiraWebsocket.disconnect();
                 UtilService.websocketConnected('zafira');
@@ -807,7 +822,7 @@
 
                         for (var i = 0; i < data.results.length; i++) {
                             var testRun = data.results[i];
-                            var browserVersion = splitPlatform(data.results[i].platform);
+                            var browserVersion = testRun.browserVersion ? 'v.' + testRun.browserVersion : splitPlatform(data.results[i].platform);
                             if(!browserVersion && data.results[i].config && data.results[i].config.browserVersion !== '*') {
                                 browserVersion = data.results[i].config.browserVersion
                             }
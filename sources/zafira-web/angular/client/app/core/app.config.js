@@ -6,7 +6,9 @@
         .config(['$mdThemingProvider', mdConfig])
         .constant('API_URL', 'http://localhost:8080/zafira-ws')
         .constant('OFFSET', new Date().getTimezoneOffset() * 60 * 1000)
-        .constant('DEFAULT_SC', { 'page': 1, 'pageSize': 20, 'reviewed': null });
+        .constant('DEFAULT_SC', { 'page': 1, 'pageSize': 20, 'reviewed': null })
+        // Min interval in ms between page updates caused by websocket events
+        .constant('WEBSOCKET_UPDATE_INTERVAL', 1000);
 
     function appConfig() {
         var pageTransitionOpts = [
@@ -147,6 +147,16 @@ public abstract class AbstractController
 		return result;
 	}
 	
+	@ExceptionHandler(InvalidSearchCriteriaException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ResponseBody
+	public ErrorResponse handleInvalidSearchCriteriaException(InvalidSearchCriteriaException e)
+	{
+		ErrorResponse result = new ErrorResponse();
+		result.setError(new Error(ErrorCode.INVALID_VALUE, null, e.getMessage()));
+		return result;
+	}
+	
 	@ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ResponseBody
@@ -16,8 +16,12 @@
 package com.qaprosoft.zafira.ws.controller.application;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import com.qaprosoft.zafira.ws.controller.AbstractController;
@@ -28,13 +32,16 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qaprosoft.zafira.models.db.Attribute;
 import com.qaprosoft.zafira.models.db.Dashboard;
 import com.qaprosoft.zafira.models.db.Permission;
 import com.qaprosoft.zafira.models.db.Widget;
+import com.qaprosoft.zafira.services.exceptions.EntityNotExistsException;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import com.qaprosoft.zafira.services.services.application.DashboardService;
 import com.qaprosoft.zafira.ws.swagger.annotations.ResponseStatusDetails;
+import com.qaprosoft.zafira.ws.util.DashboardRenderer;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -48,9 +55,14 @@ import io.swagger.annotations.ApiOperation;
 public class DashboardsAPIController extends AbstractController
 {
 
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
 	@Autowired
 	private DashboardService dashboardService;
 
+	@Autowired
+	private DashboardRenderer dashboardRenderer;
+
     @ResponseStatusDetails
     @ApiOperation(value = "Create dashboard", nickname = "createDashboard", httpMethod = "POST", response = Dashboard.class)
 	@ResponseStatus(HttpStatus.OK) @ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
@@ -98,6 +110,38 @@ public class DashboardsAPIController extends AbstractController
 		return dashboardService.getDashboardByTitle(title);
 	}
 
+	@ResponseStatusDetails
+	@ApiOperation(value = "Render dashboard", nickname = "renderDashboard", httpMethod = "POST")
+	@ResponseStatus(HttpStatus.OK) @ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
+	@RequestMapping(value="{id}/render", method = RequestMethod.POST)
+	public void renderDashboard(@PathVariable(value="id") long id, @RequestBody(required = false) List<Attribute> attributes,
+			@RequestParam(value = "projects", defaultValue = "", required = false) List<String> projects,
+			@RequestParam(value = "currentUserId", required = false) String currentUserId,
+			HttpServletResponse response) throws ServiceException, IOException
+	{
+		Dashboard dashboard = dashboardService.getDashboardById(id);
+		if(dashboard == null)
+		{
+			throw new EntityNotExistsException(Dashboard.class, false);
+		}
+		response.setContentType("application/x-ndjson");
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		Writer writer = response.getWriter();
+		dashboardRenderer.render(dashboard, attributes != null ? attributes : dashboard.getAttributes(), projects, currentUserId,
+				getPrincipalId(), getPrincipalName(), result -> {
+					try
+					{
+						writer.write(OBJECT_MAPPER.writeValueAsString(result));
+						writer.write('\n');
+						writer.flush();
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				});
+	}
+
     @ResponseStatusDetails
     @ApiOperation(value = "Delete dashboard", nickname = "deleteDashboard", httpMethod = "DELETE")
 	@ResponseStatus(HttpStatus.OK) @ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
@@ -21,20 +21,22 @@ import static com.qaprosoft.zafira.services.services.application.FilterService.T
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.xml.bind.JAXBException;
 
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.JobSearchCriteria;
 import com.qaprosoft.zafira.services.exceptions.*;
 import com.qaprosoft.zafira.services.services.application.*;
-import com.qaprosoft.zafira.services.services.application.cache.StatisticsService;
 import com.qaprosoft.zafira.services.services.application.jmx.google.models.TestRunSpreadsheetService;
 import com.qaprosoft.zafira.ws.controller.AbstractController;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.dozer.Mapper;
@@ -44,7 +46,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -62,19 +63,21 @@ import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestRunSearchC
 import com.qaprosoft.zafira.models.db.Status;
 import com.qaprosoft.zafira.models.db.Test;
 import com.qaprosoft.zafira.models.db.TestRun;
+import com.qaprosoft.zafira.models.db.WorkItem;
 import com.qaprosoft.zafira.models.dto.BuildParameterType;
 import com.qaprosoft.zafira.models.dto.CommentType;
 import com.qaprosoft.zafira.models.dto.EmailType;
 import com.qaprosoft.zafira.models.dto.QueueTestRunParamsType;
+import com.qaprosoft.zafira.models.dto.TestRunCompareMatrix;
 import com.qaprosoft.zafira.models.dto.TestRunType;
 import com.qaprosoft.zafira.models.dto.TestType;
 import com.qaprosoft.zafira.models.dto.filter.FilterType;
-import com.qaprosoft.zafira.models.push.TestPush;
-import com.qaprosoft.zafira.models.push.TestRunPush;
-import com.qaprosoft.zafira.models.push.TestRunStatisticPush;
 import com.qaprosoft.zafira.services.services.application.jmx.JenkinsService;
 import com.qaprosoft.zafira.services.services.application.jmx.SlackService;
 import com.qaprosoft.zafira.ws.swagger.annotations.ResponseStatusDetails;
+import com.qaprosoft.zafira.ws.util.TestResultsWriter;
+import com.qaprosoft.zafira.ws.util.ValidList;
+import com.qaprosoft.zafira.ws.util.WebsocketPushDispatcher;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -120,10 +123,10 @@ public class TestRunsAPIController extends AbstractController {
 	private SlackService slackService;
 
 	@Autowired
-	private SimpMessagingTemplate websocketTemplate;
+	private WebsocketPushDispatcher websocketPushDispatcher;
 
 	@Autowired
-	private StatisticsService statisticsService;
+	private TestResultsWriter testResultsWriter;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TestRunsAPIController.class);
 
@@ -138,10 +141,8 @@ public class TestRunsAPIController extends AbstractController {
 		TestRun testRun = mapper.map(tr, TestRun.class);
 		testRun.setProject(projectService.getProjectByName(project));
 		testRun = testRunService.startTestRun(testRun);
-		TestRun testRunFull = testRunService.getTestRunByIdFull(testRun.getId());
-		websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRunFull));
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-				new TestRunStatisticPush(statisticsService.getTestRunStatistic(testRun.getId())));
+		websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), testRun.getId());
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), testRun.getId());
 		return mapper.map(testRun, TestRunType.class);
 	}
 
@@ -159,10 +160,8 @@ public class TestRunsAPIController extends AbstractController {
 		testRun.setConfigXML(tr.getConfigXML());
 		testRunService.initTestRunWithXml(testRun);
 		testRunService.updateTestRun(testRun);
-		TestRun testRunFull = testRunService.getTestRunByIdFull(testRun.getId());
-		websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRunFull));
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-				new TestRunStatisticPush(statisticsService.getTestRunStatistic(testRun.getId())));
+		websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), testRun.getId());
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), testRun.getId());
 		return mapper.map(testRun, TestRunType.class);
 	}
 
@@ -176,9 +175,8 @@ public class TestRunsAPIController extends AbstractController {
 			throws ServiceException, InterruptedException, IOException {
 		TestRun testRun = testRunService.calculateTestRunResult(id, true);
 		TestRun testRunFull = testRunService.getTestRunByIdFull(testRun.getId());
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-				new TestRunStatisticPush(statisticsService.getTestRunStatistic(id)));
-		websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRunFull));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), id);
+		websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), id);
 		slackService.sendAutoStatus(testRunFull);
 		return mapper.map(testRun, TestRunType.class);
 	}
@@ -200,15 +198,8 @@ public class TestRunsAPIController extends AbstractController {
 
 		if (Status.IN_PROGRESS.equals(testRun.getStatus()) || Status.QUEUED.equals(testRun.getStatus())) {
 			testRunService.abortTestRun(testRun, URLDecoder.decode(abortCause.getComment(), "UTF-8"));
-			for (Test test : testService.getTestsByTestRunId(testRun.getId())) {
-				if (Status.ABORTED.equals(test.getStatus())) {
-					websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestPush(test));
-				}
-			}
-			websocketTemplate.convertAndSend(getTestRunsWebsocketPath(),
-					new TestRunPush(testRunService.getTestRunByIdFull(testRun.getId())));
-			websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-					new TestRunStatisticPush(statisticsService.getTestRunStatistic(testRun.getId())));
+			websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), testRun.getId());
+			websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), testRun.getId());
 		}
 		return mapper.map(testRun, TestRunType.class);
 	}
@@ -319,26 +310,73 @@ public class TestRunsAPIController extends AbstractController {
 	@ResponseStatus(HttpStatus.OK)
 	@ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
 	@RequestMapping(value = "{id}/results", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-	public @ResponseBody List<TestType> getTestRunResults(@PathVariable(value = "id") long id) throws ServiceException {
-		List<TestType> tests = new ArrayList<>();
-		for (Test test : testService.getTestsByTestRunId(id)) {
-			tests.add(mapper.map(test, TestType.class));
+	public void getTestRunResults(@PathVariable(value = "id") long id, HttpServletResponse response) throws IOException {
+		exportTestRunResults(id, TestResultsWriter.Format.JSON, response);
+	}
+
+	@ResponseStatusDetails
+	@ApiOperation(value = "Export test run results by id", nickname = "exportTestRunResults", httpMethod = "GET")
+	@ResponseStatus(HttpStatus.OK)
+	@ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
+	@RequestMapping(value = "{id}/results/export", method = RequestMethod.GET)
+	public void exportTestRunResults(@PathVariable(value = "id") long id,
+			@ApiParam(value = "Export format: JSON, NDJSON or CSV") @RequestParam(value = "format", defaultValue = "JSON") TestResultsWriter.Format format,
+			HttpServletResponse response) throws IOException {
+		response.setContentType(format.getContentType());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		if (format == TestResultsWriter.Format.CSV) {
+			response.setHeader("Content-Disposition", String.format("attachment; filename=\"test-run-%d.csv\"", id));
 		}
-		return tests;
+		testResultsWriter.write(testService.iterateTestsByTestRunId(id, TestRunService.EXPORT_PAGE_SIZE), format, response.getOutputStream());
 	}
 
 	@ResponseStatusDetails
+	@ApiOperation(value = "Save test run results batch", nickname = "saveTestRunResults", httpMethod = "POST", response = java.util.List.class)
 	@ResponseStatus(HttpStatus.OK)
 	@ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
-	@ApiOperation(value = "Create compare matrix", nickname = "createCompareMatrix", httpMethod = "GET", response = Map.class)
+	@RequestMapping(value = "{id}/results:batch", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody List<TestType> saveTestRunResults(@PathVariable(value = "id") long id, @RequestBody @Valid ValidList<TestType> results)
+			throws ServiceException {
+		List<Test> tests = new ArrayList<>(results.size());
+		for (TestType result : results) {
+			Test test = mapper.map(result, Test.class);
+			if (result.getWorkItems() != null) {
+				test.setWorkItems(result.getWorkItems().stream().map(WorkItem::new).collect(Collectors.toList()));
+			}
+			tests.add(test);
+		}
+		// Chunks are committed one by one, retried request skips results of already committed chunks
+		List<Test> savedTests = new ArrayList<>(tests.size());
+		for (List<Test> chunk : Lists.partition(tests, TestService.RESULTS_CHUNK_SIZE)) {
+			savedTests.addAll(testService.saveTestResults(id, chunk));
+		}
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), id);
+		websocketPushDispatcher.pushTests(getTestsWebsocketPath(id), id, savedTests);
+		List<TestType> testTypes = new ArrayList<>(savedTests.size());
+		for (Test test : savedTests) {
+			testTypes.add(mapper.map(test, TestType.class));
+		}
+		return testTypes;
+	}
+
+	@ResponseStatusDetails
+	@ResponseStatus(HttpStatus.OK)
+	@ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
+	@ApiOperation(value = "Create compare matrix", nickname = "createCompareMatrix", httpMethod = "GET", response = TestRunCompareMatrix.class)
 	@RequestMapping(value = "{ids}/compare", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-	public @ResponseBody Map<Long, Map<String, Test>> createCompareMatrix(
-			@PathVariable(value = "ids") String testRunIds) throws ServiceException {
+	public @ResponseBody TestRunCompareMatrix createCompareMatrix(
+			@PathVariable(value = "ids") String testRunIds,
+			@ApiParam(value = "Return only tests that differ") @RequestParam(value = "differencesOnly", defaultValue = "false") boolean differencesOnly,
+			@RequestParam(value = "page", defaultValue = "1") int page,
+			@RequestParam(value = "pageSize", defaultValue = "1000") int pageSize) throws ServiceException {
+		if (page < 1 || pageSize < 1) {
+			throw new InvalidSearchCriteriaException("Page and page size should be positive: page " + page + ", page size " + pageSize);
+		}
 		List<Long> ids = new ArrayList<>();
 		for (String id : testRunIds.split("\\+")) {
 			ids.add(Long.valueOf(id));
 		}
-		return testRunService.createCompareMatrix(ids);
+		return testRunService.createCompareMatrix(ids, differencesOnly, page, pageSize);
 	}
 
 	@ResponseStatusDetails
@@ -407,9 +445,11 @@ public class TestRunsAPIController extends AbstractController {
 	@ApiImplicitParams({ @ApiImplicitParam(name = "Authorization", paramType = "header") })
 	@ApiOperation(value = "Get test run result html text", nickname = "exportTestRunHTML", httpMethod = "GET", response = String.class)
 	@RequestMapping(value = "{id}/export", method = RequestMethod.GET, produces = MediaType.TEXT_HTML_VALUE)
-	public @ResponseBody String exportTestRunHTML(@PathVariable(value = "id") String id)
-			throws ServiceException, JAXBException {
-		return testRunService.exportTestRunHTML(id);
+	public void exportTestRunHTML(@PathVariable(value = "id") String id, HttpServletResponse response)
+			throws ServiceException, JAXBException, IOException {
+		response.setContentType(MediaType.TEXT_HTML_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		testRunService.exportTestRunHTML(id, response.getWriter());
 	}
 
 	@ResponseStatusDetails
@@ -421,8 +461,7 @@ public class TestRunsAPIController extends AbstractController {
 	public void markTestRunAsReviewed(@PathVariable(value = "id") long id, @RequestBody @Valid CommentType comment)
 			throws ServiceException {
 		TestRun tr = testRunService.markAsReviewed(id, comment.getComment());
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-				new TestRunStatisticPush(statisticsService.getTestRunStatistic(tr.getId())));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), tr.getId());
 	}
 
 	@ResponseStatusDetails
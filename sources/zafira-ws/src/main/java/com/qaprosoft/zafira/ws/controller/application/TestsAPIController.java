@@ -21,13 +21,11 @@ import java.util.List;
 import javax.validation.Valid;
 
 import com.qaprosoft.zafira.models.db.*;
-import com.qaprosoft.zafira.services.services.application.cache.StatisticsService;
 import com.qaprosoft.zafira.ws.controller.AbstractController;
 import org.dozer.Mapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -42,19 +40,15 @@ import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.SearchResult;
 import com.qaprosoft.zafira.dbaccess.dao.mysql.application.search.TestSearchCriteria;
 import com.qaprosoft.zafira.models.db.WorkItem.Type;
 import com.qaprosoft.zafira.models.dto.TestArtifactType;
-import com.qaprosoft.zafira.models.dto.TestRunStatistics;
 import com.qaprosoft.zafira.models.dto.TestType;
-import com.qaprosoft.zafira.models.push.TestPush;
-import com.qaprosoft.zafira.models.push.TestRunPush;
-import com.qaprosoft.zafira.models.push.TestRunStatisticPush;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
 import com.qaprosoft.zafira.services.services.application.TestArtifactService;
 import com.qaprosoft.zafira.services.services.application.TestMetricService;
-import com.qaprosoft.zafira.services.services.application.TestRunService;
 import com.qaprosoft.zafira.services.services.application.TestService;
 import com.qaprosoft.zafira.services.services.application.WorkItemService;
 import com.qaprosoft.zafira.services.services.application.jmx.JiraService;
 import com.qaprosoft.zafira.ws.swagger.annotations.ResponseStatusDetails;
+import com.qaprosoft.zafira.ws.util.WebsocketPushDispatcher;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -81,9 +75,6 @@ public class TestsAPIController extends AbstractController
 	@Autowired
 	private TestMetricService testMetricService;
 
-	@Autowired
-	private TestRunService testRunService;
-
 	@Autowired
 	private WorkItemService workItemService;
 
@@ -91,10 +82,7 @@ public class TestsAPIController extends AbstractController
 	private JiraService jiraService;
 
 	@Autowired
-	private SimpMessagingTemplate websocketTemplate;
-
-	@Autowired
-	private StatisticsService statisticsService;
+	private WebsocketPushDispatcher websocketPushDispatcher;
 
 	@ResponseStatusDetails
 	@ApiOperation(value = "Start test", nickname = "startTest", httpMethod = "POST", response = TestType.class)
@@ -106,8 +94,8 @@ public class TestsAPIController extends AbstractController
 			@RequestHeader(value = "Project", required = false) String project) throws ServiceException
 	{
 		Test test = testService.startTest(mapper.map(t, Test.class), t.getWorkItems(), t.getConfigXML());
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(), new TestRunStatisticPush(statisticsService.getTestRunStatistic(test.getTestRunId())));
-		websocketTemplate.convertAndSend(getTestsWebsocketPath(test.getTestRunId()), new TestPush(test));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), test.getTestRunId());
+		websocketPushDispatcher.pushTest(getTestsWebsocketPath(test.getTestRunId()), test);
 		return mapper.map(test, TestType.class);
 	}
 
@@ -125,8 +113,8 @@ public class TestsAPIController extends AbstractController
 		Test test = testService.finishTest(mapper.map(t, Test.class), t.getConfigXML());
 		testService.deleteQueuedTest(test);
 		testMetricService.createTestMetrics(t.getId(), t.getTestMetrics());
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(), new TestRunStatisticPush(statisticsService.getTestRunStatistic(test.getTestRunId())));
-		websocketTemplate.convertAndSend(getTestsWebsocketPath(test.getTestRunId()), new TestPush(test));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), test.getTestRunId());
+		websocketPushDispatcher.pushTest(getTestsWebsocketPath(test.getTestRunId()), test);
 		return mapper.map(test, TestType.class);
 	}
 
@@ -141,10 +129,9 @@ public class TestsAPIController extends AbstractController
 	{
 		Test updatedTest = testService.changeTestStatus(test.getId(), test.getStatus());
 
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(), new TestRunStatisticPush(statisticsService.getTestRunStatistic(updatedTest.getTestRunId())));
-		websocketTemplate.convertAndSend(getTestsWebsocketPath(updatedTest.getTestRunId()), new TestPush(updatedTest));
-		TestRun testRun = testRunService.getTestRunById(updatedTest.getTestRunId());
-		websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRun));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), updatedTest.getTestRunId());
+		websocketPushDispatcher.pushTest(getTestsWebsocketPath(updatedTest.getTestRunId()), updatedTest);
+		websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), updatedTest.getTestRunId());
 		return updatedTest;
 	}
 
@@ -222,11 +209,9 @@ public class TestsAPIController extends AbstractController
 		}
 		Test test = testService.getTestById(id);
 
-		websocketTemplate.convertAndSend(getStatisticsWebsocketPath(), new TestRunStatisticPush(statisticsService.getTestRunStatistic(test.getTestRunId())));
-		websocketTemplate.convertAndSend(getTestsWebsocketPath(test.getTestRunId()), new TestPush(test));
-		
-		TestRun testRun = testRunService.getTestRunById(test.getTestRunId());
-		websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRun));
+		websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), test.getTestRunId());
+		websocketPushDispatcher.pushTest(getTestsWebsocketPath(test.getTestRunId()), test);
+		websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), test.getTestRunId());
 
 		return workItem;
 	}
@@ -243,6 +228,7 @@ public class TestsAPIController extends AbstractController
 	{
 		Test test = testService.getTestById(id);
 		workItem.setHashCode(testService.getTestMessageHashCode(test.getMessage()));
+		workItem.setFingerprint(testService.getTestMessageFingerprint(test.getMessage()));
 		return workItemService.updateWorkItem(workItem);
 	}
 
@@ -257,17 +243,12 @@ public class TestsAPIController extends AbstractController
 	{
 		Test test = testService.getTestById(testId);
 		WorkItem workItem = workItemService.getWorkItemById(workItemId);
+		testService.deleteTestWorkItemByWorkItemIdAndTest(workItemId, test);
 		if (workItem.getType() == Type.BUG) {
-			testRunService.updateStatistics(test.getTestRunId(), TestRunStatistics.Action.REMOVE_KNOWN_ISSUE);
-			if (test.isBlocker())
-				testRunService.updateStatistics(test.getTestRunId(), TestRunStatistics.Action.REMOVE_BLOCKER);
-			websocketTemplate.convertAndSend(getStatisticsWebsocketPath(),
-					new TestRunStatisticPush(statisticsService.getTestRunStatistic(test.getTestRunId())));
-			websocketTemplate.convertAndSend(getTestsWebsocketPath(test.getTestRunId()), new TestPush(test));
-			TestRun testRun = testRunService.getTestRunById(test.getTestRunId());
-			websocketTemplate.convertAndSend(getTestRunsWebsocketPath(), new TestRunPush(testRun));
+			websocketPushDispatcher.pushStatistics(getStatisticsWebsocketPath(), test.getTestRunId());
+			websocketPushDispatcher.pushTest(getTestsWebsocketPath(test.getTestRunId()), test);
+			websocketPushDispatcher.pushTestRun(getTestRunsWebsocketPath(), test.getTestRunId());
 		}
-		testService.deleteTestWorkItemByWorkItemIdAndTest(workItemId, test);
 	}
 
 	@ApiIgnore
@@ -303,6 +284,6 @@ public class TestsAPIController extends AbstractController
 		testArtifactService.createOrUpdateTestArtifact(mapper.map(artifact, TestArtifact.class));
 		// Updating web client with latest artifacts
 		Test test = testService.getTestById(id);
-		websocketTemplate.convertAndSend(getTestsWebsocketPath(test.getTestRunId()), new TestPush(test));
+		websocketPushDispatcher.pushTest(getTestsWebsocketPath(test.getTestRunId()), test);
 	}
 }
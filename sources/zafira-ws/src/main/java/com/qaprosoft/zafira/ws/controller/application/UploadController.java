@@ -88,6 +88,14 @@ public class UploadController extends AbstractController
 		File attachment = File.createTempFile(FilenameUtils.getName(file.getOriginalFilename()), "." + FilenameUtils.getExtension(file.getOriginalFilename()));
 		file.transferTo(attachment);
 		attachments.add(new Attachment(email.getSubject(), attachment));
-		emailService.sendEmail(new CommonEmail(email.getSubject(), email.getText(), attachments), email.getRecipients().trim().replaceAll(",", " ").replaceAll(";", " ").split(" "));
+		try
+		{
+			emailService.sendEmail(new CommonEmail(email.getSubject(), email.getText(), attachments), email.getRecipients().trim().replaceAll(",", " ").replaceAll(";", " ").split(" "));
+		}
+		finally
+		{
+			// Attachment content is stored in email outbox
+			attachment.delete();
+		}
 	}
 }
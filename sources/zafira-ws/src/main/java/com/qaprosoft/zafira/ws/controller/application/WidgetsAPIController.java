@@ -23,14 +23,12 @@ import java.util.Map;
 import javax.validation.Valid;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
-import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -41,14 +39,13 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.qaprosoft.zafira.dbaccess.utils.SQLAdapter;
-import com.qaprosoft.zafira.models.db.Attribute;
 import com.qaprosoft.zafira.models.db.Widget;
 import com.qaprosoft.zafira.services.exceptions.ServiceException;
-import com.qaprosoft.zafira.services.services.application.SettingsService;
 import com.qaprosoft.zafira.services.services.application.WidgetService;
-import com.qaprosoft.zafira.services.util.URLResolver;
+import com.qaprosoft.zafira.services.services.application.cache.WidgetResultCache;
 import com.qaprosoft.zafira.ws.controller.AbstractController;
 import com.qaprosoft.zafira.ws.swagger.annotations.ResponseStatusDetails;
+import com.qaprosoft.zafira.ws.util.WidgetQueryRenderer;
 
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiImplicitParams;
@@ -63,13 +60,13 @@ public class WidgetsAPIController extends AbstractController
 	private static final Logger LOGGER = Logger.getLogger(WidgetsAPIController.class);
 
 	@Autowired
-	private URLResolver urlResolver;
+	private WidgetService widgetService;
 
 	@Autowired
-	private WidgetService widgetService;
+	private WidgetResultCache widgetResultCache;
 
 	@Autowired
-	private SettingsService settingsService;
+	private WidgetQueryRenderer widgetQueryRenderer;
 
 	@ResponseStatusDetails
 	@ApiOperation(value = "Create widget", nickname = "createWidget", httpMethod = "POST", response = Widget.class)
@@ -129,59 +126,32 @@ public class WidgetsAPIController extends AbstractController
 			@RequestParam(value = "projects", defaultValue = "", required = false) List<String> projects,
 			@RequestParam(value = "currentUserId", required = false) String currentUserId,
 			@RequestParam(value = "dashboardName", required = false) String dashboardName,
-            @RequestParam(value = "stackTraceRequired", required = false) boolean stackTraceRequired ) throws ServiceException
+            @RequestParam(value = "stackTraceRequired", required = false) boolean stackTraceRequired,
+			@RequestParam(value = "cacheTtl", required = false) Long cacheTtl) throws ServiceException
 	{
-		String query = sql.getSql();
 		List<Map<String, Object>> resultList;
-		try {
-		if (sql.getAttributes() != null)
+		try
 		{
-			for (Attribute attribute : sql.getAttributes())
-			{
-				query = query.replaceAll("#\\{" + attribute.getKey() + "\\}", attribute.getValue());
-			}
+			String query = widgetQueryRenderer.render(sql.getSql(), sql.getAttributes(), projects, currentUserId, dashboardName,
+					getPrincipalId(), getPrincipalName());
+			resultList = widgetResultCache.get(query, cacheTtl, () -> widgetService.executeSQL(query));
 		}
-
-			query = query
-				.replaceAll("#\\{project}", formatProjects(projects))
-				.replaceAll("#\\{dashboardName}", !StringUtils.isEmpty(dashboardName) ? dashboardName : "")
-				.replaceAll("#\\{currentUserId}", !StringUtils.isEmpty(currentUserId) ? currentUserId : String.valueOf(getPrincipalId()))
-				.replaceAll("#\\{currentUserName}", String.valueOf(getPrincipalName()))
-				.replaceAll("#\\{zafiraURL}", urlResolver.buildWebURL())
-				.replaceAll("#\\{jenkinsURL}", settingsService.getSettingByName("JENKINS_URL").getValue())
-				.replaceAll("#\\{hashcode}", "0")
-				.replaceAll("#\\{testCaseId}", "0");
-			
-            resultList = widgetService.executeSQL(query);
-        }
-        catch (Exception e) {
-            if (stackTraceRequired) {
-                resultList = new ArrayList<>();
-                Map<String, Object> exceptionMap = new HashMap<>();
-                exceptionMap.put("Check your query", ExceptionUtils.getFullStackTrace(e));
-                resultList.add(exceptionMap);
-                return resultList;
-            }
-            else {
-                throw e;
-            }
-        }
-        return resultList;
-    }
-	
-	private String formatProjects(List<String> projects)
-	{
-		String result = "%";
-		if(!CollectionUtils.isEmpty(projects))
+		catch (Exception e)
 		{
-			StringBuilder sb = new StringBuilder();
-			for(String project : projects)
+			if (stackTraceRequired)
+			{
+				resultList = new ArrayList<>();
+				Map<String, Object> exceptionMap = new HashMap<>();
+				exceptionMap.put("Check your query", ExceptionUtils.getFullStackTrace(e));
+				resultList.add(exceptionMap);
+				return resultList;
+			}
+			else
 			{
-				sb.append(project).append(",");
+				throw e;
 			}
-			result = StringUtils.removeEnd(sb.toString(), ",");
 		}
-		return result;
+		return resultList;
 	}
 
 	@ResponseStatusDetails
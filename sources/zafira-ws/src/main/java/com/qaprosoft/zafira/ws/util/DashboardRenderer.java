@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.ws.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.models.db.Attribute;
+import com.qaprosoft.zafira.models.db.Dashboard;
+import com.qaprosoft.zafira.models.db.Widget;
+import com.qaprosoft.zafira.models.dto.WidgetResultType;
+import com.qaprosoft.zafira.services.exceptions.ServiceException;
+import com.qaprosoft.zafira.services.services.application.WidgetService;
+import com.qaprosoft.zafira.services.services.application.cache.WidgetResultCache;
+
+/**
+ * Executes queries of all dashboard widgets concurrently. Every tenant has own bounded pool, so that heavy dashboards of
+ * one tenant do not delay others. Results are passed to consumer in order of completion, widgets which are not
+ * completed in time are reported as timed out.
+ */
+@Component
+public class DashboardRenderer
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(DashboardRenderer.class);
+
+	private static final long THREAD_KEEP_ALIVE = 60;
+
+	@Value("${zafira.dashboards.renderThreads}")
+	private int renderThreads;
+
+	@Value("${zafira.dashboards.renderQueueSize}")
+	private int renderQueueSize;
+
+	@Value("${zafira.dashboards.widgetTimeout}")
+	private long widgetTimeout;
+
+	@Autowired
+	private WidgetService widgetService;
+
+	@Autowired
+	private WidgetResultCache widgetResultCache;
+
+	@Autowired
+	private WidgetQueryRenderer widgetQueryRenderer;
+
+	private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+	@PreDestroy
+	public void destroy()
+	{
+		executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+	}
+
+	/**
+	 * Renders widget queries in caller thread and executes them in tenant pool.
+	 *
+	 * @param dashboard - dashboard with widgets
+	 * @param attributes - attributes used for query rendering
+	 * @param projects - selected projects
+	 * @param currentUserId - user id to render
+	 * @param principalId - current user id
+	 * @param principalName - current user name
+	 * @param consumer - receives widget results one by one in caller thread
+	 * @throws ServiceException - if widget queries can't be rendered
+	 */
+	public void render(Dashboard dashboard, List<Attribute> attributes, List<String> projects, String currentUserId, Long principalId,
+			String principalName, Consumer<WidgetResultType> consumer) throws ServiceException
+	{
+		String tenantName = TenancyContext.getTenantName();
+		CompletionService<WidgetResultType> completionService = new ExecutorCompletionService<>(getExecutor(tenantName));
+		Map<Future<WidgetResultType>, Widget> pending = new LinkedHashMap<>();
+		List<WidgetResultType> rejected = new ArrayList<>();
+		// All queries are rendered before execution starts, so rendering error doesn't leave queries running
+		Map<Widget, String> queries = new LinkedHashMap<>();
+		for (Widget widget : dashboard.getWidgets())
+		{
+			if (!StringUtils.isEmpty(widget.getSql()))
+			{
+				queries.put(widget, widgetQueryRenderer.render(widget.getSql(), attributes, projects, currentUserId, dashboard.getTitle(),
+						principalId, principalName));
+			}
+		}
+		for (Map.Entry<Widget, String> query : queries.entrySet())
+		{
+			Widget widget = query.getKey();
+			try
+			{
+				pending.put(completionService.submit(() -> execute(tenantName, widget.getId(), query.getValue())), widget);
+			}
+			catch (RejectedExecutionException e)
+			{
+				WidgetResultType result = new WidgetResultType(widget.getId());
+				result.setError("Too many widgets are being rendered, try again later");
+				rejected.add(result);
+			}
+		}
+
+		// Widgets above pool size wait in queue, so every round of execution gets own widget timeout
+		long start = System.currentTimeMillis();
+		long deadline = start + widgetTimeout * (1 + pending.size() / Math.max(1, renderThreads));
+		try
+		{
+			rejected.forEach(consumer);
+			while (!pending.isEmpty())
+			{
+				Future<WidgetResultType> future = completionService.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+				if (future == null)
+				{
+					break;
+				}
+				pending.remove(future);
+				consumer.accept(getResult(future));
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			// Queries are cancelled before anything else is reported, so they don't keep running when consumer fails
+			pending.keySet().forEach(future -> future.cancel(true));
+		}
+		for (Widget widget : pending.values())
+		{
+			WidgetResultType result = new WidgetResultType(widget.getId());
+			result.setTimedOut(true);
+			result.setDuration(System.currentTimeMillis() - start);
+			consumer.accept(result);
+		}
+	}
+
+	private WidgetResultType execute(String tenantName, Long widgetId, String query)
+	{
+		TenancyContext.setTenantName(tenantName);
+		WidgetResultType result = new WidgetResultType(widgetId);
+		long start = System.currentTimeMillis();
+		try
+		{
+			result.setData(widgetResultCache.get(query, null, () -> widgetService.executeSQL(query)));
+		}
+		catch (Exception e)
+		{
+			LOGGER.debug("Unable to execute query of widget " + widgetId, e);
+			result.setError(ExceptionUtils.getRootCauseMessage(e));
+		}
+		finally
+		{
+			result.setDuration(System.currentTimeMillis() - start);
+			TenancyContext.setTenantName(null);
+		}
+		return result;
+	}
+
+	private WidgetResultType getResult(Future<WidgetResultType> future) throws InterruptedException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			// execute() handles own errors, so that this should not happen
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private ThreadPoolExecutor getExecutor(String tenantName)
+	{
+		return executors.computeIfAbsent(StringUtils.defaultString(tenantName), name -> {
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(renderThreads, renderThreads, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(renderQueueSize), r -> {
+						Thread thread = new Thread(r, "dashboard-renderer-" + name + "-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		});
+	}
+}
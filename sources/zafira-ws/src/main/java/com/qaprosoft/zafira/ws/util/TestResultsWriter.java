@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.ws.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.lang3.StringUtils;
+import org.dozer.Mapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qaprosoft.zafira.models.db.Test;
+import com.qaprosoft.zafira.models.dto.TestType;
+
+/**
+ * Writes test results into output stream one by one while tests are being loaded, so that memory usage does not depend
+ * on count of tests. Every test is mapped to {@link TestType} and written as JSON array element, JSON line or CSV row.
+ */
+@Component
+public class TestResultsWriter
+{
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	private static final String[] CSV_HEADER = { "id", "name", "status", "testGroup", "testClass", "testArgs", "testRunId", "testCaseId",
+			"startTime", "finishTime", "retry", "knownIssue", "blocker", "needRerun", "workItems", "ciTestId", "message" };
+
+	public enum Format
+	{
+		JSON(MediaType.APPLICATION_JSON_VALUE), NDJSON("application/x-ndjson"), CSV("text/csv");
+
+		private final String contentType;
+
+		Format(String contentType)
+		{
+			this.contentType = contentType;
+		}
+
+		public String getContentType()
+		{
+			return contentType;
+		}
+	}
+
+	@Autowired
+	private Mapper mapper;
+
+	/**
+	 * Writes tests in specified format.
+	 *
+	 * @param tests - tests, may be loaded lazily while iterating
+	 * @param format - output format
+	 * @param out - output stream, is not closed
+	 * @throws IOException - on write error
+	 */
+	public void write(Iterable<Test> tests, Format format, OutputStream out) throws IOException
+	{
+		switch (format)
+		{
+		case JSON:
+			writeJson(tests, out);
+			break;
+		case NDJSON:
+			writeNdjson(tests, out);
+			break;
+		case CSV:
+			writeCsv(tests, out);
+			break;
+		}
+	}
+
+	private void writeJson(Iterable<Test> tests, OutputStream out) throws IOException
+	{
+		try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(out))
+		{
+			generator.writeStartArray();
+			for (Test test : tests)
+			{
+				OBJECT_MAPPER.writeValue(generator, mapper.map(test, TestType.class));
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	private void writeNdjson(Iterable<Test> tests, OutputStream out) throws IOException
+	{
+		try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(out))
+		{
+			generator.setRootValueSeparator(null);
+			for (Test test : tests)
+			{
+				OBJECT_MAPPER.writeValue(generator, mapper.map(test, TestType.class));
+				generator.writeRaw('\n');
+			}
+		}
+	}
+
+	private void writeCsv(Iterable<Test> tests, OutputStream out) throws IOException
+	{
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writeCsvRow(writer, (Object[]) CSV_HEADER);
+		for (Test test : tests)
+		{
+			TestType t = mapper.map(test, TestType.class);
+			writeCsvRow(writer, t.getId(), t.getName(), t.getStatus(), t.getTestGroup(), t.getTestClass(), t.getTestArgs(), t.getTestRunId(),
+					t.getTestCaseId(), t.getStartTime(), t.getFinishTime(), t.getRetry(), t.isKnownIssue(), t.isBlocker(), t.isNeedRerun(),
+					t.getWorkItems() != null ? StringUtils.join(t.getWorkItems(), ' ') : null, t.getCiTestId(), t.getMessage());
+		}
+		writer.flush();
+	}
+
+	private static void writeCsvRow(Writer writer, Object... values) throws IOException
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if (i > 0)
+			{
+				writer.write(',');
+			}
+			if (values[i] != null)
+			{
+				writer.write(escapeCsv(values[i].toString()));
+			}
+		}
+		writer.write("\r\n");
+	}
+
+	private static String escapeCsv(String value)
+	{
+		if (StringUtils.containsAny(value, ',', '"', '\r', '\n'))
+		{
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+		return value;
+	}
+}
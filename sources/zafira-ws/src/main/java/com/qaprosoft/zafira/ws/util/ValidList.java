@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.ws.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.Valid;
+
+/**
+ * List of request body elements validated one by one: bean validation does not cascade into collection passed as
+ * root object, so elements are exposed through {@link Valid} property.
+ *
+ * @param <E> - element type
+ */
+public class ValidList<E> extends ArrayList<E>
+{
+	private static final long serialVersionUID = -2346521438226371127L;
+
+	@Valid
+	public List<E> getElements()
+	{
+		return this;
+	}
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.ws.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.qaprosoft.zafira.dbaccess.utils.TenancyContext;
+import com.qaprosoft.zafira.models.db.Test;
+import com.qaprosoft.zafira.models.dto.TestRunStatistics;
+import com.qaprosoft.zafira.models.push.TestPush;
+import com.qaprosoft.zafira.models.push.TestRunPush;
+import com.qaprosoft.zafira.models.push.TestRunStatisticPush;
+import com.qaprosoft.zafira.models.push.TestsPush;
+import com.qaprosoft.zafira.services.services.application.TestRunService;
+import com.qaprosoft.zafira.services.services.application.cache.TestRunStatisticsAggregator;
+
+/**
+ * Coalescing websocket dispatcher. Pushes are collected per destination and sent by single background thread once per
+ * push interval: only the latest statistics and test run state are sent for each test run, test updates of the same
+ * test run are sent in one {@link TestsPush} frame. Statistics and test runs are loaded when window is flushed, so
+ * request threads neither read cache nor wait for the broker.
+ */
+@Component
+public class WebsocketPushDispatcher
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebsocketPushDispatcher.class);
+
+	@Autowired
+	private SimpMessagingTemplate websocketTemplate;
+
+	@Autowired
+	private TestRunStatisticsAggregator testRunStatisticsAggregator;
+
+	@Autowired
+	private TestRunService testRunService;
+
+	@Value("${zafira.websocket.pushInterval}")
+	private long pushInterval;
+
+	@Value("${zafira.websocket.queueSize}")
+	private int queueSize;
+
+	private final ConcurrentMap<String, Destination> pendingStatistics = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Destination> pendingTestRuns = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, PendingTests> pendingTests = new ConcurrentHashMap<>();
+	private final AtomicInteger pendingTestsCount = new AtomicInteger();
+
+	private final LongAdder received = new LongAdder();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	private ScheduledExecutorService executor;
+
+	@PostConstruct
+	public void init()
+	{
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "websocket-push-dispatcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::flush, pushInterval, pushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void destroy()
+	{
+		executor.shutdown();
+		flush();
+	}
+
+	/**
+	 * Schedules push of test run statistics, actual statistics are read when push window is flushed.
+	 *
+	 * @param destination - statistics websocket path
+	 * @param testRunId - test run id
+	 */
+	public void pushStatistics(String destination, Long testRunId)
+	{
+		received.increment();
+		pendingStatistics.putIfAbsent(destination + ":" + testRunId, new Destination(destination, testRunId));
+	}
+
+	/**
+	 * Schedules push of test run, full test run is loaded when push window is flushed.
+	 *
+	 * @param destination - test runs websocket path
+	 * @param testRunId - test run id
+	 */
+	public void pushTestRun(String destination, Long testRunId)
+	{
+		received.increment();
+		pendingTestRuns.putIfAbsent(destination + ":" + testRunId, new Destination(destination, testRunId));
+	}
+
+	/**
+	 * Schedules push of test, tests of the same destination are sent in one frame, only the latest state of each test is
+	 * kept. Test is dropped if dispatcher queue is full.
+	 *
+	 * @param destination - tests websocket path
+	 * @param test - test to push
+	 */
+	public void pushTest(String destination, Test test)
+	{
+		pushTests(destination, test.getTestRunId(), Collections.singletonList(test));
+	}
+
+	/**
+	 * Schedules push of several tests of one test run at once, same as {@link #pushTest(String, Test)} for every test.
+	 *
+	 * @param destination - tests websocket path
+	 * @param testRunId - test run id
+	 * @param tests - tests to push
+	 */
+	public void pushTests(String destination, Long testRunId, Collection<Test> tests)
+	{
+		received.increment();
+		pendingTests.compute(destination, (key, pending) -> {
+			if (pending == null)
+			{
+				pending = new PendingTests(destination, testRunId);
+			}
+			for (Test test : tests)
+			{
+				if (pending.tests.containsKey(test.getId()) || pendingTestsCount.incrementAndGet() <= queueSize)
+				{
+					pending.tests.put(test.getId(), test);
+				}
+				else
+				{
+					pendingTestsCount.decrementAndGet();
+					dropped.increment();
+				}
+			}
+			return pending;
+		});
+	}
+
+	public long getReceivedCount()
+	{
+		return received.sum();
+	}
+
+	public long getSentCount()
+	{
+		return sent.sum();
+	}
+
+	public long getDroppedCount()
+	{
+		return dropped.sum();
+	}
+
+	public int getQueuedCount()
+	{
+		return pendingTestsCount.get() + pendingStatistics.size() + pendingTestRuns.size();
+	}
+
+	/**
+	 * Sends everything collected since previous flush.
+	 */
+	public void flush()
+	{
+		for (String key : pendingTests.keySet())
+		{
+			PendingTests tests = pendingTests.remove(key);
+			if (tests != null && !tests.tests.isEmpty())
+			{
+				pendingTestsCount.addAndGet(-tests.tests.size());
+				send(tests.destination, tests.tests.size() == 1 ? new TestPush(tests.tests.values().iterator().next())
+						: new TestsPush(tests.testRunId, tests.tests.values()));
+			}
+		}
+		try
+		{
+			for (Destination destination : poll(pendingTestRuns))
+			{
+				TenancyContext.setTenantName(destination.tenantName);
+				try
+				{
+					send(destination.path, new TestRunPush(testRunService.getTestRunByIdFull(destination.testRunId)));
+				}
+				catch (Exception e)
+				{
+					LOGGER.error("Unable to push test run " + destination.testRunId + ": " + e.getMessage(), e);
+				}
+			}
+			for (Destination destination : poll(pendingStatistics))
+			{
+				TenancyContext.setTenantName(destination.tenantName);
+				try
+				{
+					TestRunStatistics statistics = testRunStatisticsAggregator.getTestRunStatistic(destination.testRunId);
+					if (statistics != null)
+					{
+						send(destination.path, new TestRunStatisticPush(statistics));
+					}
+				}
+				catch (Exception e)
+				{
+					LOGGER.error("Unable to push statistics of test run " + destination.testRunId + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		finally
+		{
+			TenancyContext.setTenantName(null);
+		}
+		if (LOGGER.isDebugEnabled())
+		{
+			LOGGER.debug("Websocket pushes received: " + received.sum() + ", sent: " + sent.sum() + ", dropped: " + dropped.sum());
+		}
+	}
+
+	private List<Destination> poll(ConcurrentMap<String, Destination> pending)
+	{
+		List<Destination> destinations = new ArrayList<>(pending.size());
+		for (String key : pending.keySet())
+		{
+			Destination destination = pending.remove(key);
+			if (destination != null)
+			{
+				destinations.add(destination);
+			}
+		}
+		return destinations;
+	}
+
+	private void send(String destination, Object push)
+	{
+		try
+		{
+			websocketTemplate.convertAndSend(destination, push);
+			sent.increment();
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unable to send websocket message to " + destination + ": " + e.getMessage());
+		}
+	}
+
+	private static class Destination
+	{
+		private final String tenantName = TenancyContext.getTenantName();
+		private final String path;
+		private final Long testRunId;
+
+		private Destination(String path, Long testRunId)
+		{
+			this.path = path;
+			this.testRunId = testRunId;
+		}
+	}
+
+	private static class PendingTests
+	{
+		private final String destination;
+		private final Long testRunId;
+		private final Map<Long, Test> tests = new LinkedHashMap<>();
+
+		private PendingTests(String destination, Long testRunId)
+		{
+			this.destination = destination;
+			this.testRunId = testRunId;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2013-2018 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.zafira.ws.util;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import com.qaprosoft.zafira.models.db.Attribute;
+import com.qaprosoft.zafira.services.exceptions.ServiceException;
+import com.qaprosoft.zafira.services.services.application.SettingsService;
+import com.qaprosoft.zafira.services.util.URLResolver;
+
+/**
+ * Substitutes widget SQL placeholders: dashboard attributes, projects, current user, Zafira and Jenkins URLs.
+ */
+@Component
+public class WidgetQueryRenderer
+{
+	@Autowired
+	private URLResolver urlResolver;
+
+	@Autowired
+	private SettingsService settingsService;
+
+	/**
+	 * Renders widget query.
+	 *
+	 * @param sql - widget SQL with placeholders
+	 * @param attributes - dashboard attributes
+	 * @param projects - selected projects, all if empty
+	 * @param currentUserId - user id to render, principal id is used if empty
+	 * @param dashboardName - dashboard name
+	 * @param principalId - current user id
+	 * @param principalName - current user name
+	 * @return SQL ready to execute
+	 * @throws ServiceException - if settings can't be read
+	 */
+	public String render(String sql, List<Attribute> attributes, List<String> projects, String currentUserId, String dashboardName,
+			Long principalId, String principalName) throws ServiceException
+	{
+		String query = sql;
+		if (attributes != null)
+		{
+			for (Attribute attribute : attributes)
+			{
+				query = query.replaceAll("#\\{" + attribute.getKey() + "\\}", attribute.getValue());
+			}
+		}
+
+		query = query
+			.replaceAll("#\\{project}", formatProjects(projects))
+			.replaceAll("#\\{dashboardName}", !StringUtils.isEmpty(dashboardName) ? dashboardName : "")
+			.replaceAll("#\\{currentUserId}", !StringUtils.isEmpty(currentUserId) ? currentUserId : String.valueOf(principalId))
+			.replaceAll("#\\{currentUserName}", String.valueOf(principalName))
+			.replaceAll("#\\{zafiraURL}", urlResolver.buildWebURL())
+			.replaceAll("#\\{hashcode}", "0")
+			.replaceAll("#\\{testCaseId}", "0");
+		if (query.contains("#{jenkinsURL}"))
+		{
+			query = query.replaceAll("#\\{jenkinsURL}", settingsService.getSettingByName("JENKINS_URL").getValue());
+		}
+		return query;
+	}
+
+	private String formatProjects(List<String> projects)
+	{
+		String result = "%";
+		if(!CollectionUtils.isEmpty(projects))
+		{
+			StringBuilder sb = new StringBuilder();
+			for(String project : projects)
+			{
+				sb.append(project).append(",");
+			}
+			result = StringUtils.removeEnd(sb.toString(), ",");
+		}
+		return result;
+	}
+}